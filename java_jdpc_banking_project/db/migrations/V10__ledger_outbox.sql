@@ -0,0 +1,11 @@
+-- Ledger rows committed but not yet published on the event stream, written in the same transaction as the
+-- rows themselves and deleted by the event relay once they are in the event log (bank.events.*).
+CREATE TABLE IF NOT EXISTS ledger_outbox (
+  transaction_id INT PRIMARY KEY,
+  account_id INT NOT NULL,
+  type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  amount DECIMAL(19,2) NOT NULL,
+  timestamp DATETIME NOT NULL,
+  remarks VARCHAR(255),
+  balance_after DECIMAL(19,2) NOT NULL
+);
@@ -0,0 +1,3 @@
+-- Serves per-account history pages (keyset on timestamp, transaction_id) as index range scans.
+-- Needed for databases created from schema.sql before this index was added there.
+CREATE INDEX idx_transactions_account_ts ON transactions (account_id, timestamp, transaction_id);
@@ -0,0 +1,3 @@
+-- Admin search by phone and name prefix, and name-ordered account listing.
+CREATE INDEX idx_accounts_phone ON accounts (phone);
+CREATE INDEX idx_accounts_name ON accounts (name);
@@ -0,0 +1,4 @@
+-- Money columns move from binary floating point to exact fixed point. MySQL rounds the existing
+-- DOUBLE values to the nearest cent during the conversion.
+ALTER TABLE accounts MODIFY balance DECIMAL(19,2) NOT NULL DEFAULT 0;
+ALTER TABLE transactions MODIFY amount DECIMAL(19,2) NOT NULL;
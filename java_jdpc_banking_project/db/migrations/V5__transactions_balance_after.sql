@@ -0,0 +1,23 @@
+-- Running balance per ledger row, so balances as of a date and statements need no history replay.
+-- Existing rows are backfilled backwards from each account's current balance: a row's balance_after
+-- is the current balance minus the signed amounts of every later row of that account. Requires MySQL 8
+-- (window functions).
+ALTER TABLE transactions ADD COLUMN balance_after DECIMAL(19,2) NULL;
+
+UPDATE transactions t
+JOIN (
+  SELECT d.transaction_id,
+         a.balance - COALESCE(SUM(d.delta) OVER (
+             PARTITION BY d.account_id ORDER BY d.timestamp DESC, d.transaction_id DESC
+             ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) AS balance_after
+  FROM (
+    SELECT transaction_id, account_id, timestamp,
+           CASE WHEN type = 'Withdraw' OR (type = 'Transfer' AND remarks LIKE 'Transfer to%')
+                THEN -amount ELSE amount END AS delta
+    FROM transactions
+  ) d
+  JOIN accounts a ON a.account_id = d.account_id
+) b ON b.transaction_id = t.transaction_id
+SET t.balance_after = b.balance_after;
+
+ALTER TABLE transactions MODIFY balance_after DECIMAL(19,2) NOT NULL;
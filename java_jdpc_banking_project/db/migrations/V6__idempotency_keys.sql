@@ -0,0 +1,15 @@
+-- Receipts of idempotent deposits, withdrawals and transfers, keyed per acting account. A row is written in
+-- the same transaction as the balance change it describes, so a retried request either finds it or knows the
+-- first attempt never committed. Rows older than bank.idempotency.ttlMs are purged by the application.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  account_id INT NOT NULL,
+  idempotency_key VARCHAR(64) NOT NULL,
+  operation VARCHAR(20) NOT NULL,
+  counterparty_id INT NOT NULL DEFAULT 0,
+  amount DECIMAL(19,2) NOT NULL,
+  balance_after DECIMAL(19,2) NOT NULL,
+  created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (account_id, idempotency_key),
+  INDEX idx_idempotency_created (created_at),
+  FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
+);
@@ -0,0 +1,15 @@
+-- One row per account-id range the end-of-day job has finished for a business date, written in the same
+-- transaction as that range's interest postings. A rerun for the same date skips the ranges recorded here,
+-- so an interrupted run resumes without posting interest twice.
+CREATE TABLE IF NOT EXISTS eod_checkpoints (
+  business_date DATE NOT NULL,
+  first_account_id INT NOT NULL,
+  last_account_id INT NOT NULL,
+  accounts INT NOT NULL,
+  ledger_rows BIGINT NOT NULL,
+  mismatches INT NOT NULL,
+  interest_accounts INT NOT NULL,
+  interest_total DECIMAL(19,2) NOT NULL,
+  completed_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (business_date, first_account_id)
+);
@@ -0,0 +1,61 @@
+-- Ledger layout for large histories. Partitioned InnoDB tables allow no foreign keys and need the partitioning
+-- column in every unique key, so the account foreign key goes (accounts are never deleted) and the primary key
+-- becomes (account_id, timestamp, transaction_id): rows are clustered per account in history order, which makes
+-- that key a covering index for every per-account query in TransactionDAO and the end-of-day ledger scan, and
+-- replaces idx_transactions_account_ts. transaction_id keeps its own index for AUTO_INCREMENT and exports.
+-- type becomes a one-byte ENUM; the conversion fails rather than truncating if a row holds any other value.
+-- Assumes the foreign key has MySQL's generated name from schema.sql.
+ALTER TABLE transactions DROP FOREIGN KEY transactions_ibfk_1;
+
+UPDATE transactions SET timestamp = '1970-01-01 00:00:00' WHERE timestamp IS NULL;
+
+ALTER TABLE transactions
+  MODIFY type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  MODIFY timestamp DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (account_id, timestamp, transaction_id),
+  ADD INDEX idx_transactions_id (transaction_id),
+  DROP INDEX idx_transactions_account_ts;
+
+-- One partition per month (LedgerArchiveJob keeps adding them ahead of time out of p_future), so a month of
+-- cold rows leaves the table as a partition drop instead of a DELETE. Everything before the month the script
+-- runs in goes to p_history, followed by that month and the next two; the statement is built at run time
+-- because partition bounds must be literals.
+SET @ledger_month = DATE_FORMAT(CURRENT_DATE, '%Y-%m-01');
+
+SET @ledger_partitions = CONCAT('ALTER TABLE transactions PARTITION BY RANGE COLUMNS (timestamp) (',
+  'PARTITION p_history VALUES LESS THAN (''', @ledger_month, '''), ',
+  'PARTITION p', DATE_FORMAT(@ledger_month, '%Y%m'), ' VALUES LESS THAN (''',
+      DATE_FORMAT(@ledger_month + INTERVAL 1 MONTH, '%Y-%m-%d'), '''), ',
+  'PARTITION p', DATE_FORMAT(@ledger_month + INTERVAL 1 MONTH, '%Y%m'), ' VALUES LESS THAN (''',
+      DATE_FORMAT(@ledger_month + INTERVAL 2 MONTH, '%Y-%m-%d'), '''), ',
+  'PARTITION p', DATE_FORMAT(@ledger_month + INTERVAL 2 MONTH, '%Y%m'), ' VALUES LESS THAN (''',
+      DATE_FORMAT(@ledger_month + INTERVAL 3 MONTH, '%Y-%m-%d'), '''), ',
+  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+
+PREPARE ledger_partitions FROM @ledger_partitions;
+
+EXECUTE ledger_partitions;
+
+DEALLOCATE PREPARE ledger_partitions;
+
+-- Rows of archived months, same layout without partitions; history queries read it for anything older than
+-- the latest archived_before in ledger_archive_log.
+CREATE TABLE IF NOT EXISTS transactions_archive (
+  transaction_id INT NOT NULL,
+  account_id INT NOT NULL,
+  type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  amount DECIMAL(19,2) NOT NULL,
+  timestamp DATETIME NOT NULL,
+  remarks VARCHAR(255),
+  balance_after DECIMAL(19,2) NOT NULL,
+  PRIMARY KEY (account_id, timestamp, transaction_id),
+  INDEX idx_transactions_archive_id (transaction_id)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_archive_log (
+  partition_name VARCHAR(16) PRIMARY KEY,
+  archived_before DATETIME NOT NULL,
+  ledger_rows BIGINT NOT NULL,
+  archived_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
@@ -0,0 +1,11 @@
+-- Debit limits of accounts that do not use the configured defaults (bank.policy.*), read by the policy
+-- engine in BankService. Amounts over any rolling 24 hours; max_debits_per_minute counts withdrawals and
+-- outgoing transfers. 0 means no limit.
+CREATE TABLE IF NOT EXISTS account_limits (
+  account_id INT PRIMARY KEY,
+  daily_withdrawal_limit DECIMAL(19,2) NOT NULL DEFAULT 0,
+  daily_transfer_limit DECIMAL(19,2) NOT NULL DEFAULT 0,
+  max_debits_per_minute INT NOT NULL DEFAULT 0,
+  updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+  FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
+);
@@ -8,17 +8,102 @@ CREATE TABLE IF NOT EXISTS accounts (
   email VARCHAR(50) NOT NULL UNIQUE,
   phone VARCHAR(15),
   password VARCHAR(255) NOT NULL,
-  balance DOUBLE DEFAULT 0,
+  balance DECIMAL(19,2) NOT NULL DEFAULT 0,
   created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-  status ENUM('ACTIVE','FROZEN','CLOSED') DEFAULT 'ACTIVE'
+  status ENUM('ACTIVE','FROZEN','CLOSED') DEFAULT 'ACTIVE',
+  INDEX idx_accounts_phone (phone),
+  INDEX idx_accounts_name (name)
 );
 
 CREATE TABLE IF NOT EXISTS transactions (
-  transaction_id INT AUTO_INCREMENT PRIMARY KEY,
+  transaction_id INT AUTO_INCREMENT,
   account_id INT NOT NULL,
-  type VARCHAR(20) NOT NULL,
-  amount DOUBLE NOT NULL,
-  timestamp DATETIME DEFAULT CURRENT_TIMESTAMP,
+  type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  amount DECIMAL(19,2) NOT NULL,
+  timestamp DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
   remarks VARCHAR(255),
+  balance_after DECIMAL(19,2) NOT NULL,
+  PRIMARY KEY (account_id, timestamp, transaction_id),
+  INDEX idx_transactions_id (transaction_id)
+)
+-- Only the two open-ended partitions: MigrationRunner splits them into p_history, the month of installation,
+-- the next two months and p_future right after creating the schema, as migration V8 does on upgrade.
+PARTITION BY RANGE COLUMNS (timestamp) (
+  PARTITION p_history VALUES LESS THAN ('1970-01-01'),
+  PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS transactions_archive (
+  transaction_id INT NOT NULL,
+  account_id INT NOT NULL,
+  type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  amount DECIMAL(19,2) NOT NULL,
+  timestamp DATETIME NOT NULL,
+  remarks VARCHAR(255),
+  balance_after DECIMAL(19,2) NOT NULL,
+  PRIMARY KEY (account_id, timestamp, transaction_id),
+  INDEX idx_transactions_archive_id (transaction_id)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_archive_log (
+  partition_name VARCHAR(16) PRIMARY KEY,
+  archived_before DATETIME NOT NULL,
+  ledger_rows BIGINT NOT NULL,
+  archived_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  account_id INT NOT NULL,
+  idempotency_key VARCHAR(64) NOT NULL,
+  operation VARCHAR(20) NOT NULL,
+  counterparty_id INT NOT NULL DEFAULT 0,
+  amount DECIMAL(19,2) NOT NULL,
+  balance_after DECIMAL(19,2) NOT NULL,
+  created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (account_id, idempotency_key),
+  INDEX idx_idempotency_created (created_at),
+  FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS account_limits (
+  account_id INT PRIMARY KEY,
+  daily_withdrawal_limit DECIMAL(19,2) NOT NULL DEFAULT 0,
+  daily_transfer_limit DECIMAL(19,2) NOT NULL DEFAULT 0,
+  max_debits_per_minute INT NOT NULL DEFAULT 0,
+  updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
   FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
 );
+
+CREATE TABLE IF NOT EXISTS eod_checkpoints (
+  business_date DATE NOT NULL,
+  first_account_id INT NOT NULL,
+  last_account_id INT NOT NULL,
+  accounts INT NOT NULL,
+  ledger_rows BIGINT NOT NULL,
+  mismatches INT NOT NULL,
+  interest_accounts INT NOT NULL,
+  interest_total DECIMAL(19,2) NOT NULL,
+  completed_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (business_date, first_account_id)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_outbox (
+  transaction_id INT PRIMARY KEY,
+  account_id INT NOT NULL,
+  type ENUM('Deposit','Withdraw','Transfer','Interest','Reversal') NOT NULL,
+  amount DECIMAL(19,2) NOT NULL,
+  timestamp DATETIME NOT NULL,
+  remarks VARCHAR(255),
+  balance_after DECIMAL(19,2) NOT NULL
+);
+
+-- Migrations already contained in this file; bump the version whenever a new db/migrations script is folded in here.
+CREATE TABLE IF NOT EXISTS schema_version (
+  version INT PRIMARY KEY,
+  description VARCHAR(200) NOT NULL,
+  script VARCHAR(200) NOT NULL,
+  checksum CHAR(64),
+  execution_ms BIGINT NOT NULL DEFAULT 0,
+  installed_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+INSERT IGNORE INTO schema_version (version, description, script) VALUES (10, 'Baseline', 'schema.sql');
@@ -0,0 +1,119 @@
+package banking.jmh;
+
+import banking.bench.BankServiceBenchmark;
+import banking.bench.SchemaLoader;
+import banking.dao.DatabaseConnection;
+import banking.models.Account;
+import banking.models.Page;
+import banking.models.Transaction;
+import banking.services.BankService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BankService hot paths of banking.bench.BankServiceBenchmark under JMH, reported as throughput and as a
+ * sampled latency distribution (p50, p99, p99.9). storage=h2 runs against an embedded H2 database in MySQL
+ * mode seeded from db/schema.sql (run from the project directory, or pass -Dbench.schema=path);
+ * storage=memory runs against the in-process engine. Thread counts come from JMH's -t, data sizes from
+ * -p accounts, e.g.
+ *   java -jar jmh/target/benchmarks.jar BankServiceHotPaths -t 4 -p storage=h2 -p accounts=1000,10000
+ * Each trial forks a fresh JVM, so the static database configuration is set up once per parameter set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BankServiceHotPaths {
+    @Param({"memory", "h2"})
+    public String storage;
+
+    @Param({"1000", "10000"})
+    public int accounts;
+
+    // Ledger rows seeded per account
+    @Param({"20"})
+    public int history;
+
+    private BankService service;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        boolean memory = "memory".equals(storage);
+        // Before DatabaseConnection and StorageBackend load: both read their configuration once
+        System.setProperty("bank.storage", memory ? "memory" : "mysql");
+        if (!memory) {
+            System.setProperty("bank.db.url", System.getProperty("bench.url", "jdbc:h2:mem:bank_db;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+            System.setProperty("bank.db.user", System.getProperty("bank.db.user", "sa"));
+            System.setProperty("bank.db.password", System.getProperty("bank.db.password", ""));
+        }
+        service = new BankService();
+        List<Integer> seeded = new ArrayList<>();
+        if (memory) {
+            BankServiceBenchmark.seedService(service, seeded, accounts, history);
+        } else {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                SchemaLoader.load(conn, Paths.get(System.getProperty("bench.schema", "db/schema.sql")));
+            }
+            BankServiceBenchmark.seed(seeded, accounts, history);
+        }
+        ids = seeded.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        service.close();
+    }
+
+    @Benchmark
+    public void deposit() throws Exception {
+        service.deposit(pick(), 100);
+    }
+
+    @Benchmark
+    public void withdraw() throws Exception {
+        service.withdraw(pick(), 100);
+    }
+
+    @Benchmark
+    public void transfer() throws Exception {
+        int from = pick();
+        int to = pick();
+        while (to == from) to = pick();
+        service.transfer(from, to, 100);
+    }
+
+    @Benchmark
+    public Account login() throws Exception {
+        return service.login(pick(), BankServiceBenchmark.PASSWORD);
+    }
+
+    @Benchmark
+    public Page<Transaction> history() throws Exception {
+        return service.getTransactionsPage(pick(), null, 20);
+    }
+
+    private int pick() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
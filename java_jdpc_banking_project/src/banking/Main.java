@@ -1,19 +1,44 @@
 package banking;
 
+import banking.jobs.EndOfDayJob;
+import banking.jobs.LedgerArchiveJob;
+import banking.metrics.Metrics;
 import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.AccountStatement;
+import banking.models.EndOfDayReport;
+import banking.models.Page;
 import banking.models.Transaction;
+import banking.models.TransferInstruction;
+import banking.models.TransferResult;
+import banking.dao.AccountSort;
+import banking.services.AsyncBankService;
 import banking.services.BankService;
 import banking.threads.TransferThread;
+import banking.utils.ExportWriter;
+import banking.utils.Money;
 import banking.utils.PasswordUtil;
+import banking.utils.TransferFileReader;
 import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.InvalidInputException;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Scanner;
 
 public class Main {
-    private static BankService service = new BankService();
+    private static BankService service = BankService.fromConfig();
+    private static AsyncBankService async = new AsyncBankService(service);
     private static Scanner scanner = new Scanner(System.in);
+    private static final int PAGE_SIZE = 20;
 
     public static void main(String[] args) {
         while (true) {
@@ -28,21 +53,30 @@ public class Main {
                 case "1": createAccount(); break;
                 case "2": login(); break;
                 case "3": adminMenu(); break;
-                case "0": System.out.println("Bye"); System.exit(0);
+                case "0": System.out.println("Bye"); shutdown(); System.exit(0);
                 default: System.out.println("Invalid choice");
             }
         }
     }
 
+    private static void shutdown() {
+        async.close();
+        try {
+            service.close();
+        } catch (IOException ex) {
+            System.out.println("Error: " + ex.getMessage());
+        }
+    }
+
     private static void createAccount() {
         try {
             System.out.print("Name: "); String name = scanner.nextLine();
             System.out.print("Email: "); String email = scanner.nextLine();
             System.out.print("Phone: "); String phone = scanner.nextLine();
             System.out.print("Password: "); String pwd = scanner.nextLine();
-            System.out.print("Initial deposit: "); double deposit = Double.parseDouble(scanner.nextLine());
+            System.out.print("Initial deposit: "); long deposit = Money.parse(scanner.nextLine());
 
-            String hashed = PasswordUtil.sha256(pwd);
+            String hashed = PasswordUtil.hash(pwd);
             Account acc = new Account(name, email, phone, hashed, deposit);
             int id = service.createAccount(acc);
             System.out.println("Account created. Your account number: " + id);
@@ -57,8 +91,7 @@ public class Main {
         try {
             System.out.print("Account number: "); int id = Integer.parseInt(scanner.nextLine());
             System.out.print("Password: "); String pwd = scanner.nextLine();
-            String hashed = PasswordUtil.sha256(pwd);
-            var acc = service.login(id, hashed);
+            var acc = service.login(id, pwd);
             if (acc == null) { System.out.println("Invalid credentials"); return; }
             userMenu(acc.getAccountId());
         } catch (SQLException ex) {
@@ -76,6 +109,7 @@ public class Main {
             System.out.println("3. Transfer");
             System.out.println("4. Balance");
             System.out.println("5. Transactions");
+            System.out.println("6. Monthly Statement");
             System.out.println("0. Logout");
             System.out.print("Choose: ");
             String ch = scanner.nextLine();
@@ -84,45 +118,75 @@ public class Main {
                     case "1": doDeposit(accountId); break;
                     case "2": doWithdraw(accountId); break;
                     case "3": doTransfer(accountId); break;
-                    case "4": System.out.println("Balance: " + service.getBalance(accountId)); break;
+                    case "4": System.out.println("Balance: " + Money.format(service.getBalance(accountId))); break;
                     case "5": showTransactions(accountId); break;
+                    case "6": showStatement(accountId); break;
                     case "0": return;
                     default: System.out.println("Invalid");
                 }
-            } catch (SQLException | InsufficientFundsException ex) {
+            } catch (SQLException | InsufficientFundsException | InvalidInputException ex) {
                 System.out.println("Operation failed: " + ex.getMessage());
             }
         }
     }
 
-    private static void doDeposit(int accountId) throws SQLException {
-        System.out.print("Amount to deposit: "); double amt = Double.parseDouble(scanner.nextLine());
+    private static void doDeposit(int accountId) throws SQLException, InvalidInputException {
+        System.out.print("Amount to deposit: "); long amt = Money.parse(scanner.nextLine());
         service.deposit(accountId, amt);
-        System.out.println("Deposited. New balance: " + service.getBalance(accountId));
+        System.out.println("Deposited. New balance: " + Money.format(service.getBalance(accountId)));
     }
 
-    private static void doWithdraw(int accountId) throws SQLException, InsufficientFundsException {
-        System.out.print("Amount to withdraw: "); double amt = Double.parseDouble(scanner.nextLine());
+    private static void doWithdraw(int accountId) throws SQLException, InsufficientFundsException, InvalidInputException {
+        System.out.print("Amount to withdraw: "); long amt = Money.parse(scanner.nextLine());
         service.withdraw(accountId, amt);
-        System.out.println("Withdrawn. New balance: " + service.getBalance(accountId));
+        System.out.println("Withdrawn. New balance: " + Money.format(service.getBalance(accountId)));
     }
 
     private static void doTransfer(int accountId) throws SQLException {
         System.out.print("Target account: "); int to = Integer.parseInt(scanner.nextLine());
-        System.out.print("Amount: "); double amt = Double.parseDouble(scanner.nextLine());
-        // Start two threads to simulate concurrency: one performing the transfer, one doing a small reverse (demo)
-        TransferThread t1 = new TransferThread(service, accountId, to, amt);
+        System.out.print("Amount: "); long amt = Money.parse(scanner.nextLine());
+        // Submitted through the async facade like any other caller, then awaited for the demo
+        TransferThread t1 = new TransferThread(async, accountId, to, amt);
         t1.start();
-        try { t1.join(); } catch (InterruptedException e) {}
-        System.out.println("After transfer, balance: " + service.getBalance(accountId));
+        t1.join();
+        System.out.println("After transfer, balance: " + Money.format(service.getBalance(accountId)));
     }
 
     private static void showTransactions(int accountId) throws SQLException {
-        List<Transaction> list = service.getTransactions(accountId);
         System.out.println("Transactions:");
-        for (Transaction t : list) {
-            System.out.println(t.getTransactionId() + " | " + t.getType() + " | " + t.getAmount() + " | " + t.getTimestamp() + " | " + t.getRemarks());
+        Transaction after = null;
+        while (true) {
+            Page<Transaction> page = service.getTransactionsPage(accountId, after, PAGE_SIZE);
+            for (Transaction t : page.getItems()) {
+                System.out.println(t.getTransactionId() + " | " + t.getType() + " | " + Money.format(t.getAmount()) + " | " + t.getTimestamp() + " | " + t.getRemarks() + " | balance " + Money.format(t.getBalanceAfter()));
+            }
+            if (!page.hasMore() || !nextPage()) return;
+            after = page.getLast();
+        }
+    }
+
+    private static void showStatement(int accountId) throws SQLException {
+        System.out.print("Month (YYYY-MM): ");
+        YearMonth month;
+        try {
+            month = YearMonth.parse(scanner.nextLine().trim());
+        } catch (DateTimeParseException ex) {
+            System.out.println("Invalid month format.");
+            return;
+        }
+        AccountStatement st = service.getMonthlyStatement(accountId, month);
+        System.out.println("\n=== Statement for Account " + accountId + ", " + month + " ===");
+        System.out.println("Opening balance: " + Money.format(st.getOpeningBalance()));
+        for (Transaction t : st.getTransactions()) {
+            System.out.println(t.getTimestamp() + " | " + t.getType() + " | " + Money.format(t.getAmount()) + " | " + t.getRemarks() + " | balance " + Money.format(t.getBalanceAfter()));
         }
+        System.out.println("Credits: " + Money.format(st.getTotalCredits()) + ", debits: " + Money.format(st.getTotalDebits()));
+        System.out.println("Closing balance: " + Money.format(st.getClosingBalance()));
+    }
+
+    private static boolean nextPage() {
+        System.out.print("-- Press Enter for more, q to stop: ");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
     }
 
     private static void adminMenu() {
@@ -133,8 +197,15 @@ public class Main {
         while (true) {
             System.out.println("\n--- Admin Menu ---");
             System.out.println("1. View All Accounts");
-            System.out.println("2. Search Account by ID");
+            System.out.println("2. Search Accounts");
             System.out.println("3. View Account Transactions");
+            System.out.println("4. Run Batch Transfer File");
+            System.out.println("5. Export Accounts / Transactions");
+            System.out.println("6. Month-end Statements");
+            System.out.println("7. Metrics");
+            System.out.println("8. End-of-day Run");
+            System.out.println("9. Ledger Archival");
+            System.out.println("10. Account Status and Limits");
             System.out.println("0. Logout");
             System.out.print("Choose: ");
             String ch = scanner.nextLine();
@@ -144,6 +215,13 @@ public class Main {
                     case "1": viewAllAccounts(); break;
                     case "2": searchAccount(); break;
                     case "3": adminViewTransactions(); break;
+                    case "4": runBatchTransfers(); break;
+                    case "5": exportData(); break;
+                    case "6": exportStatements(); break;
+                    case "7": System.out.print(Metrics.render()); break;
+                    case "8": runEndOfDay(); break;
+                    case "9": runLedgerArchival(); break;
+                    case "10": manageAccountPolicy(); break;
                     case "0":
                         System.out.println("Admin logged out.");
                         return;
@@ -156,94 +234,303 @@ public class Main {
     }
 
     private static void viewAllAccounts() throws SQLException {
-        List<Account> accounts = service.getAllAccounts();
-        if (accounts.isEmpty()) {
+        System.out.print("Sort by (1. ID, 2. Name) [1]: ");
+        AccountSort sort = "2".equals(scanner.nextLine().trim()) ? AccountSort.NAME : AccountSort.ID;
+        Page<Account> page = service.listAccounts(sort, null, PAGE_SIZE);
+        if (page.isEmpty()) {
             System.out.println("No accounts found.");
             return;
         }
 
         System.out.println("\n=== All Accounts ===");
+        printAccountHeader();
+        int shown = 0;
+        while (true) {
+            for (Account acc : page.getItems()) printAccountRow(acc);
+            shown += page.getItems().size();
+            if (!page.hasMore() || !nextPage()) break;
+            page = service.listAccounts(sort, page.getLast(), PAGE_SIZE);
+        }
+        System.out.println("--------------------------------------------------------------------------------");
+        System.out.println("Accounts shown: " + shown);
+    }
+
+    private static void printAccountHeader() {
         System.out.println("--------------------------------------------------------------------------------");
         System.out.printf("%-8s %-20s %-25s %-15s %-12s %-10s%n",
             "ID", "Name", "Email", "Phone", "Balance", "Status");
         System.out.println("--------------------------------------------------------------------------------");
+    }
 
-        for (Account acc : accounts) {
-            System.out.printf("%-8d %-20s %-25s %-15s $%-11.2f %-10s%n",
-                acc.getAccountId(),
-                acc.getName().length() > 20 ? acc.getName().substring(0, 17) + "..." : acc.getName(),
-                acc.getEmail().length() > 25 ? acc.getEmail().substring(0, 22) + "..." : acc.getEmail(),
-                acc.getPhone(),
-                acc.getBalance(),
-                acc.getStatus());
-        }
-        System.out.println("--------------------------------------------------------------------------------");
-        System.out.println("Total accounts: " + accounts.size());
+    private static void printAccountRow(Account acc) {
+        System.out.printf("%-8d %-20s %-25s %-15s $%-11s %-10s%n",
+            acc.getAccountId(),
+            acc.getName().length() > 20 ? acc.getName().substring(0, 17) + "..." : acc.getName(),
+            acc.getEmail().length() > 25 ? acc.getEmail().substring(0, 22) + "..." : acc.getEmail(),
+            acc.getPhone(),
+            Money.format(acc.getBalance()),
+            acc.getStatus());
     }
 
     private static void searchAccount() throws SQLException {
-        System.out.print("Enter account ID: ");
+        System.out.println("Search by: 1. Account ID  2. Email  3. Phone  4. Name prefix");
+        System.out.print("Choose: ");
+        String ch = scanner.nextLine();
         try {
-            int id = Integer.parseInt(scanner.nextLine());
-            Account acc = service.login(id, "");  // We'll use a better approach
-
-            // Direct query is better for admin
-            List<Account> allAccounts = service.getAllAccounts();
-            Account found = null;
-            for (Account a : allAccounts) {
-                if (a.getAccountId() == id) {
-                    found = a;
+            switch (ch) {
+                case "1":
+                    System.out.print("Enter account ID: ");
+                    printAccountDetails(service.findAccount(Integer.parseInt(scanner.nextLine())));
                     break;
-                }
-            }
-
-            if (found == null) {
-                System.out.println("Account not found.");
-                return;
+                case "2":
+                    System.out.print("Enter email: ");
+                    printAccountDetails(service.findAccountByEmail(scanner.nextLine().trim()));
+                    break;
+                case "3":
+                    System.out.print("Enter phone: ");
+                    printAccountList(service.findAccountsByPhone(scanner.nextLine().trim()));
+                    break;
+                case "4":
+                    System.out.print("Enter name prefix: ");
+                    printAccountList(service.searchAccountsByName(scanner.nextLine().trim(), PAGE_SIZE));
+                    break;
+                default: System.out.println("Invalid choice");
             }
-
-            System.out.println("\n=== Account Details ===");
-            System.out.println("Account ID: " + found.getAccountId());
-            System.out.println("Name: " + found.getName());
-            System.out.println("Email: " + found.getEmail());
-            System.out.println("Phone: " + found.getPhone());
-            System.out.println("Balance: $" + String.format("%.2f", found.getBalance()));
-            System.out.println("Status: " + found.getStatus());
-            System.out.println("Created At: " + found.getCreatedAt());
         } catch (NumberFormatException ex) {
             System.out.println("Invalid account ID format.");
         }
     }
 
+    private static void printAccountList(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            System.out.println("No matching accounts.");
+            return;
+        }
+        if (accounts.size() == 1) {
+            printAccountDetails(accounts.get(0));
+            return;
+        }
+        printAccountHeader();
+        for (Account acc : accounts) printAccountRow(acc);
+        System.out.println("--------------------------------------------------------------------------------");
+        System.out.println("Matches shown: " + accounts.size());
+    }
+
+    private static void printAccountDetails(Account found) {
+        if (found == null) {
+            System.out.println("Account not found.");
+            return;
+        }
+
+        System.out.println("\n=== Account Details ===");
+        System.out.println("Account ID: " + found.getAccountId());
+        System.out.println("Name: " + found.getName());
+        System.out.println("Email: " + found.getEmail());
+        System.out.println("Phone: " + found.getPhone());
+        System.out.println("Balance: $" + Money.format(found.getBalance()));
+        System.out.println("Status: " + found.getStatus());
+        System.out.println("Created At: " + found.getCreatedAt());
+    }
+
     private static void adminViewTransactions() throws SQLException {
         System.out.print("Enter account ID: ");
         try {
             int id = Integer.parseInt(scanner.nextLine());
-            List<Transaction> transactions = service.getTransactions(id);
+            Page<Transaction> page = service.getTransactionsPage(id, null, PAGE_SIZE);
 
-            if (transactions.isEmpty()) {
+            if (page.isEmpty()) {
                 System.out.println("No transactions found for this account.");
                 return;
             }
 
             System.out.println("\n=== Transactions for Account " + id + " ===");
             System.out.println("--------------------------------------------------------------------------------");
-            System.out.printf("%-8s %-12s %-12s %-25s %-30s%n",
-                "TX ID", "Type", "Amount", "Timestamp", "Remarks");
+            System.out.printf("%-8s %-12s %-12s %-12s %-25s %-30s%n",
+                "TX ID", "Type", "Amount", "Balance", "Timestamp", "Remarks");
             System.out.println("--------------------------------------------------------------------------------");
 
-            for (Transaction t : transactions) {
-                System.out.printf("%-8d %-12s $%-11.2f %-25s %-30s%n",
-                    t.getTransactionId(),
-                    t.getType(),
-                    t.getAmount(),
-                    t.getTimestamp().toString(),
-                    t.getRemarks().length() > 30 ? t.getRemarks().substring(0, 27) + "..." : t.getRemarks());
+            int shown = 0;
+            while (true) {
+                for (Transaction t : page.getItems()) {
+                    System.out.printf("%-8d %-12s $%-11s $%-11s %-25s %-30s%n",
+                        t.getTransactionId(),
+                        t.getType(),
+                        Money.format(t.getAmount()),
+                        Money.format(t.getBalanceAfter()),
+                        t.getTimestamp().toString(),
+                        t.getRemarks().length() > 30 ? t.getRemarks().substring(0, 27) + "..." : t.getRemarks());
+                }
+                shown += page.getItems().size();
+                if (!page.hasMore() || !nextPage()) break;
+                page = service.getTransactionsPage(id, page.getLast(), PAGE_SIZE);
             }
             System.out.println("--------------------------------------------------------------------------------");
-            System.out.println("Total transactions: " + transactions.size());
+            System.out.println("Transactions shown: " + shown);
         } catch (NumberFormatException ex) {
             System.out.println("Invalid account ID format.");
         }
     }
+
+    private static void runBatchTransfers() {
+        System.out.print("Transfer file (from,to,amount[,reference] per line): ");
+        String path = scanner.nextLine();
+        try {
+            List<TransferInstruction> instructions = TransferFileReader.read(Paths.get(path));
+            long start = System.currentTimeMillis();
+            List<TransferResult> results = service.executeBatch(instructions);
+            long elapsed = System.currentTimeMillis() - start;
+
+            int succeeded = 0;
+            int alreadyApplied = 0;
+            int shown = 0;
+            System.out.println("\n=== Batch Transfer Report ===");
+            for (TransferResult r : results) {
+                if (r.getStatus() == TransferResult.Status.ALREADY_APPLIED) {
+                    alreadyApplied++;
+                } else if (r.isSuccess()) {
+                    succeeded++;
+                } else if (shown++ < 20) {
+                    TransferInstruction in = r.getInstruction();
+                    System.out.printf("#%-6d %d -> %d  %s  %s: %s%n", r.getIndex() + 1,
+                        in.getFromAccountId(), in.getToAccountId(), Money.format(in.getAmount()), r.getStatus(), r.getMessage());
+                }
+            }
+            if (shown > 20) System.out.println("... " + (shown - 20) + " more failures");
+            System.out.println("Succeeded: " + succeeded + ", already applied: " + alreadyApplied
+                + ", failed: " + (results.size() - succeeded - alreadyApplied) + ", time: " + elapsed + " ms");
+        } catch (IOException ex) {
+            System.out.println("Could not read file: " + ex.getMessage());
+        } catch (InvalidInputException ex) {
+            System.out.println("Invalid transfer file: " + ex.getMessage());
+        }
+    }
+
+    private static void exportData() throws SQLException {
+        System.out.print("Export (1. Accounts, 2. Transactions): ");
+        boolean accounts = !"2".equals(scanner.nextLine().trim());
+        System.out.print("Format (1. CSV, 2. JSON lines): ");
+        ExportWriter.Format format = "2".equals(scanner.nextLine().trim()) ? ExportWriter.Format.JSONL : ExportWriter.Format.CSV;
+        System.out.print("Output file: ");
+        String path = scanner.nextLine().trim();
+        long start = System.currentTimeMillis();
+        try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            long rows = accounts ? service.exportAccounts(out, format) : service.exportTransactions(out, format);
+            System.out.println("Exported " + rows + " rows to " + path + " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException ex) {
+            System.out.println("Could not write file: " + ex.getMessage());
+        }
+    }
+
+    private static void runEndOfDay() throws SQLException {
+        if (!"mysql".equals(service.getBackend().getName())) {
+            System.out.println("The end-of-day job runs against the MySQL backend only.");
+            return;
+        }
+        System.out.print("Business date (YYYY-MM-DD, blank for today): ");
+        String text = scanner.nextLine().trim();
+        System.out.print("Annual interest rate in % (e.g. 2.5, blank for none): ");
+        String rate = scanner.nextLine().trim();
+        LocalDate date;
+        long bps;
+        try {
+            date = text.isEmpty() ? LocalDate.now() : LocalDate.parse(text);
+            // Two decimal places of a percentage are basis points, the same scaling as Money
+            bps = rate.isEmpty() ? 0 : Money.parse(rate);
+            if (bps < 0) throw new NumberFormatException("Rate must not be negative");
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            System.out.println("Invalid input: " + ex.getMessage());
+            return;
+        }
+        EndOfDayReport r = new EndOfDayJob((int) bps).run(date);
+        System.out.println("\n=== End of Day " + r.getBusinessDate() + " ===");
+        System.out.println("Ranges: " + r.getRanges() + " run, " + r.getRangesAlreadyDone() + " already done, " + r.getRangesFailed() + " failed");
+        System.out.println("Accounts: " + r.getAccounts() + ", ledger rows: " + r.getLedgerRows() + ", mismatches: " + r.getMismatches());
+        System.out.println("Interest: " + Money.format(r.getInterestTotal()) + " to " + r.getInterestAccounts() + " accounts");
+        System.out.println("Expired idempotency receipts purged: " + r.getReceiptsPurged());
+        for (String p : r.getProblems()) System.out.println("  " + p);
+        System.out.println((r.isComplete() ? "Completed" : "Incomplete, run the same date again to resume") + " in " + r.getElapsedMillis() + " ms");
+    }
+
+    private static void manageAccountPolicy() throws SQLException {
+        try {
+            System.out.print("Enter account ID: ");
+            int id = Integer.parseInt(scanner.nextLine().trim());
+            Account acc = service.findAccount(id);
+            if (acc == null) {
+                System.out.println("Account not found.");
+                return;
+            }
+            AccountLimits limits = service.getAccountLimits(id);
+            System.out.println("Status: " + acc.getStatus());
+            System.out.println("Daily withdrawal limit: " + limitText(limits.getDailyWithdrawalLimit()));
+            System.out.println("Daily transfer limit: " + limitText(limits.getDailyTransferLimit()));
+            System.out.println("Debits per minute: " + (limits.getMaxDebitsPerMinute() == 0 ? "no limit" : limits.getMaxDebitsPerMinute()));
+
+            System.out.print("New status (ACTIVE, FROZEN, CLOSED; blank to keep): ");
+            String status = scanner.nextLine().trim().toUpperCase();
+            if (!status.isEmpty()) {
+                service.setAccountStatus(id, status);
+                System.out.println("Status set to " + status + ".");
+            }
+            System.out.print("Limits (1. Keep, 2. Set, 3. Use defaults) [1]: ");
+            switch (scanner.nextLine().trim()) {
+                case "2": {
+                    System.out.print("Daily withdrawal limit (0 for none): "); long withdrawal = Money.parse(scanner.nextLine());
+                    System.out.print("Daily transfer limit (0 for none): "); long transfer = Money.parse(scanner.nextLine());
+                    System.out.print("Debits per minute (0 for none): "); int perMinute = Integer.parseInt(scanner.nextLine().trim());
+                    service.setAccountLimits(id, new AccountLimits(withdrawal, transfer, perMinute));
+                    System.out.println("Limits saved.");
+                    break;
+                }
+                case "3":
+                    service.setAccountLimits(id, null);
+                    System.out.println("Account uses the default limits.");
+                    break;
+                default:
+            }
+        } catch (NumberFormatException ex) {
+            System.out.println("Invalid number: " + ex.getMessage());
+        } catch (InvalidInputException | IllegalArgumentException ex) {
+            System.out.println("Error: " + ex.getMessage());
+        }
+    }
+
+    private static String limitText(long limit) {
+        return limit == 0 ? "no limit" : Money.format(limit);
+    }
+
+    private static void runLedgerArchival() throws SQLException {
+        if (!"mysql".equals(service.getBackend().getName())) {
+            System.out.println("Ledger archival runs against the MySQL backend only.");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            long rows = new LedgerArchiveJob().run(YearMonth.now());
+            System.out.println("Archived " + rows + " ledger rows in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted before the archived partitions were dropped; run again to finish.");
+        }
+    }
+
+    private static void exportStatements() throws SQLException {
+        System.out.print("Month (YYYY-MM): ");
+        YearMonth month;
+        try {
+            month = YearMonth.parse(scanner.nextLine().trim());
+        } catch (DateTimeParseException ex) {
+            System.out.println("Invalid month format.");
+            return;
+        }
+        System.out.print("Output CSV file: ");
+        String path = scanner.nextLine().trim();
+        long start = System.currentTimeMillis();
+        try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            long rows = service.exportStatements(month, out, ExportWriter.Format.CSV);
+            System.out.println("Wrote " + rows + " statements to " + path + " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException ex) {
+            System.out.println("Could not write file: " + ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package banking.bench;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.models.Account;
+import banking.services.AsyncBankService;
+import banking.services.BankService;
+import banking.utils.Money;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Puts every transfer in flight at once through AsyncBankService, waits for all of them, and reports
+ * throughput, the peak number of live OS threads, and whether money was conserved.
+ * Usage: AsyncTransferBenchmark [accounts] [transfers] [maxConcurrency]
+ * Exits with status 1 if money was created or destroyed.
+ */
+public class AsyncTransferBenchmark {
+    private static final long INITIAL_BALANCE = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int transfers = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        BankService service = new BankService();
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : service.getBackend().getParallelism();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        int[] ids = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = service.createAccount(new Account("Async " + i, "async-" + run + "-" + i + "@example.com",
+                    "0000000000", "x", INITIAL_BALANCE));
+        }
+
+        LongAdder ok = new LongAdder();
+        LongAdder insufficient = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        try (AsyncBankService async = new AsyncBankService(service, limit)) {
+            CompletableFuture<?>[] all = new CompletableFuture<?>[transfers];
+            long start = System.nanoTime();
+            for (int i = 0; i < transfers; i++) {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                int from = ids[rnd.nextInt(accounts)];
+                int to = ids[rnd.nextInt(accounts)];
+                while (to == from) to = ids[rnd.nextInt(accounts)];
+                all[i] = async.transfer(from, to, 1 + rnd.nextInt(20_000)).whenComplete((v, e) -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause == null) ok.increment();
+                    else if (cause instanceof InsufficientFundsException) insufficient.increment();
+                    else failed.increment();
+                });
+            }
+            long submitted = System.nanoTime();
+            CompletableFuture.allOf(all).exceptionally(e -> null).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d transfers in flight (limit %d) submitted in %d ms, done in %.2fs (%.0f/s)%n", transfers,
+                    limit, (submitted - start) / 1_000_000, seconds, transfers / seconds);
+        }
+        System.out.printf("ok=%d insufficient=%d failed=%d peak OS threads=%d%n", ok.sum(), insufficient.sum(), failed.sum(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+
+        long total = 0;
+        for (int id : ids) total += service.getBalance(id);
+        long expected = accounts * INITIAL_BALANCE;
+        System.out.println("expected total=" + Money.format(expected) + " actual total=" + Money.format(total));
+        if (total != expected) {
+            System.out.println("FAILED: money was not conserved");
+            System.exit(1);
+        }
+        System.out.println("PASSED: money conserved");
+    }
+}
@@ -0,0 +1,200 @@
+package banking.bench;
+
+import banking.dao.AccountDAO;
+import banking.dao.DatabaseConnection;
+import banking.dao.TransactionDAO;
+import banking.models.Account;
+import banking.models.Transaction;
+import banking.services.BankService;
+import banking.utils.PasswordUtil;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and p50/p99 latency of the BankService hot paths at several thread counts and data sizes.
+ * Runs against the database configured with -Dbank.db.url: a local MySQL instance, or an embedded
+ * MySQL-compatible database on the classpath (e.g. jdbc:h2:mem:bank_db;MODE=MySQL;DB_CLOSE_DELAY=-1).
+ * With -Dbank.storage=memory it runs against the in-process engine instead and needs no database.
+ * Options, as system properties:
+ *   bench.schema    path to db/schema.sql to apply first (for a fresh embedded database)
+ *   bench.accounts  comma-separated data sizes, default 1000,10000
+ *   bench.threads   comma-separated thread counts, default 1,4,16 (keep bank.pool.size at least this high)
+ *   bench.seconds   measured seconds per scenario after a 1s warm-up, default 5
+ *   bench.history   ledger rows seeded per account, default 20
+ *   bench.ops       comma-separated subset of deposit,withdraw,transfer,login,history,statement
+ * The same operations run under JMH in the jmh module (banking.jmh.BankServiceHotPaths), which reuses the seeding.
+ */
+public class BankServiceBenchmark {
+    public static final String PASSWORD = "bench";
+    // One hash shared by every seeded account, so seeding does not pay for PBKDF2 per row
+    private static final String PASSWORD_HASH = PasswordUtil.hash(PASSWORD);
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+
+    private interface Operation {
+        void run(BankService service, int[] ids, ThreadLocalRandom rnd) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = ints(System.getProperty("bench.accounts", "1000,10000"));
+        int[] threadCounts = ints(System.getProperty("bench.threads", "1,4,16"));
+        int seconds = Integer.getInteger("bench.seconds", 5);
+        int history = Integer.getInteger("bench.history", 20);
+        String[] ops = System.getProperty("bench.ops", "deposit,withdraw,transfer,login,history").split(",");
+
+        BankService service = new BankService();
+        boolean memory = "memory".equals(service.getBackend().getName());
+        String schema = System.getProperty("bench.schema");
+        if (schema != null && !memory) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                SchemaLoader.load(conn, Paths.get(schema));
+            }
+        }
+
+        List<Integer> seeded = new ArrayList<>();
+        System.out.printf("%-9s %8s %7s %12s %10s %10s %7s%n", "op", "accounts", "threads", "ops/s", "p50(us)", "p99(us)", "errors");
+        for (int size : sizes) {
+            if (memory) seedService(service, seeded, size, history);
+            else seed(seeded, size, history);
+            int[] ids = seeded.stream().mapToInt(Integer::intValue).limit(size).toArray();
+            for (String op : ops) {
+                Operation operation = operation(op.trim());
+                for (int threads : threadCounts) {
+                    run(op.trim(), operation, service, ids, threads, 1);
+                    Result r = run(op.trim(), operation, service, ids, threads, seconds);
+                    System.out.printf("%-9s %8d %7d %12.1f %10.1f %10.1f %7d%n", op.trim(), size, threads,
+                            r.opsPerSec, r.p50Nanos / 1e3, r.p99Nanos / 1e3, r.errors);
+                }
+            }
+        }
+        if (memory) {
+            System.out.println(service.getBackend());
+        } else {
+            System.out.println(DatabaseConnection.getPool());
+            System.out.println(AccountDAO.getCache());
+        }
+    }
+
+    private static Operation operation(String name) {
+        switch (name) {
+            case "deposit": return (s, ids, rnd) -> s.deposit(pick(ids, rnd), 100);
+            case "withdraw": return (s, ids, rnd) -> s.withdraw(pick(ids, rnd), 100);
+            case "transfer": return (s, ids, rnd) -> {
+                int from = pick(ids, rnd);
+                int to = pick(ids, rnd);
+                while (to == from) to = pick(ids, rnd);
+                s.transfer(from, to, 100);
+            };
+            case "login": return (s, ids, rnd) -> s.login(pick(ids, rnd), PASSWORD);
+            case "history": return (s, ids, rnd) -> s.getTransactionsPage(pick(ids, rnd), null, 20);
+            case "statement": return (s, ids, rnd) -> s.getMonthlyStatement(pick(ids, rnd), YearMonth.now());
+            default: throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    private static int pick(int[] ids, ThreadLocalRandom rnd) {
+        return ids[rnd.nextInt(ids.length)];
+    }
+
+    private static final class Result {
+        double opsPerSec;
+        long p50Nanos;
+        long p99Nanos;
+        long errors;
+    }
+
+    private static Result run(String op, Operation operation, BankService service, int[] ids, int threads, int seconds)
+            throws InterruptedException {
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) {
+                        try {
+                            operation.run(service, ids, rnd);
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        recorder.record(System.nanoTime() - now);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-" + op + "-" + i);
+            t.start();
+        }
+        done.await();
+        long[] all = LatencyRecorder.merge(recorders);
+
+        Result r = new Result();
+        r.opsPerSec = all.length / ((System.nanoTime() - start) / 1e9);
+        r.p50Nanos = LatencyRecorder.percentile(all, 50);
+        r.p99Nanos = LatencyRecorder.percentile(all, 99);
+        r.errors = errors.sum();
+        return r;
+    }
+
+    // Tops the seeded account list up to size accounts, each with a few ledger rows for history reads.
+    public static void seed(List<Integer> seeded, int size, int history) throws SQLException {
+        if (seeded.size() >= size) return;
+        AccountDAO accountDAO = new AccountDAO();
+        TransactionDAO transactionDAO = new TransactionDAO();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long start = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            List<Transaction> rows = new ArrayList<>();
+            for (int i = seeded.size(); i < size; i++) {
+                int id = accountDAO.createAccount(conn, new Account("Bench " + i, "bench-" + run + "-" + i + "@example.com",
+                        "0000000000", PASSWORD_HASH, INITIAL_BALANCE));
+                seeded.add(id);
+                for (int h = 0; h < history; h++) {
+                    Transaction t = new Transaction(id, "Deposit", 100, "Benchmark seed");
+                    t.setBalanceAfter(INITIAL_BALANCE - (history - 1 - h) * 100L);
+                    rows.add(t);
+                }
+                if (rows.size() >= 1000 || i == size - 1) {
+                    transactionDAO.insertTransactions(conn, rows);
+                    rows.clear();
+                    conn.commit();
+                }
+            }
+            conn.commit();
+        }
+        System.out.printf("-- seeded %d accounts in %d ms%n", size, System.currentTimeMillis() - start);
+    }
+
+    // Same seeding through the service, for the in-memory backend.
+    public static void seedService(BankService service, List<Integer> seeded, int size, int history) throws Exception {
+        if (seeded.size() >= size) return;
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long start = System.currentTimeMillis();
+        for (int i = seeded.size(); i < size; i++) {
+            int id = service.createAccount(new Account("Bench " + i, "bench-" + run + "-" + i + "@example.com",
+                    "0000000000", PASSWORD_HASH, INITIAL_BALANCE));
+            seeded.add(id);
+            for (int h = 0; h < history; h++) service.deposit(id, 100);
+        }
+        System.out.printf("-- seeded %d accounts in %d ms%n", size, System.currentTimeMillis() - start);
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
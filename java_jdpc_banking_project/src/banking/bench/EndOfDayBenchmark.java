@@ -0,0 +1,90 @@
+package banking.bench;
+
+import banking.dao.AccountDAO;
+import banking.dao.DatabaseConnection;
+import banking.dao.TransactionDAO;
+import banking.jobs.EndOfDayJob;
+import banking.models.Account;
+import banking.models.EndOfDayReport;
+import banking.models.Transaction;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-of-day job over a seeded ledger: seeds bench.accounts accounts with bench.history consistent ledger rows
+ * each (defaults 100000 x 100 = ten million rows), runs the job for a fresh business date, then runs the same
+ * date again to show that finished ranges are skipped. Needs -Dbank.db.url like BankServiceBenchmark.
+ *   bench.schema       path to db/schema.sql to apply first (for a fresh embedded database)
+ *   bench.accounts     default 100000
+ *   bench.history      ledger rows per account, default 100
+ *   bench.rateBps      annual interest rate in basis points, default 250
+ *   bench.parallelism  fork-join workers, default bank.eod.parallelism
+ * Exits with status 1 if the job reports mismatches or failed ranges.
+ */
+public class EndOfDayBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = Integer.getInteger("bench.accounts", 100_000);
+        int history = Integer.getInteger("bench.history", 100);
+        int rateBps = Integer.getInteger("bench.rateBps", 250);
+        String schema = System.getProperty("bench.schema");
+        if (schema != null) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                SchemaLoader.load(conn, Paths.get(schema));
+            }
+        }
+        seed(accounts, history);
+
+        Integer parallelism = Integer.getInteger("bench.parallelism");
+        EndOfDayJob job = parallelism != null ? new EndOfDayJob(rateBps, parallelism) : new EndOfDayJob(rateBps);
+        // A date no earlier run has checkpointed
+        LocalDate date = LocalDate.now().plusDays(1 + System.currentTimeMillis() % 100_000);
+        EndOfDayReport first = job.run(date);
+        print("first run", first);
+        print("rerun", job.run(date));
+        if (first.getMismatches() > 0 || !first.isComplete()) {
+            first.getProblems().forEach(p -> System.out.println("  " + p));
+            System.exit(1);
+        }
+    }
+
+    private static void print(String label, EndOfDayReport r) {
+        double seconds = Math.max(1, r.getElapsedMillis()) / 1e3;
+        System.out.printf("%-9s %d ranges (%d skipped, %d failed), %d accounts, %d ledger rows, %d interest postings in %.1fs"
+                        + " (%.0f rows/s)%n", label, r.getRanges(), r.getRangesAlreadyDone(), r.getRangesFailed(), r.getAccounts(),
+                r.getLedgerRows(), r.getInterestAccounts(), seconds, r.getLedgerRows() / seconds);
+    }
+
+    // Each account gets history deposits whose balance_after chain ends at its balance, as the ledger engine writes them
+    private static void seed(int accounts, int history) throws Exception {
+        AccountDAO accountDAO = new AccountDAO();
+        TransactionDAO transactionDAO = new TransactionDAO();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long start = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            List<Transaction> rows = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                int id = accountDAO.createAccount(conn, new Account("Eod " + i, "eod-" + run + "-" + i + "@example.com",
+                        "0000000000", "x", INITIAL_BALANCE));
+                for (int h = 0; h < history; h++) {
+                    Transaction t = new Transaction(id, "Deposit", 100, "Benchmark seed");
+                    t.setBalanceAfter(INITIAL_BALANCE - (history - 1 - h) * 100L);
+                    rows.add(t);
+                }
+                if (rows.size() >= 5000 || i == accounts - 1) {
+                    transactionDAO.insertTransactions(conn, rows);
+                    rows.clear();
+                    conn.commit();
+                }
+            }
+            conn.commit();
+        }
+        System.out.printf("-- seeded %d accounts x %d rows in %d ms%n", accounts, history, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,146 @@
+package banking.bench;
+
+import banking.dao.StorageBackend;
+import banking.events.EventLog;
+import banking.events.EventRelay;
+import banking.exceptions.InsufficientFundsException;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.services.BankService;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost and completeness of the ledger event stream. Runs 50% transfers and 50% deposits on bench.threads
+ * threads against the configured backend (-Dbank.storage, as BankServiceBenchmark) with a subscriber on the
+ * EventRelay, then waits for the stream to catch up and checks that every ledger row written reached both
+ * the subscriber and the event log. Run once with -Dbench.events=false for the throughput without events.
+ *   bench.events    default true; bank.events.dir defaults to a temp directory
+ *   bench.accounts  default 1000
+ *   bench.threads   default 8
+ *   bench.seconds   default 5
+ * Commit-to-subscriber latency is printed for the memory backend only; MySQL timestamps are whole seconds.
+ * Exits with status 1 if a row is missing from the stream.
+ */
+public class EventStreamBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        boolean events = Boolean.parseBoolean(System.getProperty("bench.events", "true"));
+        int accounts = Integer.getInteger("bench.accounts", 1_000);
+        int threads = Integer.getInteger("bench.threads", 8);
+        int seconds = Integer.getInteger("bench.seconds", 5);
+        // Before the storage classes load: the outbox is switched on by bank.events.dir
+        if (events && System.getProperty("bank.events.dir") == null) {
+            System.setProperty("bank.events.dir", Files.createTempDirectory("bank-events").toString());
+        }
+
+        StorageBackend backend = StorageBackend.fromConfig();
+        EventRelay relay = EventRelay.fromConfig(backend.getOutbox());
+        BankService service = new BankService(backend, relay);
+        if (events && relay == null) throw new IllegalStateException("No event relay; is bank.events.outbox off?");
+        String run = Long.toString(System.nanoTime(), 36);
+        int[] ids = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = service.createAccount(new Account("Events " + i, "events-" + run + "-" + i + "@example.com",
+                    "0000000000", "x", INITIAL_BALANCE));
+        }
+
+        Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+        LatencyRecorder latency = new LatencyRecorder();
+        boolean timed = "memory".equals(backend.getName());
+        long firstOffset = 0;
+        if (relay != null) {
+            Thread.sleep(500); // let the relay drain the account-opening backlog, if any
+            firstOffset = relay.getLastOffset();
+            relay.subscribe("bench", e -> {
+                delivered.add(e.getTransactionId());
+                if (timed) latency.record(Duration.between(e.getTimestamp(), LocalDateTime.now()).toNanos());
+            });
+        }
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        LongAdder rows = new LongAdder();
+        long elapsed = run(service, ids, threads, seconds, recorders, rows);
+        long[] all = LatencyRecorder.merge(recorders);
+        System.out.printf("%s backend, events %s: %.1f ops/s, p50 %.1f us, p99 %.1f us, %d ledger rows%n",
+                backend.getName(), events ? "on" : "off", all.length / (elapsed / 1e9),
+                LatencyRecorder.percentile(all, 50) / 1e3, LatencyRecorder.percentile(all, 99) / 1e3, rows.sum());
+        if (relay == null) return;
+
+        long drainStart = System.nanoTime();
+        while (delivered.size() < rows.sum() && System.nanoTime() - drainStart < 30_000_000_000L) Thread.sleep(10);
+        System.out.printf("stream caught up %.1f ms after the load stopped; %d rows delivered%n",
+                (System.nanoTime() - drainStart) / 1e6, delivered.size());
+        if (timed) {
+            long[] sorted = LatencyRecorder.merge(List.of(latency));
+            System.out.printf("commit to subscriber: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                    LatencyRecorder.percentile(sorted, 50) / 1e3, LatencyRecorder.percentile(sorted, 99) / 1e3,
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e3);
+        }
+
+        Set<Integer> logged = ConcurrentHashMap.newKeySet();
+        try (EventLog.Reader reader = EventLog.tail(relay.getDirectory(), firstOffset)) {
+            while (reader.poll(10_000, e -> logged.add(e.getTransactionId())) > 0) {
+                // read to the end
+            }
+        }
+        System.out.printf("event log holds %d of them%n", logged.size());
+        if (Metrics.ENABLED) System.out.println(Metrics.render());
+        if (delivered.size() != rows.sum() || !logged.containsAll(delivered)) {
+            System.out.println("rows missing from the event stream");
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    // Returns the elapsed nanos; rows counts the ledger rows written
+    private static long run(BankService service, int[] ids, int threads, int seconds, List<LatencyRecorder> recorders,
+                            LongAdder rows) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) {
+                        int from = ids[rnd.nextInt(ids.length)];
+                        int to = ids[rnd.nextInt(ids.length)];
+                        try {
+                            if (rnd.nextBoolean() && to != from) {
+                                service.transfer(from, to, 1 + rnd.nextInt(1000));
+                                rows.add(2);
+                            } else {
+                                service.deposit(from, 100);
+                                rows.increment();
+                            }
+                        } catch (InsufficientFundsException e) {
+                            // part of the mix
+                        } catch (Exception e) {
+                            System.err.println(e.getMessage());
+                        }
+                        recorder.record(System.nanoTime() - now);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            t.start();
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+}
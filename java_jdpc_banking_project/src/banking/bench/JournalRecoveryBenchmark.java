@@ -0,0 +1,128 @@
+package banking.bench;
+
+import banking.dao.InMemoryStore;
+import banking.exceptions.InsufficientFundsException;
+import banking.models.Account;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Journaled in-memory store: write throughput with group fsync, then time to recover from snapshot + journal.
+ * Creates bench.accounts accounts and runs bench.transfers random transfers on bench.threads threads,
+ * snapshotting halfway so recovery exercises both paths. Exits with status 1 if the recovered balances
+ * differ from those before shutdown.
+ *   bench.dir        data directory (default: a new temp directory)
+ *   bench.accounts   default 1000000
+ *   bench.transfers  default 1000000
+ *   bench.threads    default 16
+ */
+public class JournalRecoveryBenchmark {
+    private static final long INITIAL_BALANCE = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        String dirProp = System.getProperty("bench.dir");
+        Path dir = dirProp != null ? Paths.get(dirProp) : Files.createTempDirectory("bank-journal");
+        int accounts = Integer.getInteger("bench.accounts", 1_000_000);
+        int transfers = Integer.getInteger("bench.transfers", 1_000_000);
+        int threads = Integer.getInteger("bench.threads", 16);
+        System.setProperty("bank.journal.snapshotIntervalMs", "0");
+
+        long[] before;
+        try (InMemoryStore store = InMemoryStore.open(dir)) {
+            String run = Long.toString(System.currentTimeMillis(), 36);
+            int[] ids = new int[accounts];
+            long start = System.nanoTime();
+            parallel(threads, accounts, i -> ids[i] = store.createAccount(new Account("Bench " + i,
+                    "journal-" + run + "-" + i + "@example.com", "0000000000", "x", INITIAL_BALANCE)));
+            report("create", accounts, start);
+
+            LongAdder insufficient = new LongAdder();
+            int half = transfers / 2;
+            for (int phase = 0; phase < 2; phase++) {
+                start = System.nanoTime();
+                int count = phase == 0 ? half : transfers - half;
+                parallel(threads, count, i -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    int from = ids[rnd.nextInt(accounts)];
+                    int to = ids[rnd.nextInt(accounts)];
+                    if (from == to) return;
+                    try {
+                        store.transfer(from, to, 1 + rnd.nextInt(20_000));
+                    } catch (InsufficientFundsException e) {
+                        insufficient.increment();
+                    }
+                });
+                report("transfer", count, start);
+                if (phase == 0) {
+                    start = System.nanoTime();
+                    store.snapshot();
+                    System.out.printf("snapshot   %d ms%n", (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+            System.out.println(store.getJournal());
+            before = balances(store);
+        }
+
+        long start = System.nanoTime();
+        try (InMemoryStore recovered = InMemoryStore.open(dir)) {
+            System.out.printf("recovery   %d ms for %d accounts%n", (System.nanoTime() - start) / 1_000_000, accounts);
+            long[] after = balances(recovered);
+            boolean same = Arrays.equals(before, after);
+            System.out.println(same ? "OK: balances match after recovery" : "FAIL: balances differ after recovery");
+            if (!same) System.exit(1);
+        }
+    }
+
+    private interface Task {
+        void run(int i) throws Exception;
+    }
+
+    // Runs task(0..count-1) spread over threads, rethrowing the first failure.
+    private static void parallel(int threads, int count, Task task) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        List<Exception> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < count) {
+                    try {
+                        task.run(i);
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                        return;
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) worker.join();
+        if (!errors.isEmpty()) throw errors.get(0);
+    }
+
+    private static void report(String what, int count, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-10s %d in %.2f s (%.0f ops/s)%n", what, count, seconds, count / seconds);
+    }
+
+    private static long[] balances(InMemoryStore store) {
+        List<Account> all = store.findAll();
+        long[] result = new long[all.size() * 2];
+        for (int i = 0; i < all.size(); i++) {
+            result[2 * i] = all.get(i).getAccountId();
+            result[2 * i + 1] = all.get(i).getBalance();
+        }
+        return result;
+    }
+}
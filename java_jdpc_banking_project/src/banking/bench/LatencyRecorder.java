@@ -0,0 +1,41 @@
+package banking.bench;
+
+import java.util.Arrays;
+
+/**
+ * Collects raw latency samples for one benchmark thread. Recorders from all threads are merged
+ * and sorted once at the end, so percentiles are exact rather than bucketed.
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1 << 14];
+    private int count;
+
+    public void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public static long[] merge(Iterable<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder r : recorders) total += r.count;
+        long[] all = new long[total];
+        int pos = 0;
+        for (LatencyRecorder r : recorders) {
+            System.arraycopy(r.samples, 0, all, pos, r.count);
+            pos += r.count;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    // p in [0, 100]; expects a sorted array from merge()
+    public static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
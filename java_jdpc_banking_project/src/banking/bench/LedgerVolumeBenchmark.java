@@ -0,0 +1,172 @@
+package banking.bench;
+
+import banking.dao.AccountDAO;
+import banking.dao.DatabaseConnection;
+import banking.dao.TransactionDAO;
+import banking.models.Account;
+import banking.models.Page;
+import banking.models.Transaction;
+import banking.utils.Money;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * History query latency as the ledger grows. bench.accounts accounts are created once; each step then tops
+ * every account's history up to that step's row count, with timestamps spread over the last bench.months
+ * months, and times bench.samples calls of each history query against random accounts:
+ *   page1     newest page of 20 (TransactionDAO.findPage)
+ *   page5     fifth page, following the keyset cursor
+ *   balance   balance as of a random instant (findLastBefore)
+ *   month     one random month of rows (findRange), as a statement reads it
+ * Needs -Dbank.db.url like BankServiceBenchmark.
+ *   bench.schema     path to db/schema.sql to apply first (for a fresh embedded database)
+ *   bench.accounts   default 2000
+ *   bench.steps      comma-separated ledger rows per account, default 10,100,1000
+ *   bench.months     default 24
+ *   bench.samples    default 2000
+ *   bench.maxGrowth  allowed p99 growth from the first step to the last, default 3
+ * Exits with status 1 if any query's p99 grows by more than bench.maxGrowth.
+ */
+public class LedgerVolumeBenchmark {
+    private static final String[] QUERIES = {"page1", "page5", "balance", "month"};
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = Integer.getInteger("bench.accounts", 2_000);
+        int[] steps = Arrays.stream(System.getProperty("bench.steps", "10,100,1000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        int months = Integer.getInteger("bench.months", 24);
+        int samples = Integer.getInteger("bench.samples", 2_000);
+        double maxGrowth = Double.parseDouble(System.getProperty("bench.maxGrowth", "3"));
+        String schema = System.getProperty("bench.schema");
+        if (schema != null) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                SchemaLoader.load(conn, Paths.get(schema));
+            }
+        }
+
+        int[] ids = createAccounts(accounts);
+        TransactionDAO dao = new TransactionDAO();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = now.minusMonths(months);
+        System.out.printf("%12s %10s", "rows", "rows/acct");
+        for (String q : QUERIES) System.out.printf(" %10s %10s", q + " p50", "p99(us)");
+        System.out.println();
+
+        long[] firstP99 = null;
+        long[] lastP99 = null;
+        int perAccount = 0;
+        for (int step : steps) {
+            seed(ids, perAccount, step, oldest, now);
+            perAccount = Math.max(perAccount, step);
+            for (int i = 0; i < Math.min(samples, 200); i++) page(dao, ids[i % ids.length], 1); // warm the buffer pool
+            long[][] sorted = new long[QUERIES.length][];
+            for (int q = 0; q < QUERIES.length; q++) sorted[q] = time(q, dao, ids, samples, oldest, now, months);
+            System.out.printf("%12d %10d", (long) ids.length * perAccount, perAccount);
+            long[] p99 = new long[QUERIES.length];
+            for (int q = 0; q < QUERIES.length; q++) {
+                p99[q] = LatencyRecorder.percentile(sorted[q], 99);
+                System.out.printf(" %10.1f %10.1f", LatencyRecorder.percentile(sorted[q], 50) / 1e3, p99[q] / 1e3);
+            }
+            System.out.println();
+            if (firstP99 == null) firstP99 = p99;
+            lastP99 = p99;
+        }
+
+        boolean flat = true;
+        for (int q = 0; q < QUERIES.length; q++) {
+            double growth = (double) lastP99[q] / Math.max(1, firstP99[q]);
+            System.out.printf("%-8s p99 x%.2f from the first step to the last%n", QUERIES[q], growth);
+            if (growth > maxGrowth) flat = false;
+        }
+        if (!flat) System.exit(1);
+    }
+
+    private static long[] time(int query, TransactionDAO dao, int[] ids, int samples, LocalDateTime oldest,
+                               LocalDateTime now, int months) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long span = Duration.between(oldest, now).getSeconds();
+        for (int i = 0; i < samples; i++) {
+            int id = ids[rnd.nextInt(ids.length)];
+            long t0 = System.nanoTime();
+            switch (query) {
+                case 0: page(dao, id, 1); break;
+                case 1: page(dao, id, 5); break;
+                case 2: dao.findLastBefore(id, oldest.plusSeconds(rnd.nextLong(span))); break;
+                default: {
+                    YearMonth m = YearMonth.from(now).minusMonths(rnd.nextInt(months));
+                    dao.findRange(id, m.atDay(1).atStartOfDay(), m.plusMonths(1).atDay(1).atStartOfDay());
+                }
+            }
+            recorder.record(System.nanoTime() - t0);
+        }
+        return LatencyRecorder.merge(List.of(recorder));
+    }
+
+    private static void page(TransactionDAO dao, int id, int pages) throws Exception {
+        Transaction after = null;
+        for (int i = 0; i < pages; i++) {
+            Page<Transaction> page = dao.findPage(id, after, PAGE_SIZE);
+            if (!page.hasMore()) return;
+            after = page.getLast();
+        }
+    }
+
+    private static int[] createAccounts(int accounts) throws Exception {
+        AccountDAO accountDAO = new AccountDAO();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        int[] ids = new int[accounts];
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < accounts; i++) {
+                ids[i] = accountDAO.createAccount(conn, new Account("Volume " + i, "volume-" + run + "-" + i + "@example.com",
+                        "0000000000", "x", 0));
+            }
+            conn.commit();
+        }
+        return ids;
+    }
+
+    // Rows from..to-1 of every account's history, at random instants; the balance chain does not matter here
+    private static void seed(int[] ids, int from, int to, LocalDateTime oldest, LocalDateTime now) throws Exception {
+        if (to <= from) return;
+        String sql = "INSERT INTO transactions (account_id, type, amount, timestamp, remarks, balance_after) VALUES (?,?,?,?,?,?)";
+        long span = Duration.between(oldest, now).getSeconds();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long start = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            int batched = 0;
+            for (int id : ids) {
+                for (int h = from; h < to; h++) {
+                    ps.setInt(1, id);
+                    ps.setString(2, "Deposit");
+                    ps.setBigDecimal(3, Money.toDecimal(100));
+                    ps.setTimestamp(4, Timestamp.valueOf(oldest.plusSeconds(rnd.nextLong(span))));
+                    ps.setString(5, "Benchmark seed");
+                    ps.setBigDecimal(6, Money.toDecimal(100L * (h + 1)));
+                    ps.addBatch();
+                    if (++batched == 5000) {
+                        ps.executeBatch();
+                        conn.commit();
+                        batched = 0;
+                    }
+                }
+            }
+            ps.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        System.out.printf("-- seeded %d rows in %d ms%n", (long) ids.length * (to - from), System.currentTimeMillis() - start);
+    }
+}
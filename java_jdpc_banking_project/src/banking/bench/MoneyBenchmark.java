@@ -0,0 +1,75 @@
+package banking.bench;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the balance hot path (apply a stream of deposits/withdrawals, then aggregate all balances)
+ * with long minor units, BigDecimal and double. Each variant is warmed up before it is measured.
+ * Usage: MoneyBenchmark [accounts] [operations]
+ */
+public class MoneyBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        int[] targets = new int[operations];
+        long[] amounts = new long[operations];
+        for (int i = 0; i < operations; i++) {
+            targets[i] = rnd.nextInt(accounts);
+            amounts[i] = rnd.nextLong(-50_000, 100_000);
+        }
+
+        System.out.printf("%d accounts, %d balance updates + full sum per round%n", accounts, operations);
+        measure("long", () -> runLong(accounts, targets, amounts), operations);
+        measure("BigDecimal", () -> runBigDecimal(accounts, targets, amounts), operations);
+        measure("double", () -> runDouble(accounts, targets, amounts), operations);
+    }
+
+    private interface Variant {
+        String run();
+    }
+
+    private static void measure(String label, Variant variant, int operations) {
+        String result = null;
+        for (int i = 0; i < ROUNDS; i++) result = variant.run(); // warm-up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            result = variant.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-11s %8.2f ns/update  total=%s%n", label, (double) best / operations, result);
+    }
+
+    private static String runLong(int accounts, int[] targets, long[] amounts) {
+        long[] balances = new long[accounts];
+        for (int i = 0; i < targets.length; i++) balances[targets[i]] += amounts[i];
+        long total = 0;
+        for (long b : balances) total += b;
+        return Long.toString(total);
+    }
+
+    private static String runBigDecimal(int accounts, int[] targets, long[] amounts) {
+        BigDecimal[] balances = new BigDecimal[accounts];
+        Arrays.fill(balances, BigDecimal.ZERO.setScale(2));
+        for (int i = 0; i < targets.length; i++) {
+            balances[targets[i]] = balances[targets[i]].add(BigDecimal.valueOf(amounts[i], 2));
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal b : balances) total = total.add(b);
+        return total.unscaledValue().toString();
+    }
+
+    private static String runDouble(int accounts, int[] targets, long[] amounts) {
+        double[] balances = new double[accounts];
+        for (int i = 0; i < targets.length; i++) balances[targets[i]] += amounts[i] / 100.0;
+        double total = 0;
+        for (double b : balances) total += b;
+        return Long.toString(Math.round(total * 100));
+    }
+}
@@ -0,0 +1,94 @@
+package banking.bench;
+
+import banking.dao.DatabaseConnection;
+import banking.utils.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares deposit throughput with and without the connection pool.
+ * Usage: PoolBenchmark [firstAccountId] [threads] [seconds]
+ * Thread i deposits into account firstAccountId + i, so those accounts must exist.
+ */
+public class PoolBenchmark {
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int firstAccount = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.printf("Deposit benchmark: %d threads, %ds per run%n", threads, seconds);
+        double unpooled = run("unpooled", DatabaseConnection::getUnpooledConnection, firstAccount, threads, seconds);
+        double pooled = run("pooled", DatabaseConnection::getConnection, firstAccount, threads, seconds);
+        System.out.printf("Speedup: %.2fx%n", pooled / unpooled);
+        System.out.println(DatabaseConnection.getPool());
+    }
+
+    private static double run(String label, ConnectionSource source, int firstAccount, int threads, int seconds)
+            throws InterruptedException {
+        run(source, firstAccount, threads, 2); // warm-up
+        long start = System.nanoTime();
+        long ops = run(source, firstAccount, threads, seconds);
+        double opsPerSec = ops / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("%-9s %10d ops  %10.1f ops/s%n", label, ops, opsPerSec);
+        return opsPerSec;
+    }
+
+    private static long run(ConnectionSource source, int firstAccount, int threads, int seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder ops = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            int accountId = firstAccount + i;
+            Thread t = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        try {
+                            deposit(source, accountId);
+                            ops.increment();
+                        } catch (SQLException e) {
+                            errors.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            t.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        if (errors.sum() > 0) System.out.println("  errors: " + errors.sum());
+        return ops.sum();
+    }
+
+    private static void deposit(ConnectionSource source, int accountId) throws SQLException {
+        try (Connection conn = source.get()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET balance = balance + ? WHERE account_id = ?")) {
+                ps.setBigDecimal(1, Money.toDecimal(1));
+                ps.setInt(2, accountId);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO transactions (account_id, type, amount, remarks) VALUES (?,?,?,?)")) {
+                ps.setInt(1, accountId);
+                ps.setString(2, "Deposit");
+                ps.setBigDecimal(3, Money.toDecimal(1));
+                ps.setString(4, "Pool benchmark");
+                ps.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+}
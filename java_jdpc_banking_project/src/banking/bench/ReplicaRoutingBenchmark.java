@@ -0,0 +1,119 @@
+package banking.bench;
+
+import banking.dao.AccountSort;
+import banking.dao.DatabaseConnection;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.Page;
+import banking.services.BankService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read/write splitting under load: bench.writers threads each deposit into accounts of their own and read the
+ * balance straight back, as Main does, while bench.readers threads page through account listings and other
+ * accounts' history. Start it with -Dbank.db.url pointing at the primary and -Dbank.db.replicas at one or more
+ * replicas (two local MySQL instances with replication set up between them will do; a plain second server is
+ * taken as a replica only with -Dbank.db.allowStandaloneReplica=true). Stop a replica mid-run to see reads fail
+ * over to the primary and come back once it passes a health check.
+ *   bench.accounts  accounts per writer, default 100
+ *   bench.writers   default 4
+ *   bench.readers   default 4
+ *   bench.seconds   default 10
+ * A balance read back that misses the deposit just made counts as a stale read; exits with status 1 if any.
+ */
+public class ReplicaRoutingBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = Integer.getInteger("bench.accounts", 100);
+        int writers = Integer.getInteger("bench.writers", 4);
+        int readers = Integer.getInteger("bench.readers", 4);
+        int seconds = Integer.getInteger("bench.seconds", 10);
+
+        BankService service = new BankService();
+        System.out.println(DatabaseConnection.getReplicas());
+        String run = Long.toString(System.nanoTime(), 36);
+        int[][] owned = new int[writers][accounts];
+        for (int w = 0; w < writers; w++) {
+            for (int i = 0; i < accounts; i++) {
+                owned[w][i] = service.createAccount(new Account("Replica " + w + "-" + i,
+                        "replica-" + run + "-" + w + "-" + i + "@example.com", "0000000000", "x", INITIAL_BALANCE));
+            }
+        }
+
+        LongAdder stale = new LongAdder();
+        LongAdder errors = new LongAdder();
+        List<LatencyRecorder> writeLatency = new ArrayList<>();
+        List<LatencyRecorder> readLatency = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(writers + readers);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int w = 0; w < writers; w++) {
+            int[] ids = owned[w];
+            LatencyRecorder recorder = new LatencyRecorder();
+            writeLatency.add(recorder);
+            start("writer-" + w, done, () -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int id = ids[rnd.nextInt(ids.length)];
+                    long t0 = System.nanoTime();
+                    try {
+                        long before = service.getBalance(id);
+                        service.deposit(id, 100);
+                        if (service.getBalance(id) != before + 100) stale.increment();
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    recorder.record(System.nanoTime() - t0);
+                }
+            });
+        }
+        for (int r = 0; r < readers; r++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            readLatency.add(recorder);
+            start("reader-" + r, done, () -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                Account after = null;
+                while (System.nanoTime() < deadline) {
+                    long t0 = System.nanoTime();
+                    try {
+                        Page<Account> page = service.listAccounts(AccountSort.ID, after, 50);
+                        after = page.hasMore() ? page.getLast() : null;
+                        int[] ids = owned[rnd.nextInt(owned.length)];
+                        service.getTransactionsPage(ids[rnd.nextInt(ids.length)], null, 20);
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    recorder.record(System.nanoTime() - t0);
+                }
+            });
+        }
+        done.await();
+
+        long[] w = LatencyRecorder.merge(writeLatency);
+        long[] r = LatencyRecorder.merge(readLatency);
+        System.out.printf("writers: %.1f deposit+read/s, p50 %.1f us, p99 %.1f us%n", w.length / (double) seconds,
+                LatencyRecorder.percentile(w, 50) / 1e3, LatencyRecorder.percentile(w, 99) / 1e3);
+        System.out.printf("readers: %.1f reports/s, p50 %.1f us, p99 %.1f us%n", r.length / (double) seconds,
+                LatencyRecorder.percentile(r, 50) / 1e3, LatencyRecorder.percentile(r, 99) / 1e3);
+        System.out.printf("stale reads %d, errors %d%n", stale.sum(), errors.sum());
+        System.out.println(DatabaseConnection.getReplicas());
+        if (Metrics.ENABLED) System.out.println(Metrics.render());
+        System.exit(stale.sum() == 0 ? 0 : 1);
+    }
+
+    private static void start(String name, CountDownLatch done, Runnable body) {
+        Thread t = new Thread(() -> {
+            try {
+                body.run();
+            } finally {
+                done.countDown();
+            }
+        }, name);
+        t.start();
+    }
+}
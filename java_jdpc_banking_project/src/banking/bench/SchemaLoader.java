@@ -0,0 +1,43 @@
+package banking.bench;
+
+import banking.dao.MigrationRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+
+/**
+ * Applies db/schema.sql to whatever database the connection points at. CREATE DATABASE and USE
+ * are skipped because the JDBC URL already selects the database, which lets the same file seed a
+ * local MySQL instance or an embedded MySQL-compatible one (e.g. H2 with MODE=MySQL). PARTITION BY
+ * clauses are MySQL-only and are dropped elsewhere; on MySQL the ledger partitions are dated from the
+ * current month, as MigrationRunner does for a new database.
+ */
+public class SchemaLoader {
+    public static void load(Connection conn, Path schemaFile) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (String line : Files.readAllLines(schemaFile, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            sql.append(line).append('\n');
+        }
+        boolean mysql = "MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+        try (Statement st = conn.createStatement()) {
+            for (String statement : sql.toString().split(";")) {
+                String s = statement.trim();
+                if (s.isEmpty()) continue;
+                String upper = s.toUpperCase();
+                if (upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) continue;
+                int partitioning = upper.indexOf("\nPARTITION BY");
+                if (!mysql && partitioning >= 0) s = s.substring(0, partitioning);
+                st.execute(s);
+            }
+        }
+        if (mysql) MigrationRunner.datePartitions(conn, YearMonth.now());
+    }
+}
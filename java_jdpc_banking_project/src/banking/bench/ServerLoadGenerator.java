@@ -0,0 +1,173 @@
+package banking.bench;
+
+import banking.server.BankServer;
+import banking.services.BankService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load against BankServer: each connection opens its own account, logs in, then repeatedly
+ * sends a pipelined batch of requests (40% BALANCE, 20% each DEPOSIT, WITHDRAW and TRANSFER to another
+ * connection's account) and reads the answers. Reports requests/s and latency percentiles, where a
+ * request's latency runs from its batch being sent to its response arriving.
+ * Without bench.host an embedded server is started on a free port over -Dbank.storage.
+ * Options, as system properties:
+ *   bench.host         server to load, default: embedded
+ *   bench.port         default 7070
+ *   bench.connections  default 64
+ *   bench.pipeline     requests per batch, default 16
+ *   bench.seconds      measured seconds after a 1s warm-up, default 10
+ */
+public class ServerLoadGenerator {
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("bench.host");
+        int connections = Integer.getInteger("bench.connections", 64);
+        int pipeline = Integer.getInteger("bench.pipeline", 16);
+        int seconds = Integer.getInteger("bench.seconds", 10);
+
+        BankServer embedded = null;
+        int port = Integer.getInteger("bench.port", 7070);
+        if (host == null) {
+            host = "127.0.0.1";
+            embedded = new BankServer(new BankService(), host, 0);
+            embedded.start();
+            port = embedded.getPort();
+        }
+
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        List<Client> clients = new ArrayList<>();
+        long setup = System.nanoTime();
+        for (int i = 0; i < connections; i++) clients.add(new Client(host, port));
+        int[] ids = new int[connections];
+        runAll(clients, (c, i) -> ids[i] = c.open("load-" + run + "-" + i + "@example.com"));
+        runAll(clients, (c, i) -> c.login(ids[i]));
+        System.out.printf("-- %d connections logged in in %d ms%n", connections, (System.nanoTime() - setup) / 1_000_000);
+
+        long warmupEnd = System.nanoTime() + 1_000_000_000L;
+        long end = warmupEnd + seconds * 1_000_000_000L;
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        runAll(clients, (c, i) -> c.load(ids, ids[i], pipeline, warmupEnd, end, rejected, failed));
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        for (Client c : clients) recorders.add(c.latencies);
+        long[] sorted = LatencyRecorder.merge(recorders);
+        System.out.printf("%d requests in %ds: %.0f req/s, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, business rejections %d, errors %d%n",
+                sorted.length, seconds, sorted.length / (double) seconds,
+                LatencyRecorder.percentile(sorted, 50) / 1e3, LatencyRecorder.percentile(sorted, 99) / 1e3,
+                LatencyRecorder.percentile(sorted, 99.9) / 1e3, rejected.sum(), failed.sum());
+
+        for (Client c : clients) c.close();
+        if (embedded != null) embedded.close();
+    }
+
+    private interface ClientTask {
+        void run(Client client, int index) throws Exception;
+    }
+
+    // Runs task on every client, each on its own virtual thread, rethrowing the first failure
+    private static void runAll(List<Client> clients, ClientTask task) throws Exception {
+        Exception[] failure = new Exception[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients.size(); i++) {
+            int index = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    task.run(clients.get(index), index);
+                } catch (Exception e) {
+                    synchronized (failure) {
+                        if (failure[0] == null) failure[0] = e;
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) t.join();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    private static final class Client {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        final StringBuilder line = new StringBuilder();
+        final LatencyRecorder latencies = new LatencyRecorder();
+
+        Client(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream(), 8192);
+            out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        }
+
+        int open(String email) throws IOException {
+            return Integer.parseInt(call("OPEN " + email + " 0000000000 load 1000000 Load Client").substring(3));
+        }
+
+        void login(int id) throws IOException {
+            call("LOGIN " + id + " load");
+        }
+
+        void load(int[] ids, int self, int pipeline, long warmupEnd, long end, LongAdder rejected, LongAdder failed) throws IOException {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                for (int i = 0; i < pipeline; i++) send(request(ids, self, rnd));
+                out.flush();
+                for (int i = 0; i < pipeline; i++) {
+                    String response = readLine();
+                    long done = System.nanoTime();
+                    if (response.startsWith("ERR FUNDS")) rejected.increment();
+                    else if (!response.startsWith("OK")) failed.increment();
+                    if (now >= warmupEnd) latencies.record(done - now);
+                }
+            }
+        }
+
+        private static String request(int[] ids, int self, ThreadLocalRandom rnd) {
+            int r = rnd.nextInt(10);
+            if (r < 4) return "BALANCE";
+            if (r < 6) return "DEPOSIT 1.00";
+            if (r < 8) return "WITHDRAW 1.00";
+            int to = ids[rnd.nextInt(ids.length)];
+            return to == self ? "BALANCE" : "TRANSFER " + to + " 0.01";
+        }
+
+        private String call(String request) throws IOException {
+            send(request);
+            out.flush();
+            String response = readLine();
+            if (!response.startsWith("OK")) throw new IOException(request.split(" ")[0] + " failed: " + response);
+            return response;
+        }
+
+        private void send(String request) throws IOException {
+            out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) throw new IOException("Server closed the connection");
+                line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        void close() throws IOException {
+            send("QUIT");
+            out.flush();
+            socket.close();
+        }
+    }
+}
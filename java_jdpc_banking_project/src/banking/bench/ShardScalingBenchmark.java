@@ -0,0 +1,131 @@
+package banking.bench;
+
+import banking.dao.StorageBackend;
+import banking.exceptions.InsufficientFundsException;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.services.BankService;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of the sharded in-process engine as the shard count grows. Each scenario opens a fresh
+ * store with that many shards, seeds it, then runs a mix of 50% transfers between random accounts (so
+ * most cross shards), 25% deposits and 25% withdrawals on bench.threads threads per shard, and checks
+ * that money was conserved. Scaling needs at least as many cores as shards.
+ *   bench.shards    comma-separated shard counts, default 1,2,4,8
+ *   bench.accounts  default 10000
+ *   bench.threads   caller threads per shard, default 4
+ *   bench.seconds   measured seconds per scenario after a 1s warm-up, default 5
+ *   bench.journal   true to journal each scenario to a temp directory (fsync batching per shard), default false
+ * Exits with status 1 if any scenario loses or creates money.
+ */
+public class ShardScalingBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] shardCounts = Arrays.stream(System.getProperty("bench.shards", "1,2,4,8").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        int accounts = Integer.getInteger("bench.accounts", 10_000);
+        int threadsPerShard = Integer.getInteger("bench.threads", 4);
+        int seconds = Integer.getInteger("bench.seconds", 5);
+        boolean journal = Boolean.getBoolean("bench.journal");
+        System.setProperty("bank.journal.snapshotIntervalMs", "0");
+
+        System.out.printf("%d cores%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%6s %7s %12s %10s %10s %9s %7s%n", "shards", "threads", "ops/s", "p50(us)", "p99(us)", "speedup", "errors");
+        boolean conserved = true;
+        double baseline = 0;
+        for (int shards : shardCounts) {
+            StorageBackend backend;
+            if (journal) {
+                Path dir = Files.createTempDirectory("bank-shards");
+                backend = StorageBackend.sharded(dir, shards);
+            } else {
+                backend = StorageBackend.sharded(shards);
+            }
+            BankService service = new BankService(backend);
+            String run = Long.toString(System.nanoTime(), 36);
+            int[] ids = new int[accounts];
+            for (int i = 0; i < accounts; i++) {
+                ids[i] = service.createAccount(new Account("Shard " + i, "shard-" + run + "-" + i + "@example.com",
+                        "0000000000", "x", INITIAL_BALANCE));
+            }
+            int threads = threadsPerShard * shards;
+            long deposited = run(service, ids, threads, 1, new ArrayList<>())[0];
+            List<LatencyRecorder> recorders = new ArrayList<>();
+            long[] r = run(service, ids, threads, seconds, recorders);
+            deposited += r[0];
+            long[] all = LatencyRecorder.merge(recorders);
+            double opsPerSec = all.length / (r[1] / 1e9);
+            if (baseline == 0) baseline = opsPerSec;
+            System.out.printf("%6d %7d %12.1f %10.1f %10.1f %8.2fx %7d%n", shards, threads, opsPerSec,
+                    LatencyRecorder.percentile(all, 50) / 1e3, LatencyRecorder.percentile(all, 99) / 1e3,
+                    opsPerSec / baseline, r[2]);
+
+            long total = 0;
+            for (int id : ids) total += service.getBalance(id);
+            if (total != (long) accounts * INITIAL_BALANCE + deposited) {
+                System.out.printf("  money not conserved: %d, expected %d%n", total, (long) accounts * INITIAL_BALANCE + deposited);
+                conserved = false;
+            }
+            ((Closeable) backend.getLedger()).close();
+        }
+        if (Metrics.ENABLED) System.out.println(Metrics.render());
+        if (!conserved) System.exit(1);
+    }
+
+    // Returns {net amount deposited, elapsed nanos, errors}
+    private static long[] run(BankService service, int[] ids, int threads, int seconds, List<LatencyRecorder> recorders)
+            throws InterruptedException {
+        LongAdder deposited = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) {
+                        int from = ids[rnd.nextInt(ids.length)];
+                        int op = rnd.nextInt(4);
+                        try {
+                            if (op < 2) {
+                                int to = ids[rnd.nextInt(ids.length)];
+                                if (to != from) service.transfer(from, to, 1 + rnd.nextInt(1000));
+                            } else if (op == 2) {
+                                service.deposit(from, 100);
+                                deposited.add(100);
+                            } else {
+                                service.withdraw(from, 100);
+                                deposited.add(-100);
+                            }
+                        } catch (InsufficientFundsException e) {
+                            // part of the mix
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        recorder.record(System.nanoTime() - now);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-shard-" + i);
+            t.start();
+        }
+        done.await();
+        return new long[] {deposited.sum(), System.nanoTime() - start, errors.sum()};
+    }
+}
@@ -0,0 +1,66 @@
+package banking.dao;
+
+import banking.models.Account;
+import banking.utils.SegmentedLruCache;
+
+import java.sql.SQLException;
+
+/**
+ * Bounded read-through cache of accounts keyed by account_id, with LRU eviction and a TTL, over a
+ * SegmentedLruCache. Callers get copies, so mutating a returned Account never affects the cache.
+ */
+public class AccountCache {
+    public interface Loader {
+        Account load(int accountId) throws SQLException;
+    }
+
+    private final SegmentedLruCache<Integer, Account> cache;
+
+    public AccountCache(int maxSize, long ttlMillis) {
+        this.cache = new SegmentedLruCache<>(maxSize, ttlMillis);
+    }
+
+    public Account get(int accountId, Loader loader) throws SQLException {
+        Account cached = cache.get(accountId);
+        if (cached != null) return copy(cached);
+        long stamp = cache.stamp(accountId);
+        Account loaded = loader.load(accountId);
+        if (loaded == null) return null;
+        // Skipped if a write invalidated the account while we were loading; our copy may be stale
+        cache.putIfUnchanged(accountId, copy(loaded), stamp);
+        return loaded;
+    }
+
+    public void invalidate(int accountId) {
+        cache.invalidate(accountId);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public long getHitCount() { return cache.getHitCount(); }
+    public long getMissCount() { return cache.getMissCount(); }
+    public long getEvictionCount() { return cache.getEvictionCount(); }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public double getHitRatio() {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AccountCache[size=%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.2f]",
+                size(), getHitCount(), getMissCount(), getEvictionCount(), getHitRatio());
+    }
+
+    private static Account copy(Account a) {
+        return new Account(a.getAccountId(), a.getName(), a.getEmail(), a.getPhone(), a.getPassword(),
+                a.getBalance(), a.getCreatedAt(), a.getStatus());
+    }
+}
@@ -1,26 +1,51 @@
 package banking.dao;
 
 import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.Page;
+import banking.utils.Money;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class AccountDAO {
+public class AccountDAO implements AccountRepository {
+    // Shared by all DAO instances so a write through any of them invalidates what the others read
+    private static final AccountCache CACHE = new AccountCache(
+            Integer.getInteger("bank.cache.maxSize", 10_000),
+            Long.getLong("bank.cache.ttlMs", 30_000));
+
+    // Every column except the password hash; used by listings, searches and exports
+    private static final String SUMMARY_COLUMNS = "account_id, name, email, phone, balance, created_at, status";
+
+    public static AccountCache getCache() {
+        return CACHE;
+    }
 
     public int createAccount(Account account) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return createAccount(conn, account);
+        }
+    }
+
+    public int createAccount(Connection conn, Account account) throws SQLException {
         String sql = "INSERT INTO accounts (name,email,phone,password,balance) VALUES (?,?,?,?,?)";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, account.getName());
             ps.setString(2, account.getEmail());
             ps.setString(3, account.getPhone());
             ps.setString(4, account.getPassword());
-            ps.setDouble(5, account.getBalance());
+            ps.setBigDecimal(5, Money.toDecimal(account.getBalance()));
             int affected = ps.executeUpdate();
             if (affected == 0) throw new SQLException("Creating account failed, no rows affected.");
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
-                    return rs.getInt(1);
+                    int id = rs.getInt(1);
+                    written(id);
+                    return id;
                 } else {
                     throw new SQLException("Creating account failed, no ID obtained.");
                 }
@@ -29,8 +54,16 @@ public class AccountDAO {
     }
 
     public Account findById(int accountId) throws SQLException {
+        return CACHE.get(accountId, id -> {
+            try (Connection conn = DatabaseConnection.getReadConnection(id)) {
+                return findById(conn, id);
+            }
+        });
+    }
+
+    public Account findById(Connection conn, int accountId) throws SQLException {
         String sql = "SELECT * FROM accounts WHERE account_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, accountId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return mapRow(rs);
@@ -39,11 +72,11 @@ public class AccountDAO {
         }
     }
 
-    public Account findByCredentials(int accountId, String password) throws SQLException {
-        String sql = "SELECT * FROM accounts WHERE account_id = ? AND password = ?";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    // Locks the row until the caller's transaction ends; callers locking several rows must go in ascending id order.
+    public Account findByIdForUpdate(Connection conn, int accountId) throws SQLException {
+        String sql = "SELECT * FROM accounts WHERE account_id = ? FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, accountId);
-            ps.setString(2, password);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return mapRow(rs);
                 return null;
@@ -51,19 +84,149 @@ public class AccountDAO {
         }
     }
 
-    public void updateBalance(int accountId, double newBalance) throws SQLException {
-        String sql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
+    public void updatePassword(int accountId, String passwordHash) throws SQLException {
+        String sql = "UPDATE accounts SET password = ? WHERE account_id = ?";
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDouble(1, newBalance);
+            ps.setString(1, passwordHash);
             ps.setInt(2, accountId);
+            if (ps.executeUpdate() == 0) throw new SQLException("Account not found");
+        } finally {
+            written(accountId);
+        }
+    }
+
+    public void updateStatus(int accountId, String status) throws SQLException {
+        String sql = "UPDATE accounts SET status = ? WHERE account_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, status);
+            ps.setInt(2, accountId);
+            if (ps.executeUpdate() == 0) throw new SQLException("Account not found");
+        } finally {
+            written(accountId);
+        }
+    }
+
+    public AccountLimits findLimits(int accountId) throws SQLException {
+        String sql = "SELECT daily_withdrawal_limit, daily_transfer_limit, max_debits_per_minute FROM account_limits WHERE account_id = ?";
+        try (Connection conn = DatabaseConnection.getReadConnection(accountId); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, accountId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new AccountLimits(Money.fromDecimal(rs.getBigDecimal(1)), Money.fromDecimal(rs.getBigDecimal(2)), rs.getInt(3));
+            }
+        }
+    }
+
+    public void updateLimits(int accountId, AccountLimits limits) throws SQLException {
+        String sql = limits == null
+                ? "DELETE FROM account_limits WHERE account_id = ?"
+                : "INSERT INTO account_limits (account_id, daily_withdrawal_limit, daily_transfer_limit, max_debits_per_minute) "
+                  + "VALUES (?,?,?,?) ON DUPLICATE KEY UPDATE daily_withdrawal_limit = VALUES(daily_withdrawal_limit), "
+                  + "daily_transfer_limit = VALUES(daily_transfer_limit), max_debits_per_minute = VALUES(max_debits_per_minute)";
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, accountId);
+            if (limits != null) {
+                ps.setBigDecimal(2, Money.toDecimal(limits.getDailyWithdrawalLimit()));
+                ps.setBigDecimal(3, Money.toDecimal(limits.getDailyTransferLimit()));
+                ps.setInt(4, limits.getMaxDebitsPerMinute());
+            }
             ps.executeUpdate();
+        } finally {
+            DatabaseConnection.recordWrite(accountId);
         }
     }
 
-    public java.util.List<Account> findAll() throws SQLException {
+    // Always the primary: logins and duplicate checks must see an account the moment it is created
+    public Account findByEmail(String email) throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM accounts WHERE email = ?";
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return mapSummary(rs);
+                return null;
+            }
+        }
+    }
+
+    public List<Account> findByPhone(String phone) throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM accounts WHERE phone = ? ORDER BY account_id";
+        try (Connection conn = DatabaseConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, phone);
+            return queryList(ps);
+        }
+    }
+
+    public List<Account> searchByNamePrefix(String prefix, int limit) throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM accounts WHERE name LIKE ? ORDER BY name, account_id LIMIT ?";
+        try (Connection conn = DatabaseConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, escapeLike(prefix) + "%");
+            ps.setInt(2, limit);
+            return queryList(ps);
+        }
+    }
+
+    /**
+     * One page of accounts in the given order. Pass the last account of the previous page as
+     * {@code after} (null for the first page); paging seeks on (sort column, account_id) instead of using OFFSET.
+     */
+    public Page<Account> findPage(AccountSort sort, Account after, int limit) throws SQLException {
+        String col = sort.column();
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM accounts"
+                + (after == null ? "" : sort == AccountSort.ID
+                        ? " WHERE account_id > ?"
+                        : " WHERE " + col + " > ? OR (" + col + " = ? AND account_id > ?)")
+                + (sort == AccountSort.ID ? " ORDER BY account_id" : " ORDER BY " + col + ", account_id")
+                + " LIMIT ?";
+        List<Account> list;
+        try (Connection conn = DatabaseConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (after != null) {
+                if (sort == AccountSort.NAME) {
+                    ps.setString(i++, after.getName());
+                    ps.setString(i++, after.getName());
+                }
+                ps.setInt(i++, after.getAccountId());
+            }
+            ps.setInt(i, limit + 1);
+            list = queryList(ps);
+        }
+        boolean hasMore = list.size() > limit;
+        if (hasMore) list.remove(limit);
+        return new Page<>(list, hasMore);
+    }
+
+    public void updateBalance(int accountId, long newBalance) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            updateBalance(conn, accountId, newBalance);
+        }
+    }
+
+    public void updateBalance(Connection conn, int accountId, long newBalance) throws SQLException {
+        String sql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setBigDecimal(1, Money.toDecimal(newBalance));
+            ps.setInt(2, accountId);
+            ps.executeUpdate();
+        }
+        written(accountId);
+    }
+
+    // Transactional writers call this again after commit, since a reader may have cached the old row meanwhile.
+    public void invalidate(int accountId) {
+        written(accountId);
+    }
+
+    // Pins the account's reads to the primary before dropping the cached row, so the next load cannot come from a
+    // replica that has not seen this write yet
+    private static void written(int accountId) {
+        DatabaseConnection.recordWrite(accountId);
+        CACHE.invalidate(accountId);
+    }
+
+    public List<Account> findAll() throws SQLException {
         String sql = "SELECT * FROM accounts ORDER BY account_id";
-        java.util.List<Account> accounts = new java.util.ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
+        List<Account> accounts = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -73,16 +236,50 @@ public class AccountDAO {
         return accounts;
     }
 
+    private List<Account> queryList(PreparedStatement ps) throws SQLException {
+        List<Account> list = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) list.add(mapSummary(rs));
+        }
+        return list;
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Streams every account (without password hashes) in id order; memory use does not grow with the table.
+    public long streamAll(Consumer<Account> consumer) throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM accounts ORDER BY account_id";
+        long count = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            TransactionDAO.streamRows(conn, ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapSummary(rs));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     private Account mapRow(ResultSet rs) throws SQLException {
+        Account acc = mapSummary(rs);
+        acc.setPassword(rs.getString("password"));
+        return acc;
+    }
+
+    private Account mapSummary(ResultSet rs) throws SQLException {
         int id = rs.getInt("account_id");
         String name = rs.getString("name");
         String email = rs.getString("email");
         String phone = rs.getString("phone");
-        String password = rs.getString("password");
-        double balance = rs.getDouble("balance");
+        long balance = Money.fromDecimal(rs.getBigDecimal("balance"));
         Timestamp ts = rs.getTimestamp("created_at");
         LocalDateTime createdAt = ts != null ? ts.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime() : null;
         String status = rs.getString("status");
-        return new Account(id, name, email, phone, password, balance, createdAt, status);
+        return new Account(id, name, email, phone, null, balance, createdAt, status);
     }
 }
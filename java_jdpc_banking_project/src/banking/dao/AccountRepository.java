@@ -0,0 +1,40 @@
+package banking.dao;
+
+import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.Page;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Account lookups and listings, independent of where accounts are stored.
+public interface AccountRepository {
+    int createAccount(Account account) throws SQLException;
+
+    Account findById(int accountId) throws SQLException;
+
+    // Replaces the stored password hash (hashing is the caller's job, see PasswordUtil)
+    void updatePassword(int accountId, String passwordHash) throws SQLException;
+
+    // ACTIVE, FROZEN or CLOSED
+    void updateStatus(int accountId, String status) throws SQLException;
+
+    // The account's own debit limits, or null if it uses the configured defaults
+    AccountLimits findLimits(int accountId) throws SQLException;
+
+    // Stores the account's own limits; null goes back to the defaults
+    void updateLimits(int accountId, AccountLimits limits) throws SQLException;
+
+    Account findByEmail(String email) throws SQLException;
+
+    List<Account> findByPhone(String phone) throws SQLException;
+
+    List<Account> searchByNamePrefix(String prefix, int limit) throws SQLException;
+
+    Page<Account> findPage(AccountSort sort, Account after, int limit) throws SQLException;
+
+    List<Account> findAll() throws SQLException;
+
+    long streamAll(Consumer<Account> consumer) throws SQLException;
+}
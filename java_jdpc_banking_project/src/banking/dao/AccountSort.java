@@ -0,0 +1,17 @@
+package banking.dao;
+
+// Sort orders for paged account listings; each one is backed by an index that ends in account_id.
+public enum AccountSort {
+    ID("account_id"),
+    NAME("name");
+
+    private final String column;
+
+    AccountSort(String column) {
+        this.column = column;
+    }
+
+    String column() {
+        return column;
+    }
+}
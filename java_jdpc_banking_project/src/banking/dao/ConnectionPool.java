@@ -0,0 +1,434 @@
+package banking.dao;
+
+import banking.metrics.Histogram;
+import banking.metrics.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded JDBC connection pool. Connections handed out are proxies: closing one returns the
+ * physical connection to the pool, and prepareStatement(sql) is served from a per-connection cache.
+ * A cached statement is checked out until closed (or until its connection goes back to the pool);
+ * closing it closes its result sets and undoes changed settings such as the fetch size.
+ * Pools are made with create, which starts the idle reaper and registers the metrics once the pool is
+ * built. Names are unique among open pools. With metrics enabled, metric names start with the pool's name:
+ * name.active and name.idle are gauges,
+ * the wait for a connection is recorded as name.wait and every execute call on a cached statement as
+ * name.sql + its SQL text, with IN lists of any length shown as IN (?...) so that statements built for a
+ * varying number of ids share one histogram.
+ */
+public class ConnectionPool implements AutoCloseable {
+    // Statement settings a cached statement is put back to on close; the UNRESETTABLE ones take it out of the cache
+    private static final Set<String> SETTINGS = Set.of("setFetchSize", "setFetchDirection", "setMaxRows",
+            "setLargeMaxRows", "setQueryTimeout", "setMaxFieldSize", "setEscapeProcessing");
+    private static final Set<String> UNRESETTABLE = Set.of("setCursorName", "closeOnCompletion", "setPoolable");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    // Names of the open pools
+    private static final Set<String> NAMES = ConcurrentHashMap.newKeySet();
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int statementCacheSize;
+
+    private final Histogram waits;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger physical = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed;
+
+    // name prefixes this pool's metrics; it is free again once the pool is closed
+    public static ConnectionPool create(String name, String url, String user, String password, int maxSize, int minIdle,
+                                        long acquireTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+                                        int statementCacheSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Pool size must be positive");
+        if (!NAMES.add(name)) throw new IllegalArgumentException("A connection pool named " + name + " is already open");
+        ConnectionPool pool = new ConnectionPool(name, url, user, password, maxSize, minIdle, acquireTimeoutMillis,
+                idleTimeoutMillis, validationIntervalMillis, statementCacheSize);
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        pool.reaper.scheduleAtFixedRate(pool::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        Metrics.gauge(name + ".active", pool::getActiveCount);
+        Metrics.gauge(name + ".idle", pool::getIdleCount);
+        return pool;
+    }
+
+    private ConnectionPool(String name, String url, String user, String password, int maxSize, int minIdle,
+                           long acquireTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+                           int statementCacheSize) {
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.waits = Metrics.histogram(name + ".wait");
+        this.permits = new Semaphore(maxSize, true);
+
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        boolean permitted;
+        try {
+            permitted = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            long waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+            waits.record(waited);
+        }
+        if (!permitted) {
+            exhausted.increment();
+            throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+                    + "ms waiting for a connection (pool size " + maxSize + ")");
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (entry.isUsable()) break;
+                discard(entry);
+            }
+            if (entry == null) entry = open();
+            active.incrementAndGet();
+            acquired.increment();
+            return entry.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // A connection to the same server outside the pool and its limits, e.g. for health checks; the caller closes it
+    Connection openUnpooled() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private PooledEntry open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        physical.incrementAndGet();
+        return new PooledEntry(conn);
+    }
+
+    private void release(PooledEntry entry) {
+        active.decrementAndGet();
+        try {
+            if (closed || !entry.reset()) {
+                discard(entry);
+            } else {
+                entry.lastUsed = System.nanoTime();
+                idle.offerFirst(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledEntry entry) {
+        physical.decrementAndGet();
+        entry.closePhysical();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() > minIdle) {
+            PooledEntry entry = it.next();
+            if (entry.lastUsed - cutoff < 0 && idle.remove(entry)) {
+                evicted.increment();
+                discard(entry);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        reaper.shutdownNow();
+        NAMES.remove(name);
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) discard(entry);
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public int getActiveCount() { return active.get(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getPhysicalCount() { return physical.get(); }
+    public long getAcquiredCount() { return acquired.sum(); }
+    public long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()); }
+    public long getExhaustedCount() { return exhausted.sum(); }
+    public long getEvictedCount() { return evicted.sum(); }
+
+    public String getName() { return name; }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[" + name + ", active=" + getActiveCount() + ", idle=" + getIdleCount()
+                + ", max=" + maxSize + ", acquired=" + getAcquiredCount()
+                + ", waitMs=" + getTotalWaitMillis() + ", exhausted=" + getExhaustedCount()
+                + ", evicted=" + getEvictedCount() + "]";
+    }
+
+    static String timerName(String sql) {
+        return IN_LIST.matcher(sql).replaceAll("IN (?...)");
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class PooledEntry {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements;
+        // Cached statements handed out and not closed yet; a second prepare of the same SQL meanwhile gets its own
+        private final Map<PreparedStatement, Checkout> checkedOut = new IdentityHashMap<>();
+        private final Map<String, Histogram> timers = new HashMap<>();
+        private volatile long lastUsed = System.nanoTime();
+
+        PooledEntry(Connection conn) {
+            this.conn = conn;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= statementCacheSize) return false;
+                    // One still checked out is closed when it is handed back
+                    if (!checkedOut.containsKey(eldest.getValue())) {
+                        try { eldest.getValue().close(); } catch (SQLException e) {}
+                    }
+                    return true;
+                }
+            };
+        }
+
+        boolean isUsable() {
+            try {
+                if (conn.isClosed()) return false;
+                long idleNanos = System.nanoTime() - lastUsed;
+                if (idleNanos < TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis)) return true;
+                return conn.isValid(5);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        boolean reset() {
+            try {
+                if (conn.isClosed()) return false;
+                // Statements the borrower did not close are taken back with the connection
+                for (Checkout c : new ArrayList<>(checkedOut.values())) c.checkIn();
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException e) {}
+            }
+            statements.clear();
+            checkedOut.clear();
+            try { conn.close(); } catch (SQLException e) {}
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease());
+        }
+
+        private PreparedStatement prepare(String sql, int generatedKeys) throws SQLException {
+            return generatedKeys == -1 ? conn.prepareStatement(sql) : conn.prepareStatement(sql, generatedKeys);
+        }
+
+        private PreparedStatement cachedStatement(Connection proxy, String sql, int generatedKeys) throws SQLException {
+            String key = generatedKeys + ":" + sql;
+            PreparedStatement ps = statements.get(key);
+            if (ps != null && ps.isClosed()) {
+                statements.remove(key);
+                ps = null;
+            }
+            boolean cached = true;
+            if (ps == null) {
+                ps = prepare(sql, generatedKeys);
+                if (statementCacheSize <= 0) return ps;
+                statements.put(key, ps);
+            } else if (checkedOut.containsKey(ps)) {
+                ps = prepare(sql, generatedKeys);
+                cached = false;
+            }
+            Checkout checkout = new Checkout(key, ps, cached);
+            if (cached) checkedOut.put(ps, checkout);
+            PreparedStatement target = ps;
+            Histogram timer = Metrics.ENABLED ? timers.computeIfAbsent(timerName(sql), n -> Metrics.histogram(name + ".sql " + n)) : null;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (p, method, args) -> {
+                        String name = method.getName();
+                        switch (name) {
+                            case "close":
+                                checkout.checkIn();
+                                return null;
+                            case "isClosed":
+                                return checkout.done || target.isClosed();
+                            case "getConnection":
+                                return proxy;
+                            default:
+                                break;
+                        }
+                        if (checkout.done) throw new SQLException("Statement is closed");
+                        if (SETTINGS.contains(name)) checkout.settingsChanged = true;
+                        if (UNRESETTABLE.contains(name)) checkout.uncache = true;
+                        switch (name) {
+                            case "execute":
+                            case "executeQuery":
+                            case "executeUpdate":
+                            case "executeLargeUpdate":
+                            case "executeBatch":
+                                if (timer == null) return checkout.track(invoke(target, method, args));
+                                long t0 = System.nanoTime();
+                                try {
+                                    return checkout.track(invoke(target, method, args));
+                                } finally {
+                                    timer.recordSince(t0);
+                                }
+                            default:
+                                return checkout.track(invoke(target, method, args));
+                        }
+                    });
+        }
+
+        // One hand-out of a statement: the result sets it opened and whether its settings need undoing
+        private final class Checkout {
+            final String key;
+            final PreparedStatement target;
+            final boolean cached;
+            final List<ResultSet> results = new ArrayList<>(2);
+            boolean settingsChanged;
+            boolean uncache;
+            boolean done;
+
+            Checkout(String key, PreparedStatement target, boolean cached) {
+                this.key = key;
+                this.target = target;
+                this.cached = cached;
+            }
+
+            Object track(Object result) {
+                if (result instanceof ResultSet) results.add((ResultSet) result);
+                return result;
+            }
+
+            void checkIn() throws SQLException {
+                if (done) return;
+                done = true;
+                if (!cached) {
+                    target.close();
+                    return;
+                }
+                checkedOut.remove(target);
+                if (uncache && statements.get(key) == target) statements.remove(key);
+                // Evicted while checked out, or changed in a way that cannot be undone
+                if (statements.get(key) != target) {
+                    target.close();
+                    return;
+                }
+                for (ResultSet rs : results) {
+                    try { rs.close(); } catch (SQLException e) {}
+                }
+                target.clearParameters();
+                target.clearBatch();
+                if (settingsChanged) {
+                    target.setFetchSize(0);
+                    target.setFetchDirection(ResultSet.FETCH_FORWARD);
+                    target.setMaxRows(0);
+                    target.setQueryTimeout(0);
+                    target.setMaxFieldSize(0);
+                    target.setEscapeProcessing(true);
+                }
+            }
+        }
+
+        private final class Lease implements InvocationHandler {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    if (!released) {
+                        released = true;
+                        release(PooledEntry.this);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) return released || conn.isClosed();
+                if (released) throw new SQLException("Connection has been returned to the pool");
+                if (name.equals("prepareStatement") && args.length == 1) {
+                    return cachedStatement((Connection) proxy, (String) args[0], -1);
+                }
+                if (name.equals("prepareStatement") && args.length == 2 && args[1] instanceof Integer) {
+                    return cachedStatement((Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+                return ConnectionPool.invoke(conn, method, args);
+            }
+        }
+    }
+}
@@ -3,12 +3,23 @@ package banking.dao;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseConnection {
-    // Update these constants to match your WAMP MySQL setup
-    private static final String URL = "jdbc:mysql://localhost:3306/bank_db?useSSL=false&serverTimezone=UTC";
-    private static final String USER = "root";
-    private static final String PASSWORD = "";
+    // Update these constants to match your WAMP MySQL setup (or override with -Dbank.db.url etc.)
+    private static final String URL = System.getProperty("bank.db.url",
+            "jdbc:mysql://localhost:3306/bank_db?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("bank.db.user", "root");
+    private static final String PASSWORD = System.getProperty("bank.db.password", "");
+
+    // Pool tuning, all overridable with -Dbank.pool.<name>
+    private static final int POOL_SIZE = Integer.getInteger("bank.pool.size", 10);
+    private static final int POOL_MIN_IDLE = Integer.getInteger("bank.pool.minIdle", 2);
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("bank.pool.acquireTimeoutMs", 30_000);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("bank.pool.idleTimeoutMs", 600_000);
+    private static final long VALIDATION_INTERVAL_MS = Long.getLong("bank.pool.validationIntervalMs", 500);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("bank.pool.statementCacheSize", 64);
 
     static {
         try {
@@ -19,7 +30,68 @@ public class DatabaseConnection {
         }
     }
 
+    private static final ConnectionPool POOL = ConnectionPool.create("pool", URL, USER, PASSWORD, POOL_SIZE,
+            POOL_MIN_IDLE, ACQUIRE_TIMEOUT_MS, IDLE_TIMEOUT_MS, VALIDATION_INTERVAL_MS, STATEMENT_CACHE_SIZE);
+
+    // Read replicas: -Dbank.db.replicas=<jdbc url>,<jdbc url>; see ReplicaRouter for the health check and pinning; their pools report metrics as replica0, replica1, ...
+    private static final ReplicaRouter REPLICAS = new ReplicaRouter(POOL, replicaPools(),
+            Long.getLong("bank.db.replicaMaxLagSeconds", 1), Long.getLong("bank.db.replicaCheckMs", 1_000),
+            Long.getLong("bank.db.readYourWritesMs", 0));
+
+    private static List<ConnectionPool> replicaPools() {
+        List<ConnectionPool> pools = new ArrayList<>();
+        String urls = System.getProperty("bank.db.replicas", "");
+        String user = System.getProperty("bank.db.replicaUser", USER);
+        String password = System.getProperty("bank.db.replicaPassword", PASSWORD);
+        int size = Integer.getInteger("bank.db.replicaPoolSize", POOL_SIZE);
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) continue;
+            pools.add(ConnectionPool.create("replica" + pools.size(), url.trim(), user, password, size,
+                    POOL_MIN_IDLE, ACQUIRE_TIMEOUT_MS, IDLE_TIMEOUT_MS, VALIDATION_INTERVAL_MS, STATEMENT_CACHE_SIZE));
+        }
+        return pools;
+    }
+
+    // The primary; for writes and for reads that must see the latest commit
     public static Connection getConnection() throws SQLException {
+        return POOL.getConnection();
+    }
+
+    // A replica if one is healthy and accountId has not been written recently, else the primary
+    public static Connection getReadConnection(int accountId) throws SQLException {
+        return REPLICAS.getReadConnection(accountId);
+    }
+
+    // A replica if one is healthy, else the primary; for listings, reports and exports across accounts
+    public static Connection getReadConnection() throws SQLException {
+        return REPLICAS.getReadConnection();
+    }
+
+    // Keeps accountId's reads on the primary until the replicas have caught up with this write
+    public static void recordWrite(int accountId) {
+        REPLICAS.recordWrite(accountId);
+    }
+
+    public static void recordWriteAll() {
+        REPLICAS.recordWriteAll();
+    }
+
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
+    public static ReplicaRouter getReplicas() {
+        return REPLICAS;
+    }
+
+    // Stops the replica health checks and closes the replica pools and the primary pool; for process shutdown
+    public static void close() {
+        REPLICAS.close();
+        POOL.close();
+    }
+
+    // Bypasses the pool; only meant for tooling, benchmarks and sessions held open for a named lock.
+    public static Connection getUnpooledConnection() throws SQLException {
         return DriverManager.getConnection(URL, USER, PASSWORD);
     }
 }
@@ -0,0 +1,136 @@
+package banking.dao;
+
+import banking.models.Account;
+import banking.models.Transaction;
+import banking.utils.Money;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Set-based reads and batched writes for the end-of-day job, one account-id range at a time.
+public class EndOfDayDAO {
+
+    public int maxAccountId() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(account_id), 0) FROM accounts")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // {first, last} account id of every range already finished for date
+    public List<int[]> completedRanges(LocalDate date) throws SQLException {
+        String sql = "SELECT first_account_id, last_account_id FROM eod_checkpoints WHERE business_date = ?";
+        List<int[]> list = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(date));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(new int[] {rs.getInt(1), rs.getInt(2)});
+            }
+        }
+        return list;
+    }
+
+    // Id, balance and status of the accounts in [firstId, lastId], ascending
+    public List<Account> findAccounts(Connection conn, int firstId, int lastId) throws SQLException {
+        String sql = "SELECT account_id, balance, status FROM accounts WHERE account_id BETWEEN ? AND ? ORDER BY account_id";
+        List<Account> list = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, firstId);
+            ps.setInt(2, lastId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Account a = new Account();
+                    a.setAccountId(rs.getInt(1));
+                    a.setBalance(Money.fromDecimal(rs.getBigDecimal(2)));
+                    a.setStatus(rs.getString(3));
+                    list.add(a);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Streams the hot ledger (rows not yet archived) of the accounts in [firstId, lastId] oldest-first per
+     * account, as one range scan of the primary key; returns the row count. Rows carry no timestamp. The result
+     * must be read to the end before conn runs another statement.
+     */
+    public long streamLedger(Connection conn, int firstId, int lastId, Consumer<Transaction> consumer) throws SQLException {
+        LocalDateTime horizon = TransactionDAO.archiveHorizon();
+        String sql = "SELECT transaction_id, account_id, type, amount, remarks, balance_after FROM transactions "
+                + "WHERE account_id BETWEEN ? AND ?" + (horizon == null ? "" : " AND timestamp >= ?")
+                + " ORDER BY account_id, timestamp, transaction_id";
+        long count = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            TransactionDAO.streamRows(conn, ps);
+            ps.setInt(1, firstId);
+            ps.setInt(2, lastId);
+            if (horizon != null) ps.setTimestamp(3, Timestamp.valueOf(horizon));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Transaction t = new Transaction(rs.getInt(2), rs.getString(3), Money.fromDecimal(rs.getBigDecimal(4)), rs.getString(5));
+                    t.setTransactionId(rs.getInt(1));
+                    t.setBalanceAfter(Money.fromDecimal(rs.getBigDecimal(6)));
+                    consumer.accept(t);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Credits each posting's amount to its account, if still ACTIVE, and appends the posting as a ledger row
+     * carrying the new balance; two JDBC batches in the caller's transaction, rows locked in the given order
+     * (callers pass ascending account ids, as JdbcLedgerEngine locks them). Returns the update count per posting.
+     */
+    public int[] postCredits(Connection conn, List<Transaction> postings) throws SQLException {
+        String update = "UPDATE accounts SET balance = balance + ? WHERE account_id = ? AND status = 'ACTIVE'";
+        String insert = "INSERT INTO transactions (account_id, type, amount, remarks, balance_after) "
+                + "SELECT account_id, ?, ?, ?, balance FROM accounts WHERE account_id = ? AND status = 'ACTIVE'";
+        int[] updated;
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            for (Transaction t : postings) {
+                DatabaseConnection.recordWrite(t.getAccountId());
+                ps.setBigDecimal(1, Money.toDecimal(t.getAmount()));
+                ps.setInt(2, t.getAccountId());
+                ps.addBatch();
+            }
+            updated = ps.executeBatch();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
+            for (Transaction t : postings) {
+                ps.setString(1, t.getType());
+                ps.setBigDecimal(2, Money.toDecimal(t.getAmount()));
+                ps.setString(3, t.getRemarks());
+                ps.setInt(4, t.getAccountId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        return updated;
+    }
+
+    // Fails with a duplicate key if another run already finished this range for date
+    public void insertCheckpoint(Connection conn, LocalDate date, int firstId, int lastId, int accounts, long ledgerRows,
+                                 int mismatches, int interestAccounts, long interestTotal) throws SQLException {
+        String sql = "INSERT INTO eod_checkpoints (business_date, first_account_id, last_account_id, accounts, ledger_rows, "
+                + "mismatches, interest_accounts, interest_total) VALUES (?,?,?,?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(date));
+            ps.setInt(2, firstId);
+            ps.setInt(3, lastId);
+            ps.setInt(4, accounts);
+            ps.setLong(5, ledgerRows);
+            ps.setInt(6, mismatches);
+            ps.setInt(7, interestAccounts);
+            ps.setBigDecimal(8, Money.toDecimal(interestTotal));
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package banking.dao;
+
+import banking.models.LedgerReceipt;
+import banking.utils.Money;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+
+// Receipts of idempotent ledger calls (idempotency_keys); written only inside the ledger transaction.
+public class IdempotencyDAO {
+
+    public LedgerReceipt find(int accountId, String key) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return find(conn, accountId, key);
+        }
+    }
+
+    public LedgerReceipt find(Connection conn, int accountId, String key) throws SQLException {
+        String sql = "SELECT * FROM idempotency_keys WHERE account_id = ? AND idempotency_key = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, accountId);
+            ps.setString(2, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    public void insert(Connection conn, LedgerReceipt r) throws SQLException {
+        String sql = "INSERT INTO idempotency_keys (account_id, idempotency_key, operation, counterparty_id, amount, balance_after, created_at) VALUES (?,?,?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, r.getAccountId());
+            ps.setString(2, r.getIdempotencyKey());
+            ps.setString(3, r.getOperation());
+            ps.setInt(4, r.getCounterpartyId());
+            ps.setBigDecimal(5, Money.toDecimal(r.getAmount()));
+            ps.setBigDecimal(6, Money.toDecimal(r.getBalanceAfter()));
+            ps.setTimestamp(7, Timestamp.valueOf(r.getCreatedAt()));
+            ps.executeUpdate();
+        }
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < ?";
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(cutoff));
+            return ps.executeUpdate();
+        }
+    }
+
+    private LedgerReceipt mapRow(ResultSet rs) throws SQLException {
+        return new LedgerReceipt(rs.getInt("account_id"), rs.getString("idempotency_key"), rs.getString("operation"),
+                rs.getInt("counterparty_id"), Money.fromDecimal(rs.getBigDecimal("amount")),
+                Money.fromDecimal(rs.getBigDecimal("balance_after")), rs.getTimestamp("created_at").toLocalDateTime());
+    }
+}
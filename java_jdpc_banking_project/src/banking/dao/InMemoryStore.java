@@ -0,0 +1,1363 @@
+package banking.dao;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.journal.Codec;
+import banking.journal.Journal;
+import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.LedgerReceipt;
+import banking.models.Page;
+import banking.models.Transaction;
+import banking.utils.IntLongHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process storage backend. Balances live in primitive int -> long maps split across lock stripes
+ * (chosen by a hash of account_id); a transfer locks its two stripes in ascending stripe order, so
+ * operations on unrelated accounts never contend. Each account's ledger is an append-only list kept
+ * in the same stripe, so a balance change and its ledger row are published under one lock.
+ * Profiles (name, email, ...) are immutable after creation and sit in concurrent maps outside the stripes.
+ *
+ * Opened on a directory, the store is durable: every change is appended to a Journal while its stripe lock
+ * is held and the caller waits for the group fsync after releasing it. A snapshot is written periodically,
+ * one stripe at a time, each stripe tagged with the journal seq it reflects; recovery loads the snapshot
+ * and replays only the journal records newer than the tag of the stripe they touch.
+ *
+ * As a LedgerOutbox, each stripe queues its new ledger rows under the same lock; peek hands out only rows
+ * whose journal record is on disk, and removals are journaled too, so the queue survives a restart.
+ */
+public class InMemoryStore implements AccountRepository, LedgerEngine, LedgerOutbox, Closeable {
+    private static final int STRIPES = 64;
+    private static final int STREAM_CHUNK = 256;
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x42534E35; // "BSN5": BSN4 plus the outbox per stripe
+    private static final int SNAPSHOT_MAGIC_V4 = 0x42534E34; // "BSN4": BSN3 plus account limits per stripe
+    private static final int SNAPSHOT_MAGIC_V3 = 0x42534E33; // "BSN3": BSN2 plus idempotency receipts per stripe
+    private static final int SNAPSHOT_MAGIC_V2 = 0x42534E32; // "BSN2": ledger rows carry balance_after
+    private static final long RECEIPT_TTL_MILLIS = Long.getLong("bank.idempotency.ttlMs", 86_400_000);
+    private static final byte CREATE = 1;
+    private static final byte DEPOSIT = 2;
+    private static final byte WITHDRAW = 3;
+    private static final byte TRANSFER = 4;
+    private static final byte PASSWORD = 5;
+    private static final byte KEYED = 6; // idempotency key followed by a DEPOSIT, WITHDRAW, TRANSFER or half-transfer record
+    // Halves of a transfer between shards (see ShardedStore) and the reversal of a debit whose credit failed
+    private static final byte TRANSFER_OUT = 7;
+    private static final byte TRANSFER_IN = 8;
+    private static final byte REVERSAL = 9;
+    private static final byte STATUS = 10;
+    private static final byte LIMITS = 11;
+    private static final byte OUTBOX_SENT = 12; // ledger rows taken out of the outbox
+    // Ledger row kinds in snapshots; rows written by this engine have fixed type/remarks text
+    private static final byte ROW_DEPOSIT = 'D';
+    private static final byte ROW_WITHDRAW = 'W';
+    private static final byte ROW_TRANSFER_OUT = 'O';
+    private static final byte ROW_TRANSFER_IN = 'I';
+    private static final byte ROW_OTHER = '?';
+    private static final String TRANSFER_TO = "Transfer to account ";
+    private static final String TRANSFER_FROM = "Transfer from account ";
+    private static final String REVERSAL_TYPE = "Reversal";
+    private static final String REVERSAL_OF = "Reversal of transaction ";
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ConcurrentSkipListMap<Integer, Account> profiles;
+    private final ConcurrentHashMap<String, Integer> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Integer> byName;
+    // Ids are handed out in steps of idStride, so the shards of a ShardedStore never allocate the same id
+    private final int idStride;
+    private final AtomicInteger nextAccountId;
+    private final AtomicReference<Thread> relayThread = new AtomicReference<>();
+    private final AtomicInteger nextTransactionId;
+    // Set for a shard: changes do not wait for their fsync, the shard's writer calls awaitDurable once per batch
+    private final boolean deferSync;
+
+    private final Transactions transactions = new Transactions();
+    // Stripe the next outbox peek starts at, so a busy stripe cannot keep the others waiting; relay thread only
+    private int outboxStart;
+
+    private final Path dir;
+    private final Journal journal;
+    private Thread snapshotter;
+
+    public InMemoryStore() {
+        this(0, 1);
+    }
+
+    // Shard number shard of shards: account and ledger row ids are shard + 1 + k * shards
+    InMemoryStore(int shard, int shards) {
+        this.idStride = shards;
+        this.nextAccountId = new AtomicInteger(shard + 1 - shards);
+        this.nextTransactionId = new AtomicInteger(shard + 1 - shards);
+        this.deferSync = false;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+        this.profiles = new ConcurrentSkipListMap<>();
+        this.byName = new ConcurrentSkipListMap<>();
+        this.dir = null;
+        this.journal = null;
+    }
+
+    /**
+     * Durable store in dir: recovers from the snapshot and journal there, then snapshots every
+     * bank.journal.snapshotIntervalMs (default 5 minutes, 0 disables).
+     */
+    public static InMemoryStore open(Path dir) throws IOException {
+        return open(dir, 0, 1, false);
+    }
+
+    // Durable shard; see InMemoryStore(int, int) and awaitDurable
+    static InMemoryStore open(Path dir, int shard, int shards) throws IOException {
+        return open(dir, shard, shards, true);
+    }
+
+    // The snapshot thread is started only once the store is fully built
+    private static InMemoryStore open(Path dir, int shard, int shards, boolean deferSync) throws IOException {
+        InMemoryStore store = new InMemoryStore(dir, shard, shards, deferSync);
+        long interval = Long.getLong("bank.journal.snapshotIntervalMs", 300_000);
+        if (interval > 0) {
+            store.snapshotter = new Thread(() -> store.snapshotLoop(interval), "ledger-snapshot");
+            store.snapshotter.setDaemon(true);
+            store.snapshotter.start();
+        }
+        return store;
+    }
+
+    private InMemoryStore(Path dir, int shard, int shards, boolean deferSync) throws IOException {
+        this.idStride = shards;
+        this.nextAccountId = new AtomicInteger(shard + 1 - shards);
+        this.nextTransactionId = new AtomicInteger(shard + 1 - shards);
+        this.deferSync = deferSync;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+        this.dir = dir;
+        Files.createDirectories(dir);
+        Recovery r = new Recovery();
+        loadSnapshot(r);
+        long from = Long.MAX_VALUE;
+        for (long seq : r.stripeSeq) from = Math.min(from, seq);
+        this.journal = Journal.open(dir, from, (seq, payload) -> replay(seq, payload, r));
+        // Skip lists fill far faster in ascending key order, so the indexes are built once after sorting
+        r.accounts.sort(Comparator.comparingInt(Account::getAccountId));
+        for (Account a : r.accounts) {
+            String hash = r.passwords.get(a.getAccountId());
+            if (hash != null) a.setPassword(hash);
+            String status = r.statuses.get(a.getAccountId());
+            if (status != null) a.setStatus(status);
+        }
+        this.profiles = new ConcurrentSkipListMap<>();
+        String[] names = new String[r.accounts.size()];
+        for (int i = 0; i < names.length; i++) {
+            Account a = r.accounts.get(i);
+            profiles.put(a.getAccountId(), a);
+            names[i] = nameKey(a.getName(), a.getAccountId());
+        }
+        Arrays.sort(names);
+        this.byName = new ConcurrentSkipListMap<>();
+        for (String key : names) byName.put(key, accountIdOf(key));
+    }
+
+    public TransactionRepository transactions() {
+        return transactions;
+    }
+
+    // ---- AccountRepository ----
+
+    @Override
+    public int createAccount(Account account) throws SQLException {
+        int id = nextAccountId.addAndGet(idStride);
+        if (byEmail.putIfAbsent(account.getEmail(), id) != null) {
+            throw new SQLException("Duplicate entry '" + account.getEmail() + "' for key 'email'", "23000", 1062);
+        }
+        Account profile = new Account(id, account.getName(), account.getEmail(), account.getPhone(),
+                account.getPassword(), 0, LocalDateTime.now(), "ACTIVE");
+        Stripe s = stripe(id);
+        long seq;
+        s.lock.lock();
+        try {
+            seq = journal == null ? 0 : log(encodeCreate(profile, account.getBalance()));
+            s.balances.put(id, account.getBalance());
+            s.history.put(id, new ArrayList<>());
+            profiles.put(id, profile);
+        } catch (SQLException e) {
+            byEmail.remove(account.getEmail(), id);
+            throw e;
+        } finally {
+            s.lock.unlock();
+        }
+        byName.put(nameKey(profile.getName(), id), id);
+        sync(seq);
+        return id;
+    }
+
+    @Override
+    public Account findById(int accountId) {
+        Account profile = profiles.get(accountId);
+        return profile == null ? null : snapshot(profile, true);
+    }
+
+    @Override
+    public void updatePassword(int accountId, String passwordHash) throws SQLException {
+        Stripe s = stripe(accountId);
+        long seq;
+        s.lock.lock();
+        try {
+            Account p = profiles.get(accountId);
+            if (p == null) throw new SQLException("Account not found");
+            seq = journal == null ? 0 : log(encodePassword(accountId, passwordHash));
+            profiles.put(accountId, new Account(accountId, p.getName(), p.getEmail(), p.getPhone(), passwordHash,
+                    0, p.getCreatedAt(), p.getStatus()));
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+    }
+
+    @Override
+    public void updateStatus(int accountId, String status) throws SQLException {
+        Stripe s = stripe(accountId);
+        long seq;
+        s.lock.lock();
+        try {
+            Account p = profiles.get(accountId);
+            if (p == null) throw new SQLException("Account not found");
+            seq = journal == null ? 0 : log(encodeStatus(accountId, status));
+            profiles.put(accountId, new Account(accountId, p.getName(), p.getEmail(), p.getPhone(), p.getPassword(),
+                    0, p.getCreatedAt(), status));
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+    }
+
+    @Override
+    public AccountLimits findLimits(int accountId) {
+        Stripe s = stripe(accountId);
+        s.lock.lock();
+        try {
+            return s.limits.get(accountId);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateLimits(int accountId, AccountLimits limits) throws SQLException {
+        Stripe s = stripe(accountId);
+        long seq;
+        s.lock.lock();
+        try {
+            if (!profiles.containsKey(accountId)) throw new SQLException("Account not found");
+            seq = journal == null ? 0 : log(encodeLimits(accountId, limits));
+            if (limits == null) s.limits.remove(accountId);
+            else s.limits.put(accountId, limits);
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+    }
+
+    @Override
+    public Account findByEmail(String email) {
+        Integer id = byEmail.get(email);
+        Account profile = id == null ? null : profiles.get(id);
+        return profile == null ? null : snapshot(profile, false);
+    }
+
+    @Override
+    public List<Account> findByPhone(String phone) {
+        List<Account> list = new ArrayList<>();
+        for (Account profile : profiles.values()) {
+            if (phone.equals(profile.getPhone())) list.add(snapshot(profile, false));
+        }
+        return list;
+    }
+
+    @Override
+    public List<Account> searchByNamePrefix(String prefix, int limit) {
+        List<Account> list = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : byName.tailMap(prefix).entrySet()) {
+            if (list.size() >= limit || !e.getKey().startsWith(prefix)) break;
+            list.add(snapshot(profiles.get(e.getValue()), false));
+        }
+        return list;
+    }
+
+    @Override
+    public Page<Account> findPage(AccountSort sort, Account after, int limit) {
+        Iterable<Integer> ids;
+        if (sort == AccountSort.NAME) {
+            ids = (after == null ? byName : byName.tailMap(nameKey(after.getName(), after.getAccountId()), false)).values();
+        } else {
+            ids = (after == null ? profiles : profiles.tailMap(after.getAccountId(), false)).keySet();
+        }
+        List<Account> list = new ArrayList<>(limit + 1);
+        for (int id : ids) {
+            if (list.size() > limit) break;
+            list.add(snapshot(profiles.get(id), false));
+        }
+        boolean hasMore = list.size() > limit;
+        if (hasMore) list.remove(limit);
+        return new Page<>(list, hasMore);
+    }
+
+    @Override
+    public List<Account> findAll() {
+        List<Account> list = new ArrayList<>(profiles.size());
+        for (Account profile : profiles.values()) list.add(snapshot(profile, true));
+        return list;
+    }
+
+    @Override
+    public long streamAll(Consumer<Account> consumer) {
+        long count = 0;
+        for (Account profile : profiles.values()) {
+            consumer.accept(snapshot(profile, false));
+            count++;
+        }
+        return count;
+    }
+
+    // ---- LedgerEngine ----
+
+    @Override
+    public void deposit(int accountId, long amount) throws SQLException {
+        deposit(accountId, amount, null);
+    }
+
+    @Override
+    public void withdraw(int accountId, long amount) throws SQLException, InsufficientFundsException {
+        withdraw(accountId, amount, null);
+    }
+
+    @Override
+    public void transfer(int fromAccountId, int toAccountId, long amount) throws SQLException, InsufficientFundsException {
+        transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    // Each change is checked, then journaled, then applied, so a failed append leaves the store untouched.
+    // A receipt lives in the acting account's stripe and is looked up and stored under that stripe's lock.
+    @Override
+    public LedgerReceipt deposit(int accountId, long amount, String key) throws SQLException {
+        Stripe s = stripe(accountId);
+        long seq;
+        LedgerReceipt receipt;
+        s.lock.lock();
+        try {
+            long current = s.balance(accountId);
+            LedgerReceipt previous = s.receipt(accountId, key);
+            if (previous != null) return previous.asReplay();
+            long balance = Math.addExact(current, amount);
+            Transaction t = row(accountId, "Deposit", amount, "Deposit via CLI", LocalDateTime.now());
+            t.setBalanceAfter(balance);
+            receipt = receipt(key, t, 0);
+            seq = journal == null ? 0 : log(keyed(key, encodeRow(DEPOSIT, t)));
+            s.balances.put(accountId, balance);
+            s.append(t, seq);
+            s.store(receipt);
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt withdraw(int accountId, long amount, String key) throws SQLException, InsufficientFundsException {
+        Stripe s = stripe(accountId);
+        long seq;
+        LedgerReceipt receipt;
+        s.lock.lock();
+        try {
+            long balance = s.balance(accountId);
+            LedgerReceipt previous = s.receipt(accountId, key);
+            if (previous != null) return previous.asReplay();
+            if (balance < amount) throw new InsufficientFundsException("Insufficient balance");
+            Transaction t = row(accountId, "Withdraw", amount, "Withdrawal via CLI", LocalDateTime.now());
+            t.setBalanceAfter(balance - amount);
+            receipt = receipt(key, t, 0);
+            seq = journal == null ? 0 : log(keyed(key, encodeRow(WITHDRAW, t)));
+            s.balances.put(accountId, balance - amount);
+            s.append(t, seq);
+            s.store(receipt);
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt transfer(int fromAccountId, int toAccountId, long amount, String key) throws SQLException, InsufficientFundsException {
+        Stripe from = stripe(fromAccountId);
+        Stripe to = stripe(toAccountId);
+        // Ascending stripe order, the in-memory counterpart of locking rows in ascending id order
+        Stripe first = stripeIndex(fromAccountId) <= stripeIndex(toAccountId) ? from : to;
+        Stripe second = first == from ? to : from;
+        long seq;
+        LedgerReceipt receipt;
+        first.lock.lock();
+        if (second != first) second.lock.lock();
+        try {
+            long fromBalance = from.balance(fromAccountId);
+            long toBalance = to.balance(toAccountId);
+            LedgerReceipt previous = from.receipt(fromAccountId, key);
+            if (previous != null) return previous.asReplay();
+            if (fromBalance < amount) throw new InsufficientFundsException("Insufficient balance for transfer");
+            long newTo = Math.addExact(toBalance, amount);
+            LocalDateTime now = LocalDateTime.now();
+            Transaction out = row(fromAccountId, "Transfer", amount, TRANSFER_TO + toAccountId, now);
+            Transaction in = row(toAccountId, "Transfer", amount, TRANSFER_FROM + fromAccountId, now);
+            out.setBalanceAfter(fromBalance - amount);
+            in.setBalanceAfter(newTo);
+            receipt = receipt(key, out, toAccountId);
+            seq = journal == null ? 0 : log(keyed(key, encodeTransfer(out, in)));
+            from.balances.put(fromAccountId, fromBalance - amount);
+            to.balances.put(toAccountId, newTo);
+            from.append(out, seq);
+            to.append(in, seq);
+            from.store(receipt);
+        } finally {
+            if (second != first) second.lock.unlock();
+            first.lock.unlock();
+        }
+        sync(seq);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt findReceipt(int accountId, String key) {
+        Stripe s = stripe(accountId);
+        s.lock.lock();
+        try {
+            LedgerReceipt r = s.receipt(accountId, key);
+            return r == null ? null : r.asReplay();
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    // Not journaled: a purged receipt that reappears after a restart is only kept a little longer.
+    @Override
+    public int purgeReceipts(LocalDateTime cutoff) {
+        int purged = 0;
+        for (Stripe s : stripes) {
+            s.lock.lock();
+            try {
+                purged += s.purge(cutoff);
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return purged;
+    }
+
+    // ---- LedgerOutbox ----
+
+    @Override
+    public List<Transaction> peek(int max) {
+        long durable = journal == null ? Long.MAX_VALUE : journal.getDurableSeq();
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < STRIPES && rows.size() < max; i++) {
+            Stripe s = stripes[(outboxStart + i) & (STRIPES - 1)];
+            s.lock.lock();
+            try {
+                for (Unsent u : s.outbox) {
+                    if (u.seq > durable || rows.size() >= max) break;
+                    rows.add(u.row);
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        outboxStart = (outboxStart + 1) & (STRIPES - 1);
+        return rows;
+    }
+
+    // Not waited for: a removal lost in a crash only makes the rows come out of peek once more
+    @Override
+    public void remove(List<Transaction> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        for (Transaction t : rows) {
+            Stripe s = stripe(t.getAccountId());
+            s.lock.lock();
+            try {
+                s.sent(t.getTransactionId());
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        if (journal != null) log(encodeSent(rows));
+    }
+
+    // Only the process holding the store can relay its outbox, on one thread at a time
+    @Override
+    public boolean acquireRelay() {
+        Thread me = Thread.currentThread();
+        return relayThread.get() == me || relayThread.compareAndSet(null, me);
+    }
+
+    @Override
+    public void releaseRelay() {
+        relayThread.compareAndSet(Thread.currentThread(), null);
+    }
+
+    // ---- halves of a transfer between shards, see ShardedStore ----
+
+    // Phase one: debits fromAccountId and stores the receipt under key. Returns the ledger row, or null if key
+    // was already used (nothing is applied; the caller answers with findReceipt).
+    Transaction debitTransfer(int fromAccountId, int toAccountId, long amount, String key) throws SQLException, InsufficientFundsException {
+        Stripe s = stripe(fromAccountId);
+        long seq;
+        Transaction out;
+        s.lock.lock();
+        try {
+            long balance = s.balance(fromAccountId);
+            if (s.receipt(fromAccountId, key) != null) return null;
+            if (balance < amount) throw new InsufficientFundsException("Insufficient balance for transfer");
+            out = row(fromAccountId, "Transfer", amount, TRANSFER_TO + toAccountId, LocalDateTime.now());
+            out.setBalanceAfter(balance - amount);
+            seq = journal == null ? 0 : log(keyed(key, encodeHalf(TRANSFER_OUT, out, toAccountId)));
+            s.balances.put(fromAccountId, balance - amount);
+            s.append(out, seq);
+            s.store(receipt(key, out, toAccountId));
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+        return out;
+    }
+
+    // Phase two: credits toAccountId. creditKey names the debit, so a credit retried after a crash is applied
+    // once; returns false if it already had been.
+    boolean creditTransfer(int toAccountId, int fromAccountId, long amount, String creditKey) throws SQLException {
+        Stripe s = stripe(toAccountId);
+        long seq;
+        s.lock.lock();
+        try {
+            long current = s.balance(toAccountId);
+            if (s.receipt(toAccountId, creditKey) != null) return false;
+            long balance = Math.addExact(current, amount);
+            Transaction in = row(toAccountId, "Transfer", amount, TRANSFER_FROM + fromAccountId, LocalDateTime.now());
+            in.setBalanceAfter(balance);
+            seq = journal == null ? 0 : log(keyed(creditKey, encodeHalf(TRANSFER_IN, in, fromAccountId)));
+            s.balances.put(toAccountId, balance);
+            s.append(in, seq);
+            s.store(receipt(creditKey, in, fromAccountId));
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+        return true;
+    }
+
+    // Compensation when phase two cannot be applied: pays the debit back and drops its receipt, so a retry
+    // with the same key runs afresh.
+    void reverseTransfer(Transaction debit, String key) throws SQLException {
+        int accountId = debit.getAccountId();
+        Stripe s = stripe(accountId);
+        long seq;
+        s.lock.lock();
+        try {
+            long balance = Math.addExact(s.balance(accountId), debit.getAmount());
+            Transaction t = row(accountId, REVERSAL_TYPE, debit.getAmount(), REVERSAL_OF + debit.getTransactionId(), LocalDateTime.now());
+            t.setBalanceAfter(balance);
+            seq = journal == null ? 0 : log(encodeReversal(t, debit.getTransactionId(), key));
+            s.balances.put(accountId, balance);
+            s.append(t, seq);
+            s.forget(accountId, key);
+        } finally {
+            s.lock.unlock();
+        }
+        sync(seq);
+    }
+
+    // Ledger rows with a timestamp at or after since, in no particular order
+    List<Transaction> rowsSince(LocalDateTime since) {
+        List<Transaction> list = new ArrayList<>();
+        for (Stripe s : stripes) {
+            s.lock.lock();
+            try {
+                for (List<Transaction> rows : s.history.values()) {
+                    for (int i = rows.size() - 1; i >= 0 && !rows.get(i).getTimestamp().isBefore(since); i--) list.add(rows.get(i));
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return list;
+    }
+
+    // Payee of an outgoing transfer row, 0 for any other row
+    static int transferTarget(Transaction t) {
+        String remarks = t.getRemarks();
+        if (!"Transfer".equals(t.getType()) || remarks == null || !remarks.startsWith(TRANSFER_TO)) return 0;
+        return Integer.parseInt(remarks.substring(TRANSFER_TO.length()));
+    }
+
+    // Transaction id a reversal row pays back, 0 for any other row
+    static int reversedTransaction(Transaction t) {
+        String remarks = t.getRemarks();
+        if (!REVERSAL_TYPE.equals(t.getType()) || remarks == null || !remarks.startsWith(REVERSAL_OF)) return 0;
+        return Integer.parseInt(remarks.substring(REVERSAL_OF.length()));
+    }
+
+    static LedgerReceipt receipt(String key, Transaction t, int counterpartyId) {
+        if (key == null) return null;
+        return new LedgerReceipt(t.getAccountId(), key, t.getType(), counterpartyId, t.getAmount(), t.getBalanceAfter(), t.getTimestamp());
+    }
+
+    // ---- durability ----
+
+    /**
+     * Writes a new snapshot and drops the journal segments it makes redundant. Each stripe is copied under
+     * its own lock together with the journal seq at that moment, so writers are only paused one stripe at a time.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (journal == null) throw new IllegalStateException("Store has no journal");
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        long oldest = Long.MAX_VALUE;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 20));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(STRIPES);
+            for (Stripe s : stripes) {
+                long seq;
+                List<Account> accounts = new ArrayList<>();
+                List<List<Transaction>> histories = new ArrayList<>();
+                List<LedgerReceipt> receipts;
+                Map<Integer, AccountLimits> limits;
+                List<Transaction> unsent = new ArrayList<>();
+                s.lock.lock();
+                try {
+                    seq = journal.getLastSeq();
+                    s.purge(LocalDateTime.now().minus(RECEIPT_TTL_MILLIS, ChronoUnit.MILLIS));
+                    receipts = new ArrayList<>(s.receipts.values());
+                    limits = new HashMap<>(s.limits);
+                    for (Unsent u : s.outbox) unsent.add(u.row);
+                    s.balances.forEach((id, balance) -> {
+                        Account p = profiles.get(id);
+                        accounts.add(new Account(id, p.getName(), p.getEmail(), p.getPhone(), p.getPassword(),
+                                balance, p.getCreatedAt(), p.getStatus()));
+                        histories.add(new ArrayList<>(s.history.get(id)));
+                    });
+                } finally {
+                    s.lock.unlock();
+                }
+                oldest = Math.min(oldest, seq);
+                out.writeLong(seq);
+                out.writeInt(accounts.size());
+                for (int i = 0; i < accounts.size(); i++) writeAccount(out, accounts.get(i), histories.get(i));
+                out.writeInt(receipts.size());
+                for (LedgerReceipt receipt : receipts) writeReceipt(out, receipt);
+                out.writeInt(limits.size());
+                for (Map.Entry<Integer, AccountLimits> e : limits.entrySet()) {
+                    out.writeInt(e.getKey());
+                    out.writeLong(e.getValue().getDailyWithdrawalLimit());
+                    out.writeLong(e.getValue().getDailyTransferLimit());
+                    out.writeInt(e.getValue().getMaxDebitsPerMinute());
+                }
+                out.writeInt(unsent.size());
+                for (Transaction t : unsent) {
+                    out.writeInt(t.getAccountId());
+                    out.writeInt(t.getTransactionId());
+                }
+            }
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.discardThrough(oldest);
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    // Waits for pending journal writes and stops background work; the store must not be used afterwards.
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) snapshotter.interrupt();
+        if (journal != null) journal.close();
+    }
+
+    private void snapshotLoop(long intervalMillis) {
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+                snapshot();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Ledger snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Waits until every change appended so far is durable; the writer of a shard calls this after each batch
+    void awaitDurable() throws SQLException {
+        if (journal == null) return;
+        try {
+            journal.awaitDurable(journal.getLastSeq());
+        } catch (IOException e) {
+            throw new SQLException("Journal write failed", e);
+        }
+    }
+
+    private long log(ByteBuffer record) throws SQLException {
+        try {
+            return journal.append(record.flip());
+        } catch (IOException e) {
+            throw new SQLException("Journal append failed", e);
+        }
+    }
+
+    private void sync(long seq) throws SQLException {
+        if (seq == 0 || deferSync) return;
+        try {
+            journal.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new SQLException("Journal write failed", e);
+        }
+    }
+
+    private static ByteBuffer encodeCreate(Account a, long balance) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 8 + 8 + Codec.sizeOf(a.getName()) + Codec.sizeOf(a.getEmail())
+                + Codec.sizeOf(a.getPhone()) + Codec.sizeOf(a.getPassword()) + Codec.sizeOf(a.getStatus()));
+        buf.put(CREATE).putInt(a.getAccountId()).putLong(balance).putLong(Codec.toNanos(a.getCreatedAt()));
+        Codec.putString(buf, a.getName());
+        Codec.putString(buf, a.getEmail());
+        Codec.putString(buf, a.getPhone());
+        Codec.putString(buf, a.getPassword());
+        Codec.putString(buf, a.getStatus());
+        return buf;
+    }
+
+    // Wraps record with its idempotency key; unkeyed records are logged as they are
+    private static ByteBuffer keyed(String key, ByteBuffer record) {
+        if (key == null) return record;
+        record.flip();
+        ByteBuffer buf = ByteBuffer.allocate(1 + Codec.sizeOf(key) + record.remaining());
+        buf.put(KEYED);
+        Codec.putString(buf, key);
+        return buf.put(record);
+    }
+
+    private static ByteBuffer encodePassword(int accountId, String passwordHash) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + Codec.sizeOf(passwordHash));
+        buf.put(PASSWORD).putInt(accountId);
+        Codec.putString(buf, passwordHash);
+        return buf;
+    }
+
+    private static ByteBuffer encodeStatus(int accountId, String status) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + Codec.sizeOf(status));
+        buf.put(STATUS).putInt(accountId);
+        Codec.putString(buf, status);
+        return buf;
+    }
+
+    // A limits record with all limits at -1 clears the account's own limits
+    private static ByteBuffer encodeLimits(int accountId, AccountLimits limits) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 8 + 8 + 4).put(LIMITS).putInt(accountId);
+        if (limits == null) return buf.putLong(-1).putLong(-1).putInt(-1);
+        return buf.putLong(limits.getDailyWithdrawalLimit()).putLong(limits.getDailyTransferLimit()).putInt(limits.getMaxDebitsPerMinute());
+    }
+
+    private static ByteBuffer encodeSent(List<Transaction> rows) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + rows.size() * 8).put(OUTBOX_SENT).putInt(rows.size());
+        for (Transaction t : rows) buf.putInt(t.getAccountId()).putInt(t.getTransactionId());
+        return buf;
+    }
+
+    private static ByteBuffer encodeRow(byte type, Transaction t) {
+        return ByteBuffer.allocate(1 + 4 + 4 + 8 + 8).put(type).putInt(t.getTransactionId()).putInt(t.getAccountId())
+                .putLong(t.getAmount()).putLong(Codec.toNanos(t.getTimestamp()));
+    }
+
+    private static ByteBuffer encodeTransfer(Transaction out, Transaction in) {
+        return ByteBuffer.allocate(1 + 4 + 4 + 4 + 4 + 8 + 8).put(TRANSFER)
+                .putInt(out.getTransactionId()).putInt(in.getTransactionId())
+                .putInt(out.getAccountId()).putInt(in.getAccountId())
+                .putLong(out.getAmount()).putLong(Codec.toNanos(out.getTimestamp()));
+    }
+
+    private static ByteBuffer encodeHalf(byte type, Transaction t, int counterpartyId) {
+        return ByteBuffer.allocate(1 + 4 + 4 + 4 + 8 + 8).put(type).putInt(t.getTransactionId()).putInt(t.getAccountId())
+                .putInt(counterpartyId).putLong(t.getAmount()).putLong(Codec.toNanos(t.getTimestamp()));
+    }
+
+    private static ByteBuffer encodeReversal(Transaction t, int reversedId, String key) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 4 + 8 + 8 + 4 + Codec.sizeOf(key));
+        buf.put(REVERSAL).putInt(t.getTransactionId()).putInt(t.getAccountId()).putLong(t.getAmount())
+                .putLong(Codec.toNanos(t.getTimestamp())).putInt(reversedId);
+        Codec.putString(buf, key);
+        return buf;
+    }
+
+    // Applies one journal record during recovery, skipping the parts a stripe's snapshot already contains.
+    private void replay(long seq, ByteBuffer in, Recovery r) throws IOException {
+        byte type = in.get();
+        switch (type) {
+            case CREATE: {
+                int id = in.getInt();
+                long balance = in.getLong();
+                LocalDateTime createdAt = Codec.fromNanos(in.getLong());
+                Account a = new Account(id, Codec.getString(in), Codec.getString(in), Codec.getString(in),
+                        Codec.getString(in), balance, createdAt, null);
+                a.setStatus(Codec.getString(in));
+                if (seq > r.stripeSeq[stripeIndex(id)]) restoreAccount(a, new ArrayList<>(), r);
+                break;
+            }
+            case DEPOSIT:
+            case WITHDRAW: {
+                int txId = in.getInt();
+                int accountId = in.getInt();
+                long amount = in.getLong();
+                LocalDateTime ts = Codec.fromNanos(in.getLong());
+                if (seq <= r.stripeSeq[stripeIndex(accountId)]) break;
+                Transaction t = type == DEPOSIT
+                        ? ledgerRow(txId, accountId, "Deposit", amount, "Deposit via CLI", ts)
+                        : ledgerRow(txId, accountId, "Withdraw", amount, "Withdrawal via CLI", ts);
+                restoreRow(t, type == DEPOSIT ? amount : -amount);
+                break;
+            }
+            case TRANSFER: {
+                int outId = in.getInt();
+                int inId = in.getInt();
+                int fromId = in.getInt();
+                int toId = in.getInt();
+                long amount = in.getLong();
+                LocalDateTime ts = Codec.fromNanos(in.getLong());
+                if (seq > r.stripeSeq[stripeIndex(fromId)]) {
+                    restoreRow(ledgerRow(outId, fromId, "Transfer", amount, TRANSFER_TO + toId, ts), -amount);
+                }
+                if (seq > r.stripeSeq[stripeIndex(toId)]) {
+                    restoreRow(ledgerRow(inId, toId, "Transfer", amount, TRANSFER_FROM + fromId, ts), amount);
+                }
+                break;
+            }
+            case TRANSFER_OUT:
+            case TRANSFER_IN: {
+                int txId = in.getInt();
+                int accountId = in.getInt();
+                int counterpartyId = in.getInt();
+                long amount = in.getLong();
+                LocalDateTime ts = Codec.fromNanos(in.getLong());
+                if (seq <= r.stripeSeq[stripeIndex(accountId)]) break;
+                if (type == TRANSFER_OUT) restoreRow(ledgerRow(txId, accountId, "Transfer", amount, TRANSFER_TO + counterpartyId, ts), -amount);
+                else restoreRow(ledgerRow(txId, accountId, "Transfer", amount, TRANSFER_FROM + counterpartyId, ts), amount);
+                break;
+            }
+            case REVERSAL: {
+                int txId = in.getInt();
+                int accountId = in.getInt();
+                long amount = in.getLong();
+                LocalDateTime ts = Codec.fromNanos(in.getLong());
+                int reversedId = in.getInt();
+                String key = Codec.getString(in);
+                if (seq <= r.stripeSeq[stripeIndex(accountId)]) break;
+                restoreRow(ledgerRow(txId, accountId, REVERSAL_TYPE, amount, REVERSAL_OF + reversedId, ts), amount);
+                stripe(accountId).forget(accountId, key);
+                break;
+            }
+            case KEYED: {
+                String key = Codec.getString(in);
+                // Peek at the wrapped record for the receipt fields, then apply it as usual
+                ByteBuffer peek = in.duplicate();
+                byte inner = peek.get();
+                int accountId;
+                int counterpartyId = 0;
+                if (inner == TRANSFER) {
+                    peek.getInt();
+                    peek.getInt();
+                    accountId = peek.getInt();
+                    counterpartyId = peek.getInt();
+                } else if (inner == TRANSFER_OUT || inner == TRANSFER_IN) {
+                    peek.getInt();
+                    accountId = peek.getInt();
+                    counterpartyId = peek.getInt();
+                } else {
+                    peek.getInt();
+                    accountId = peek.getInt();
+                }
+                long amount = peek.getLong();
+                LocalDateTime ts = Codec.fromNanos(peek.getLong());
+                replay(seq, in, r);
+                if (seq > r.stripeSeq[stripeIndex(accountId)]) {
+                    Stripe s = stripe(accountId);
+                    String operation = inner == DEPOSIT ? "Deposit" : inner == WITHDRAW ? "Withdraw" : "Transfer";
+                    s.store(new LedgerReceipt(accountId, key, operation, counterpartyId, amount, s.balances.get(accountId, 0), ts));
+                }
+                break;
+            }
+            case PASSWORD: {
+                int id = in.getInt();
+                String hash = Codec.getString(in);
+                if (seq > r.stripeSeq[stripeIndex(id)]) r.passwords.put(id, hash);
+                break;
+            }
+            case STATUS: {
+                int id = in.getInt();
+                String status = Codec.getString(in);
+                if (seq > r.stripeSeq[stripeIndex(id)]) r.statuses.put(id, status);
+                break;
+            }
+            case LIMITS: {
+                int id = in.getInt();
+                long withdrawal = in.getLong();
+                long transfer = in.getLong();
+                int perMinute = in.getInt();
+                if (seq <= r.stripeSeq[stripeIndex(id)]) break;
+                if (perMinute < 0) stripe(id).limits.remove(id);
+                else stripe(id).limits.put(id, new AccountLimits(withdrawal, transfer, perMinute));
+                break;
+            }
+            case OUTBOX_SENT: {
+                // Applied whatever the stripe's tag: a row sent before its stripe's snapshot is not in the snapshot's outbox
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    int accountId = in.getInt();
+                    stripe(accountId).sent(in.getInt());
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type + " at seq " + seq);
+        }
+    }
+
+    // Fills r, including the journal seq each stripe's snapshot reflects (all 0 when there is no snapshot yet).
+    private void loadSnapshot(Recovery r) throws IOException {
+        Path file = dir.resolve(SNAPSHOT);
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20))) {
+            int magic = in.readInt();
+            if ((magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V4 && magic != SNAPSHOT_MAGIC_V3 && magic != SNAPSHOT_MAGIC_V2)
+                    || in.readInt() != STRIPES) {
+                throw new IOException("Unrecognised snapshot " + file);
+            }
+            for (int i = 0; i < STRIPES; i++) {
+                r.stripeSeq[i] = in.readLong();
+                int count = in.readInt();
+                for (int n = 0; n < count; n++) readAccount(in, r);
+                if (magic == SNAPSHOT_MAGIC_V2) continue;
+                int receipts = in.readInt();
+                for (int n = 0; n < receipts; n++) stripes[i].store(readReceipt(in));
+                if (magic == SNAPSHOT_MAGIC_V3) continue;
+                int limits = in.readInt();
+                for (int n = 0; n < limits; n++) {
+                    stripes[i].limits.put(in.readInt(), new AccountLimits(in.readLong(), in.readLong(), in.readInt()));
+                }
+                if (magic == SNAPSHOT_MAGIC_V4) continue;
+                int unsent = in.readInt();
+                for (int n = 0; n < unsent; n++) {
+                    int accountId = in.readInt();
+                    int txId = in.readInt();
+                    List<Transaction> rows = stripes[i].history.get(accountId);
+                    int at = rows == null ? -1 : indexBefore(rows, txId + 1);
+                    if (at < 0 || rows.get(at).getTransactionId() != txId) throw new IOException("Snapshot outbox refers to unknown row " + txId);
+                    stripes[i].outbox.add(new Unsent(rows.get(at), 0));
+                }
+            }
+        }
+    }
+
+    private static void writeAccount(DataOutputStream out, Account a, List<Transaction> history) throws IOException {
+        out.writeInt(a.getAccountId());
+        out.writeLong(a.getBalance());
+        out.writeLong(Codec.toNanos(a.getCreatedAt()));
+        writeNullable(out, a.getName());
+        writeNullable(out, a.getEmail());
+        writeNullable(out, a.getPhone());
+        writeNullable(out, a.getPassword());
+        writeNullable(out, a.getStatus());
+        out.writeInt(history.size());
+        for (Transaction t : history) {
+            out.writeInt(t.getTransactionId());
+            out.writeLong(t.getAmount());
+            out.writeLong(t.getBalanceAfter());
+            out.writeLong(Codec.toNanos(t.getTimestamp()));
+            String remarks = t.getRemarks() == null ? "" : t.getRemarks();
+            if ("Deposit".equals(t.getType()) && "Deposit via CLI".equals(remarks)) {
+                out.writeByte(ROW_DEPOSIT);
+            } else if ("Withdraw".equals(t.getType()) && "Withdrawal via CLI".equals(remarks)) {
+                out.writeByte(ROW_WITHDRAW);
+            } else if ("Transfer".equals(t.getType()) && remarks.startsWith(TRANSFER_TO)) {
+                out.writeByte(ROW_TRANSFER_OUT);
+                out.writeInt(Integer.parseInt(remarks.substring(TRANSFER_TO.length())));
+            } else if ("Transfer".equals(t.getType()) && remarks.startsWith(TRANSFER_FROM)) {
+                out.writeByte(ROW_TRANSFER_IN);
+                out.writeInt(Integer.parseInt(remarks.substring(TRANSFER_FROM.length())));
+            } else {
+                out.writeByte(ROW_OTHER);
+                writeNullable(out, t.getType());
+                writeNullable(out, t.getRemarks());
+            }
+        }
+    }
+
+    private void readAccount(DataInputStream in, Recovery r) throws IOException {
+        int id = in.readInt();
+        long balance = in.readLong();
+        LocalDateTime createdAt = Codec.fromNanos(in.readLong());
+        Account a = new Account(id, readNullable(in), readNullable(in), readNullable(in), readNullable(in),
+                balance, createdAt, readNullable(in));
+        int rows = in.readInt();
+        List<Transaction> history = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            int txId = in.readInt();
+            long amount = in.readLong();
+            long balanceAfter = in.readLong();
+            LocalDateTime ts = Codec.fromNanos(in.readLong());
+            byte kind = in.readByte();
+            Transaction t;
+            switch (kind) {
+                case ROW_DEPOSIT: t = ledgerRow(txId, id, "Deposit", amount, "Deposit via CLI", ts); break;
+                case ROW_WITHDRAW: t = ledgerRow(txId, id, "Withdraw", amount, "Withdrawal via CLI", ts); break;
+                case ROW_TRANSFER_OUT: t = ledgerRow(txId, id, "Transfer", amount, TRANSFER_TO + in.readInt(), ts); break;
+                case ROW_TRANSFER_IN: t = ledgerRow(txId, id, "Transfer", amount, TRANSFER_FROM + in.readInt(), ts); break;
+                case ROW_OTHER: t = ledgerRow(txId, id, readNullable(in), amount, readNullable(in), ts); break;
+                default: throw new IOException("Unknown ledger row kind " + kind);
+            }
+            t.setBalanceAfter(balanceAfter);
+            history.add(t);
+        }
+        restoreAccount(a, history, r);
+    }
+
+    private static void writeReceipt(DataOutputStream out, LedgerReceipt r) throws IOException {
+        out.writeInt(r.getAccountId());
+        out.writeUTF(r.getIdempotencyKey());
+        out.writeUTF(r.getOperation());
+        out.writeInt(r.getCounterpartyId());
+        out.writeLong(r.getAmount());
+        out.writeLong(r.getBalanceAfter());
+        out.writeLong(Codec.toNanos(r.getCreatedAt()));
+    }
+
+    private static LedgerReceipt readReceipt(DataInputStream in) throws IOException {
+        return new LedgerReceipt(in.readInt(), in.readUTF(), in.readUTF(), in.readInt(), in.readLong(), in.readLong(),
+                Codec.fromNanos(in.readLong()));
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // State gathered while loading, before the store is shared
+    private static final class Recovery {
+        final long[] stripeSeq = new long[STRIPES];
+        final List<Account> accounts = new ArrayList<>();
+        // Password changes replayed from the journal, applied once every account is loaded
+        final Map<Integer, String> passwords = new HashMap<>();
+        final Map<Integer, String> statuses = new HashMap<>();
+    }
+
+    // Recovery runs before the store is shared, so these skip the stripe locks.
+    private void restoreAccount(Account a, List<Transaction> history, Recovery r) {
+        int id = a.getAccountId();
+        Stripe s = stripe(id);
+        s.balances.put(id, a.getBalance());
+        s.history.put(id, history);
+        a.setBalance(0);
+        r.accounts.add(a);
+        byEmail.put(a.getEmail(), id);
+        if (id > nextAccountId.get()) nextAccountId.set(id);
+        if (!history.isEmpty()) {
+            int last = history.get(history.size() - 1).getTransactionId();
+            if (last > nextTransactionId.get()) nextTransactionId.set(last);
+        }
+    }
+
+    private void restoreRow(Transaction t, long delta) throws IOException {
+        Stripe s = stripe(t.getAccountId());
+        if (!s.balances.containsKey(t.getAccountId())) throw new IOException("Journal refers to unknown account " + t.getAccountId());
+        long balance = s.balances.get(t.getAccountId(), 0) + delta;
+        s.balances.put(t.getAccountId(), balance);
+        t.setBalanceAfter(balance);
+        s.append(t, 0); // replayed records are on disk already
+        if (t.getTransactionId() > nextTransactionId.get()) nextTransactionId.set(t.getTransactionId());
+    }
+
+    private static Transaction ledgerRow(int txId, int accountId, String type, long amount, String remarks, LocalDateTime ts) {
+        Transaction t = new Transaction(accountId, type, amount, remarks);
+        t.setTransactionId(txId);
+        t.setTimestamp(ts);
+        return t;
+    }
+
+    // ---- internals ----
+
+    // Ledger reads. A separate view because TransactionRepository.streamAll and AccountRepository.streamAll
+    // differ only in their Consumer type argument and cannot both be implemented by one class.
+    private final class Transactions implements TransactionRepository {
+        @Override
+        public List<Transaction> findByAccountId(int accountId) {
+            Stripe s = stripe(accountId);
+            s.lock.lock();
+            try {
+                List<Transaction> rows = s.history.get(accountId);
+                List<Transaction> list = new ArrayList<>(rows == null ? 0 : rows.size());
+                if (rows != null) for (int i = rows.size() - 1; i >= 0; i--) list.add(rows.get(i));
+                return list;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        @Override
+        public Page<Transaction> findPage(int accountId, Transaction after, int limit) {
+            List<Transaction> list = new ArrayList<>(limit + 1);
+            Stripe s = stripe(accountId);
+            s.lock.lock();
+            try {
+                List<Transaction> rows = s.history.get(accountId);
+                if (rows != null) {
+                    int start = after == null ? rows.size() - 1 : indexBefore(rows, after.getTransactionId());
+                    for (int i = start; i >= 0 && list.size() <= limit; i--) list.add(rows.get(i));
+                }
+            } finally {
+                s.lock.unlock();
+            }
+            boolean hasMore = list.size() > limit;
+            if (hasMore) list.remove(limit);
+            return new Page<>(list, hasMore);
+        }
+
+        // Copies rows out in small chunks under the stripe lock so the consumer never runs while holding it.
+        @Override
+        public long streamByAccountId(int accountId, Consumer<Transaction> consumer) {
+            Transaction after = null;
+            long count = 0;
+            while (true) {
+                Page<Transaction> page = findPage(accountId, after, STREAM_CHUNK);
+                for (Transaction t : page.getItems()) consumer.accept(t);
+                count += page.getItems().size();
+                if (!page.hasMore()) return count;
+                after = page.getLast();
+            }
+        }
+
+        @Override
+        public Transaction findLastBefore(int accountId, LocalDateTime time) {
+            Stripe s = stripe(accountId);
+            s.lock.lock();
+            try {
+                List<Transaction> rows = s.history.get(accountId);
+                if (rows == null) return null;
+                int i = indexFrom(rows, time) - 1;
+                return i >= 0 ? rows.get(i) : null;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        @Override
+        public Transaction findFirstFrom(int accountId, LocalDateTime time) {
+            Stripe s = stripe(accountId);
+            s.lock.lock();
+            try {
+                List<Transaction> rows = s.history.get(accountId);
+                if (rows == null) return null;
+                int i = indexFrom(rows, time);
+                return i < rows.size() ? rows.get(i) : null;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Transaction> findRange(int accountId, LocalDateTime from, LocalDateTime to) {
+            Stripe s = stripe(accountId);
+            s.lock.lock();
+            try {
+                List<Transaction> rows = s.history.get(accountId);
+                if (rows == null) return new ArrayList<>();
+                int start = indexFrom(rows, from);
+                int end = Math.max(start, indexFrom(rows, to));
+                return new ArrayList<>(rows.subList(start, end));
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        @Override
+        public long streamAll(Consumer<Transaction> consumer) {
+            List<Transaction> all = ledgerInIdOrder();
+            all.forEach(consumer);
+            return all.size();
+        }
+    }
+
+    // Every ledger row, by transaction id; ShardedStore merges these across shards
+    List<Transaction> ledgerInIdOrder() {
+        List<Transaction> all = new ArrayList<>();
+        for (Stripe s : stripes) {
+            s.lock.lock();
+            try {
+                for (List<Transaction> rows : s.history.values()) all.addAll(rows);
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        all.sort(Comparator.comparingInt(Transaction::getTransactionId));
+        return all;
+    }
+
+    private Transaction row(int accountId, String type, long amount, String remarks, LocalDateTime timestamp) {
+        return ledgerRow(nextTransactionId.addAndGet(idStride), accountId, type, amount, remarks, timestamp);
+    }
+
+    private Account snapshot(Account profile, boolean withPassword) {
+        int id = profile.getAccountId();
+        Stripe s = stripe(id);
+        long balance;
+        s.lock.lock();
+        try {
+            balance = s.balances.get(id, 0);
+        } finally {
+            s.lock.unlock();
+        }
+        return new Account(id, profile.getName(), profile.getEmail(), profile.getPhone(),
+                withPassword ? profile.getPassword() : null, balance, profile.getCreatedAt(), profile.getStatus());
+    }
+
+    // Position of the newest row older than transactionId (ids grow monotonically within a list)
+    private static int indexBefore(List<Transaction> rows, int transactionId) {
+        int lo = 0;
+        int hi = rows.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rows.get(mid).getTransactionId() < transactionId) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return lo - 1;
+    }
+
+    // First position whose timestamp is >= time; rows are appended in time order
+    private static int indexFrom(List<Transaction> rows, LocalDateTime time) {
+        int lo = 0;
+        int hi = rows.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rows.get(mid).getTimestamp().isBefore(time)) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private static String nameKey(String name, int accountId) {
+        String id = Integer.toString(accountId);
+        return name + '\0' + "0000000000".substring(id.length()) + id;
+    }
+
+    private static int accountIdOf(String nameKey) {
+        return Integer.parseInt(nameKey.substring(nameKey.length() - 10));
+    }
+
+    // Top bits of a multiplicative hash: ids in one stripe must not share low bits, or the stripe's HashMap collides
+    private static int stripeIndex(int accountId) {
+        return (accountId * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES));
+    }
+
+    private Stripe stripe(int accountId) {
+        return stripes[stripeIndex(accountId)];
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final IntLongHashMap balances = new IntLongHashMap(1024);
+        final Map<Integer, List<Transaction>> history = new HashMap<>();
+        // Idempotency receipts of this stripe's accounts, keyed "accountId:key"
+        final Map<String, LedgerReceipt> receipts = new HashMap<>();
+        // Accounts with limits of their own
+        final Map<Integer, AccountLimits> limits = new HashMap<>();
+        // Rows not yet taken by the event relay, oldest first; empty unless LedgerOutbox.ENABLED
+        final ArrayDeque<Unsent> outbox = new ArrayDeque<>();
+
+        long balance(int accountId) throws SQLException {
+            if (!balances.containsKey(accountId)) throw new SQLException("Account not found");
+            return balances.get(accountId, 0);
+        }
+
+        // seq is the row's journal record, 0 if it needs no fsync
+        void append(Transaction t, long seq) {
+            history.get(t.getAccountId()).add(t);
+            if (LedgerOutbox.ENABLED) outbox.add(new Unsent(t, seq));
+        }
+
+        // Rows leave in the order peek returned them, so the one sent is normally at the head
+        void sent(int transactionId) {
+            Unsent head = outbox.peekFirst();
+            if (head != null && head.row.getTransactionId() == transactionId) outbox.pollFirst();
+            else outbox.removeIf(u -> u.row.getTransactionId() == transactionId);
+        }
+
+        LedgerReceipt receipt(int accountId, String key) {
+            return key == null ? null : receipts.get(accountId + ":" + key);
+        }
+
+        void store(LedgerReceipt r) {
+            if (r != null) receipts.put(r.getAccountId() + ":" + r.getIdempotencyKey(), r);
+        }
+
+        void forget(int accountId, String key) {
+            if (key != null) receipts.remove(accountId + ":" + key);
+        }
+
+        int purge(LocalDateTime cutoff) {
+            int purged = 0;
+            for (Iterator<LedgerReceipt> it = receipts.values().iterator(); it.hasNext(); ) {
+                if (it.next().getCreatedAt().isBefore(cutoff)) {
+                    it.remove();
+                    purged++;
+                }
+            }
+            return purged;
+        }
+    }
+
+    private static final class Unsent {
+        final Transaction row;
+        final long seq;
+
+        Unsent(Transaction row, long seq) {
+            this.row = row;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package banking.dao;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.PolicyViolationException;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.LedgerReceipt;
+import banking.models.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// MySQL ledger engine: one transaction per operation, rows locked in ascending id order. With bank.events.outbox
+// set, each operation also copies its ledger rows into ledger_outbox before committing (see LedgerOutbox).
+public class JdbcLedgerEngine implements LedgerEngine {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_BASE_MS = 10;
+    private static final Counter ROLLBACKS = Metrics.counter("ledger.rollbacks");
+    private static final Counter RETRIES = Metrics.counter("ledger.retries");
+
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final IdempotencyDAO idempotencyDAO = new IdempotencyDAO();
+    private final OutboxDAO outboxDAO = new OutboxDAO();
+
+    public JdbcLedgerEngine(AccountDAO accountDAO, TransactionDAO transactionDAO) {
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+    }
+
+    @Override
+    public void deposit(int accountId, long amount) throws SQLException, PolicyViolationException {
+        deposit(accountId, amount, null);
+    }
+
+    @Override
+    public void withdraw(int accountId, long amount) throws SQLException, InsufficientFundsException, PolicyViolationException {
+        withdraw(accountId, amount, null);
+    }
+
+    @Override
+    public void transfer(int fromAccountId, int toAccountId, long amount) throws SQLException, InsufficientFundsException, PolicyViolationException {
+        transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    @Override
+    public LedgerReceipt deposit(int accountId, long amount, String key) throws SQLException, PolicyViolationException {
+        LedgerReceipt receipt = inTransaction(conn -> {
+            Account acc = accountDAO.findByIdForUpdate(conn, accountId);
+            if (acc == null) throw new SQLException("Account not found");
+            LedgerReceipt previous = previousReceipt(conn, accountId, key);
+            if (previous != null) return previous;
+            requireActive(acc);
+            long newBal = Math.addExact(acc.getBalance(), amount);
+            accountDAO.updateBalance(conn, accountId, newBal);
+            insertRows(conn, List.of(row(accountId, "Deposit", amount, "Deposit via CLI", newBal)));
+            return storeReceipt(conn, accountId, key, "Deposit", 0, amount, newBal);
+        });
+        accountDAO.invalidate(accountId);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt withdraw(int accountId, long amount, String key) throws SQLException, InsufficientFundsException, PolicyViolationException {
+        LedgerReceipt receipt = inTransaction(conn -> {
+            Account acc = accountDAO.findByIdForUpdate(conn, accountId);
+            if (acc == null) throw new SQLException("Account not found");
+            LedgerReceipt previous = previousReceipt(conn, accountId, key);
+            if (previous != null) return previous;
+            requireActive(acc);
+            if (acc.getBalance() < amount) throw new InsufficientFundsException("Insufficient balance");
+            long newBal = acc.getBalance() - amount;
+            accountDAO.updateBalance(conn, accountId, newBal);
+            insertRows(conn, List.of(row(accountId, "Withdraw", amount, "Withdrawal via CLI", newBal)));
+            return storeReceipt(conn, accountId, key, "Withdraw", 0, amount, newBal);
+        });
+        accountDAO.invalidate(accountId);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt transfer(int fromAccountId, int toAccountId, long amount, String key) throws SQLException, InsufficientFundsException, PolicyViolationException {
+        LedgerReceipt receipt = inTransaction(conn -> {
+            // Lock both rows in ascending id order so opposing transfers (A->B, B->A) cannot deadlock
+            Account from;
+            Account to;
+            if (fromAccountId < toAccountId) {
+                from = accountDAO.findByIdForUpdate(conn, fromAccountId);
+                to = accountDAO.findByIdForUpdate(conn, toAccountId);
+            } else {
+                to = accountDAO.findByIdForUpdate(conn, toAccountId);
+                from = accountDAO.findByIdForUpdate(conn, fromAccountId);
+            }
+            if (from == null || to == null) throw new SQLException("Account not found");
+            LedgerReceipt previous = previousReceipt(conn, fromAccountId, key);
+            if (previous != null) return previous;
+            requireActive(from);
+            requireActive(to);
+            if (from.getBalance() < amount) throw new InsufficientFundsException("Insufficient balance for transfer");
+
+            long newFrom = from.getBalance() - amount;
+            long newTo = Math.addExact(to.getBalance(), amount);
+
+            accountDAO.updateBalance(conn, fromAccountId, newFrom);
+            accountDAO.updateBalance(conn, toAccountId, newTo);
+
+            insertRows(conn, List.of(
+                    row(fromAccountId, "Transfer", amount, "Transfer to account " + toAccountId, newFrom),
+                    row(toAccountId, "Transfer", amount, "Transfer from account " + fromAccountId, newTo)));
+            return storeReceipt(conn, fromAccountId, key, "Transfer", toAccountId, amount, newFrom);
+        });
+        accountDAO.invalidate(fromAccountId);
+        accountDAO.invalidate(toAccountId);
+        return receipt;
+    }
+
+    @Override
+    public LedgerReceipt findReceipt(int accountId, String key) throws SQLException {
+        LedgerReceipt r = idempotencyDAO.find(accountId, key);
+        return r == null ? null : r.asReplay();
+    }
+
+    @Override
+    public int purgeReceipts(LocalDateTime cutoff) throws SQLException {
+        return idempotencyDAO.deleteBefore(cutoff);
+    }
+
+    // Called with the acting account's row locked, which serialises every call carrying its keys. The plain
+    // SELECT sees rows committed before the lock was granted: InnoDB only fixes a read view at the first
+    // non-locking read, and the locking read comes first.
+    private LedgerReceipt previousReceipt(Connection conn, int accountId, String key) throws SQLException {
+        if (key == null) return null;
+        LedgerReceipt r = idempotencyDAO.find(conn, accountId, key);
+        return r == null ? null : r.asReplay();
+    }
+
+    // BankService checks status from a cache up to bank.policy.ttlMs old; this is the check a freeze made through
+    // another instance cannot slip past, as the row lock orders it against the UPDATE of the status
+    private static void requireActive(Account acc) throws PolicyViolationException {
+        if (!"ACTIVE".equals(acc.getStatus())) {
+            throw new PolicyViolationException("Account " + acc.getAccountId() + " is " + acc.getStatus());
+        }
+    }
+
+    private LedgerReceipt storeReceipt(Connection conn, int accountId, String key, String operation, int counterpartyId,
+                                       long amount, long balanceAfter) throws SQLException {
+        if (key == null) return null;
+        LedgerReceipt r = new LedgerReceipt(accountId, key, operation, counterpartyId, amount, balanceAfter,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        idempotencyDAO.insert(conn, r);
+        return r;
+    }
+
+    private void insertRows(Connection conn, List<Transaction> rows) throws SQLException {
+        if (rows.size() == 1) transactionDAO.insertTransaction(conn, rows.get(0));
+        else transactionDAO.insertTransactions(conn, rows);
+        if (LedgerOutbox.ENABLED) outboxDAO.insert(conn, rows);
+    }
+
+    // Ledger row carrying the running balance written in the same transaction as the account update
+    private static Transaction row(int accountId, String type, long amount, String remarks, long balanceAfter) {
+        Transaction t = new Transaction(accountId, type, amount, remarks);
+        t.setBalanceAfter(balanceAfter);
+        return t;
+    }
+
+    private interface TransactionWork<T, E extends Exception> {
+        T run(Connection conn) throws SQLException, PolicyViolationException, E;
+    }
+
+    // Runs work in one database transaction, retrying from scratch when MySQL picks it as a deadlock victim.
+    private <T, E extends Exception> T inTransaction(TransactionWork<T, E> work) throws SQLException, PolicyViolationException, E {
+        for (int attempt = 1; ; attempt++) {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+                T result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException ex) {
+                rollback(conn);
+                if (attempt >= MAX_ATTEMPTS || !isRetryable(ex)) throw ex;
+                RETRIES.increment();
+                backoff(attempt);
+            } catch (Exception ex) {
+                rollback(conn);
+                throw ex;
+            } finally {
+                if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+            }
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn == null) return;
+        ROLLBACKS.increment();
+        try { conn.rollback(); } catch (SQLException e) {}
+    }
+
+    // 40001 = deadlock victim / serialization failure (MySQL 1213), 1205 = lock wait timeout
+    private static boolean isRetryable(SQLException ex) {
+        return "40001".equals(ex.getSQLState()) || ex.getErrorCode() == 1213 || ex.getErrorCode() == 1205;
+    }
+
+    private static void backoff(int attempt) throws SQLException {
+        long max = BACKOFF_BASE_MS << attempt;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(max / 2, max + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying transaction", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package banking.dao;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Monthly partitions of transactions, and the move of whole cold months into transactions_archive.
+public class LedgerArchiveDAO {
+    public static final String FUTURE = "p_future";
+    private static final Pattern NAME = Pattern.compile("p_?\\w+");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String COLUMNS = "transaction_id, account_id, type, amount, timestamp, remarks, balance_after";
+
+    // One partition of transactions; rows is InnoDB's estimate
+    public static final class Partition {
+        private final String name;
+        private final LocalDateTime upperBound;
+        private final long rows;
+
+        Partition(String name, LocalDateTime upperBound, long rows) {
+            this.name = name;
+            this.upperBound = upperBound;
+            this.rows = rows;
+        }
+
+        public String getName() { return name; }
+        // Exclusive; null for the MAXVALUE partition
+        public LocalDateTime getUpperBound() { return upperBound; }
+        public long getRows() { return rows; }
+    }
+
+    // In range order; fails if transactions is not partitioned (V8 not applied)
+    public List<Partition> partitions() throws SQLException {
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions' ORDER BY PARTITION_ORDINAL_POSITION";
+        List<Partition> list = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                if (name == null) throw new SQLException("transactions is not partitioned; apply migration V8");
+                String bound = rs.getString(2).replace("'", "");
+                list.add(new Partition(name, "MAXVALUE".equals(bound) ? null
+                        : LocalDateTime.parse(bound.length() == 10 ? bound + " 00:00:00" : bound, BOUND), rs.getLong(3)));
+            }
+        }
+        return list;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    // Splits the given consecutive months, each ending before MAXVALUE, out of p_future
+    public void addMonths(List<YearMonth> months) throws SQLException {
+        StringBuilder sql = new StringBuilder("ALTER TABLE transactions REORGANIZE PARTITION " + FUTURE + " INTO (");
+        for (YearMonth m : months) {
+            sql.append("PARTITION ").append(partitionName(m)).append(" VALUES LESS THAN ('")
+                    .append(m.plusMonths(1).atDay(1)).append("'), ");
+        }
+        sql.append("PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))");
+        try (Connection conn = DatabaseConnection.getConnection(); Statement st = conn.createStatement()) {
+            st.execute(sql.toString());
+        }
+    }
+
+    /**
+     * Copies a partition's rows into transactions_archive, accountsPerBatch accounts per autocommitted
+     * statement so no transaction grows with the month. Rows already archived are skipped, so a copy
+     * interrupted part-way can simply be repeated. Returns the rows newly copied.
+     */
+    public long copyToArchive(Partition p, int accountsPerBatch) throws SQLException {
+        String sql = "INSERT IGNORE INTO transactions_archive (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM transactions PARTITION (" + checked(p) + ") WHERE account_id BETWEEN ? AND ?";
+        long copied = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int maxId;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(account_id), 0) FROM accounts")) {
+                rs.next();
+                maxId = rs.getInt(1);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (long first = 1; first <= maxId; first += accountsPerBatch) {
+                    ps.setInt(1, (int) first);
+                    ps.setInt(2, (int) Math.min(maxId, first + accountsPerBatch - 1));
+                    copied += ps.executeUpdate();
+                }
+            }
+        }
+        return copied;
+    }
+
+    // Moves the read horizon past p: from here on history reads take its rows from the archive
+    public void recordArchived(Partition p, long rows) throws SQLException {
+        String sql = "INSERT INTO ledger_archive_log (partition_name, archived_before, ledger_rows) VALUES (?,?,?) "
+                + "ON DUPLICATE KEY UPDATE ledger_rows = ledger_rows + VALUES(ledger_rows)";
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, p.getName());
+            ps.setTimestamp(2, Timestamp.valueOf(p.getUpperBound()));
+            ps.setLong(3, rows);
+            ps.executeUpdate();
+        }
+        TransactionDAO.archiveHorizonMoved(p.getUpperBound());
+    }
+
+    public void dropPartition(Partition p) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("ALTER TABLE transactions DROP PARTITION " + checked(p));
+        }
+    }
+
+    private static String checked(Partition p) throws SQLException {
+        if (!NAME.matcher(p.getName()).matches() || FUTURE.equals(p.getName())) {
+            throw new SQLException("Refusing to archive partition " + p.getName());
+        }
+        return p.getName();
+    }
+}
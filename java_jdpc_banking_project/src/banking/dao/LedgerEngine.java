@@ -0,0 +1,37 @@
+package banking.dao;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.PolicyViolationException;
+import banking.models.LedgerReceipt;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Applies balance changes atomically together with their ledger rows. Amounts are positive minor
+ * units and have already been validated by the caller; an unknown account is reported as an SQLException.
+ * An engine that can see account status in the same atomic step (JdbcLedgerEngine, under the row lock)
+ * refuses an account that is not ACTIVE with a PolicyViolationException, after the receipt check.
+ *
+ * The keyed variants also store a receipt under (acting account, key) in the same atomic step. If one is
+ * already stored, nothing is applied and that receipt is returned, marked replayed; checking that it
+ * describes the same request is up to the caller. Failed calls store nothing and may be retried.
+ */
+public interface LedgerEngine {
+    void deposit(int accountId, long amount) throws SQLException, PolicyViolationException;
+
+    void withdraw(int accountId, long amount) throws SQLException, InsufficientFundsException, PolicyViolationException;
+
+    void transfer(int fromAccountId, int toAccountId, long amount) throws SQLException, InsufficientFundsException, PolicyViolationException;
+
+    LedgerReceipt deposit(int accountId, long amount, String key) throws SQLException, PolicyViolationException;
+
+    LedgerReceipt withdraw(int accountId, long amount, String key) throws SQLException, InsufficientFundsException, PolicyViolationException;
+
+    LedgerReceipt transfer(int fromAccountId, int toAccountId, long amount, String key) throws SQLException, InsufficientFundsException, PolicyViolationException;
+
+    LedgerReceipt findReceipt(int accountId, String key) throws SQLException;
+
+    // Drops receipts created before cutoff; returns how many
+    int purgeReceipts(LocalDateTime cutoff) throws SQLException;
+}
@@ -0,0 +1,30 @@
+package banking.dao;
+
+import banking.models.Transaction;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Ledger rows committed but not yet published by the event relay (banking.events.EventRelay). With
+ * -Dbank.events.outbox=true (the default whenever bank.events.dir is set) the ledger engine adds every row
+ * it writes to the outbox in the same atomic step as the row itself, so a row is published if and only if
+ * it was committed. Rows of one account come out in the order they were written.
+ */
+public interface LedgerOutbox {
+    boolean ENABLED = Boolean.parseBoolean(System.getProperty("bank.events.outbox",
+            Boolean.toString(System.getProperty("bank.events.dir") != null)));
+
+    // Up to max of the oldest rows still in the outbox, leaving them there
+    List<Transaction> peek(int max) throws SQLException;
+
+    // Takes rows returned by peek out of the outbox, once they are published
+    void remove(List<Transaction> rows) throws SQLException;
+
+    // True while the calling thread may relay the outbox; only one relay thread at a time may, in this process
+    // or any other sharing the outbox
+    boolean acquireRelay() throws SQLException;
+
+    // Gives up the relay if the calling thread holds it
+    void releaseRelay();
+}
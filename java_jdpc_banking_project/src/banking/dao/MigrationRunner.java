@@ -0,0 +1,309 @@
+package banking.dao;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the MySQL schema up to date when the mysql backend starts. Scripts named V<version>__<description>.sql
+ * in bank.db.migrations (default db/migrations) newer than the highest version in schema_version are applied in
+ * order, one statement at a time, and recorded with their checksum; an applied script that has since changed
+ * stops the start. An empty database gets bank.db.schema (default db/schema.sql) first, which records the
+ * version it already contains, and its ledger partitions are then dated from the month of installation. A database that predates schema_version is baselined at the last version whose
+ * changes it already has, found by looking for the tables, columns and indexes V2 onwards create (see
+ * detectVersion), or at bank.db.baselineVersion if that is set. MySQL DDL is not transactional, so a script that
+ * fails part-way is not recorded and has to be finished by hand. A named lock keeps instances starting together
+ * from migrating twice. Skipped with -Dbank.db.migrate=false and on databases other than MySQL.
+ */
+public class MigrationRunner {
+    private static final Pattern SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String LOCK = "bank_db_migrate";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    private static boolean done;
+
+    private final Path migrations;
+    private final Path schema;
+    private final int baselineVersion;
+
+    // baselineVersion 0 detects the version of a database that predates schema_version
+    public MigrationRunner(Path migrations, Path schema, int baselineVersion) {
+        this.migrations = migrations;
+        this.schema = schema;
+        this.baselineVersion = baselineVersion;
+    }
+
+    public static MigrationRunner fromConfig() {
+        return new MigrationRunner(Paths.get(System.getProperty("bank.db.migrations", "db/migrations")),
+                Paths.get(System.getProperty("bank.db.schema", "db/schema.sql")),
+                Integer.getInteger("bank.db.baselineVersion", 0));
+    }
+
+    // Runs the configured migrations once per JVM; a failure is fatal, the DAOs would not match the schema
+    public static synchronized void migrateOnStartup() {
+        if (done || !Boolean.parseBoolean(System.getProperty("bank.db.migrate", "true"))) return;
+        try {
+            List<Integer> applied = fromConfig().migrate();
+            if (!applied.isEmpty()) System.out.println("Applied schema migrations " + applied);
+            done = true;
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Schema migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Returns the versions applied by this call, in order
+    public List<Integer> migrate() throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (!"MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName())) return List.of();
+            if (!lock(conn)) throw new SQLException("Another instance has held the migration lock for " + LOCK_TIMEOUT_SECONDS + "s");
+            try {
+                return migrate(conn);
+            } finally {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    ps.setString(1, LOCK);
+                    ps.executeQuery().close();
+                }
+            }
+        }
+    }
+
+    private List<Integer> migrate(Connection conn) throws SQLException, IOException {
+        if (!tableExists(conn, "schema_version")) {
+            if (tableExists(conn, "accounts")) {
+                int baseline = baselineVersion > 0 ? baselineVersion : detectVersion(conn);
+                createVersionTable(conn);
+                record(conn, baseline, "Baseline", "existing schema", null, 0);
+                System.out.println("Baselined the existing schema at version " + baseline);
+            } else {
+                long start = System.currentTimeMillis();
+                execute(conn, schema, read(schema));
+                if (!tableExists(conn, "schema_version")) throw new SQLException(schema + " did not create schema_version");
+                datePartitions(conn, YearMonth.now());
+                System.out.println("Created schema from " + schema + " in " + (System.currentTimeMillis() - start) + " ms");
+            }
+        }
+        int current = 0;
+        Map<Integer, String> checksums = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                current = Math.max(current, rs.getInt(1));
+                if (rs.getString(2) != null) checksums.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+
+        List<Integer> applied = new ArrayList<>();
+        for (Map.Entry<Integer, Path> e : scripts().entrySet()) {
+            int version = e.getKey();
+            Path script = e.getValue();
+            String sql = read(script);
+            String checksum = sha256(sql);
+            if (version <= current) {
+                String recorded = checksums.get(version);
+                if (recorded != null && !recorded.equals(checksum)) {
+                    throw new SQLException(script.getFileName() + " was changed after it was applied");
+                }
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            execute(conn, script, sql);
+            Matcher m = SCRIPT.matcher(script.getFileName().toString());
+            m.matches();
+            record(conn, version, m.group(2).replace('_', ' '), script.getFileName().toString(), checksum,
+                    System.currentTimeMillis() - start);
+            applied.add(version);
+        }
+        return applied;
+    }
+
+    /**
+     * The version a database without schema_version is at: 1, the original schema, plus every migration from V2
+     * on whose last change is present, stopping at the first that is missing. A later migration found applied
+     * after a gap runs again rather than being trusted.
+     */
+    static int detectVersion(Connection conn) throws SQLException {
+        boolean[] applied = {
+                // V2's index is dropped again by V8
+                indexExists(conn, "transactions", "idx_transactions_account_ts") || tableExists(conn, "ledger_archive_log"),
+                indexExists(conn, "accounts", "idx_accounts_name"),
+                "decimal".equalsIgnoreCase(columnType(conn, "transactions", "amount")),
+                columnType(conn, "transactions", "balance_after") != null,
+                tableExists(conn, "idempotency_keys"),
+                tableExists(conn, "eod_checkpoints"),
+                tableExists(conn, "ledger_archive_log"),
+                tableExists(conn, "account_limits"),
+                tableExists(conn, "ledger_outbox"),
+        };
+        int version = 1;
+        while (version - 1 < applied.length && applied[version - 1]) version++;
+        return version;
+    }
+
+    /**
+     * Splits the empty p_history and p_future partitions schema.sql creates into p_history before currentMonth,
+     * one partition each for currentMonth and the two months after it, and p_future, the layout V8 gives an
+     * upgraded database. Does nothing unless transactions has exactly those two partitions.
+     */
+    public static void datePartitions(Connection conn, YearMonth currentMonth) throws SQLException {
+        String sql = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = 'transactions' ORDER BY PARTITION_ORDINAL_POSITION";
+        List<String> names = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) names.add(rs.getString(1));
+        }
+        if (!names.equals(List.of("p_history", LedgerArchiveDAO.FUTURE))) return;
+        StringBuilder alter = new StringBuilder("ALTER TABLE transactions REORGANIZE PARTITION p_history, ")
+                .append(LedgerArchiveDAO.FUTURE).append(" INTO (PARTITION p_history VALUES LESS THAN ('")
+                .append(currentMonth.atDay(1)).append("'), ");
+        for (int i = 0; i < 3; i++) {
+            YearMonth m = currentMonth.plusMonths(i);
+            alter.append("PARTITION ").append(LedgerArchiveDAO.partitionName(m)).append(" VALUES LESS THAN ('")
+                    .append(m.plusMonths(1).atDay(1)).append("'), ");
+        }
+        alter.append("PARTITION ").append(LedgerArchiveDAO.FUTURE).append(" VALUES LESS THAN (MAXVALUE))");
+        try (Statement st = conn.createStatement()) {
+            st.execute(alter.toString());
+        }
+    }
+
+    private TreeMap<Integer, Path> scripts() throws IOException {
+        TreeMap<Integer, Path> scripts = new TreeMap<>();
+        if (!Files.isDirectory(migrations)) return scripts;
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(migrations, "V*__*.sql")) {
+            for (Path p : dir) {
+                Matcher m = SCRIPT.matcher(p.getFileName().toString());
+                if (!m.matches()) continue;
+                Path clash = scripts.put(Integer.parseInt(m.group(1)), p);
+                if (clash != null) throw new IOException("Two migrations with version " + m.group(1) + ": " + clash + ", " + p);
+            }
+        }
+        return scripts;
+    }
+
+    private static void execute(Connection conn, Path script, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (String s : statements(sql)) {
+                try {
+                    st.execute(s);
+                } catch (SQLException e) {
+                    throw new SQLException(script.getFileName() + " failed at: " + firstLine(s) + ": " + e.getMessage(),
+                            e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+    }
+
+    // Statements of a script, split on ';' after dropping comment lines; CREATE DATABASE and USE are left out
+    // because the JDBC URL already selects the database
+    static List<String> statements(String sql) {
+        StringBuilder body = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            body.append(line).append('\n');
+        }
+        List<String> list = new ArrayList<>();
+        for (String statement : body.toString().split(";")) {
+            String s = statement.trim();
+            String upper = s.toUpperCase();
+            if (s.isEmpty() || upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) continue;
+            list.add(s);
+        }
+        return list;
+    }
+
+    private static boolean lock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, index);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // DATA_TYPE of the column, such as decimal, or null if there is no such column
+    private static String columnType(Connection conn, String table, String column) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, description VARCHAR(200) NOT NULL, "
+                    + "script VARCHAR(200) NOT NULL, checksum CHAR(64), execution_ms BIGINT NOT NULL DEFAULT 0, "
+                    + "installed_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))");
+        }
+    }
+
+    private static void record(Connection conn, int version, String description, String script, String checksum,
+                               long executionMillis) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, script, checksum, execution_ms) VALUES (?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.setString(3, script);
+            ps.setString(4, checksum);
+            ps.setLong(5, executionMillis);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8).replace("\r\n", "\n");
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String firstLine(String statement) {
+        int nl = statement.indexOf('\n');
+        return nl < 0 ? statement : statement.substring(0, nl) + " ...";
+    }
+}
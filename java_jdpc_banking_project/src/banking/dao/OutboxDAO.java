@@ -0,0 +1,118 @@
+package banking.dao;
+
+import banking.models.Transaction;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// The ledger_outbox table: copies of ledger rows, added inside the ledger transaction and deleted once relayed.
+public class OutboxDAO implements LedgerOutbox {
+    private static final String COLUMNS = "transaction_id, account_id, type, amount, timestamp, remarks, balance_after";
+    private static final String LOCK = "bank_event_relay";
+    private static final long LOCK_CHECK_MILLIS = 1_000;
+    // IN lists always have these many placeholders, short chunks repeating their last id, so each statement has
+    // one SQL text: one cached statement per connection and one timer. An operation writes one or two rows.
+    private static final int INSERT_CHUNK = 2;
+    private static final int REMOVE_CHUNK = 64;
+    private static final String INSERT_SQL = "INSERT INTO ledger_outbox (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM transactions WHERE transaction_id IN " + placeholders(INSERT_CHUNK);
+    private static final String REMOVE_SQL = "DELETE FROM ledger_outbox WHERE transaction_id IN " + placeholders(REMOVE_CHUNK);
+
+    // Session holding the relay lock; a lock taken on a pooled connection would go back to the pool with it
+    private Connection lockConn;
+    private Thread lockOwner;
+    private long lockCheckedAt;
+
+    // Copies rows just inserted on conn (their ids set by TransactionDAO) into the outbox
+    public void insert(Connection conn, List<Transaction> rows) throws SQLException {
+        for (Transaction t : rows) {
+            if (t.getTransactionId() == 0) throw new SQLException("Ledger row has no id for the outbox");
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (int from = 0; from < rows.size(); from += INSERT_CHUNK) {
+                int n = bindChunk(ps, rows, from, INSERT_CHUNK);
+                if (ps.executeUpdate() != n) throw new SQLException("Ledger rows missing from the outbox copy");
+            }
+        }
+    }
+
+    // Ids grow with commit order for any one account, since its rows are written under its row lock
+    @Override
+    public List<Transaction> peek(int max) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM ledger_outbox ORDER BY transaction_id LIMIT ?";
+        List<Transaction> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, max);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(TransactionDAO.mapRow(rs));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void remove(List<Transaction> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(REMOVE_SQL)) {
+            for (int from = 0; from < rows.size(); from += REMOVE_CHUNK) {
+                bindChunk(ps, rows, from, REMOVE_CHUNK);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    // Binds the ids of rows[from, from + size), padded with the last one; returns how many rows that covers
+    private static int bindChunk(PreparedStatement ps, List<Transaction> rows, int from, int size) throws SQLException {
+        int n = Math.min(size, rows.size() - from);
+        for (int i = 0; i < size; i++) ps.setInt(i + 1, rows.get(from + Math.min(i, n - 1)).getTransactionId());
+        return n;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder("(?");
+        for (int i = 1; i < n; i++) sb.append(",?");
+        return sb.append(')').toString();
+    }
+
+    // A named lock held by a dedicated session: it is released when that session ends, so a relay that dies
+    // hands over to a standby. Re-checked at most once a second. Held for the thread that took it, so a second
+    // relay over the same DAO stands by like one in another process.
+    @Override
+    public synchronized boolean acquireRelay() throws SQLException {
+        if (lockConn != null && lockOwner != Thread.currentThread()) return false;
+        long now = System.currentTimeMillis();
+        if (lockConn != null && now - lockCheckedAt < LOCK_CHECK_MILLIS) return true;
+        lockCheckedAt = now;
+        if (lockConn != null) {
+            try (Statement st = lockConn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT IS_USED_LOCK('" + LOCK + "') = CONNECTION_ID()")) {
+                if (rs.next() && rs.getInt(1) == 1) return true;
+            } catch (SQLException e) {
+                // session lost, and the lock with it
+            }
+            releaseRelay();
+        }
+        Connection conn = DatabaseConnection.getUnpooledConnection();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT GET_LOCK('" + LOCK + "', 0)")) {
+            if (rs.next() && rs.getInt(1) == 1) {
+                lockConn = conn;
+                lockOwner = Thread.currentThread();
+                return true;
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        conn.close();
+        return false;
+    }
+
+    @Override
+    public synchronized void releaseRelay() {
+        if (lockConn == null || lockOwner != Thread.currentThread()) return;
+        try { lockConn.close(); } catch (SQLException e) {}
+        lockConn = null;
+        lockOwner = null;
+    }
+}
@@ -0,0 +1,223 @@
+package banking.dao;
+
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only queries to replica pools, round robin over the healthy ones, and everything else to the
+ * primary. Every checkMillis each replica's lag is read from SHOW REPLICA STATUS on a connection of its own;
+ * one that cannot be reached, has replication stopped or lags by more than maxLagSeconds takes no reads until
+ * a later check passes, and a replica whose pool fails to hand out a connection is taken out at once. With no
+ * healthy replica, reads go to the primary. A server that is not a replica at all is down too, as it would
+ * serve reads that never see the primary's writes; with -Dbank.db.allowStandaloneReplica=true it counts as
+ * caught up instead, so two independent local servers can stand in for a primary and a replica.
+ *
+ * Read-your-writes is kept per account rather than per session: an account written in the last pinMillis is
+ * read from the primary, whichever thread or client asks. A healthy replica can be at most (maxLagSeconds + 1)
+ * seconds plus two check intervals behind, which is the default pin. Listings and exports spanning accounts are
+ * not pinned and may lag by that much.
+ */
+public class ReplicaRouter implements AutoCloseable {
+    private static final Counter PRIMARY_READS = Metrics.counter("db.reads.primary");
+    private static final Counter REPLICA_READS = Metrics.counter("db.reads.replica");
+    private static final Counter FAILOVERS = Metrics.counter("db.replica.failovers");
+    private static final long NOT_A_REPLICA = -2;
+
+    private final ConnectionPool primary;
+    private final Replica[] replicas;
+    private final long maxLagSeconds;
+    private final long pinMillis;
+    private final boolean allowStandalone = Boolean.getBoolean("bank.db.allowStandaloneReplica");
+    // Account id -> currentTimeMillis of its last write, for accounts still inside the pin
+    private final ConcurrentHashMap<Integer, Long> written = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checker;
+    private volatile long pinnedAllUntil;
+
+    public ReplicaRouter(ConnectionPool primary, List<ConnectionPool> replicaPools, long maxLagSeconds, long checkMillis,
+                         long pinMillis) {
+        if (checkMillis <= 0) throw new IllegalArgumentException("Check interval must be positive");
+        this.primary = primary;
+        this.replicas = new Replica[replicaPools.size()];
+        for (int i = 0; i < replicas.length; i++) replicas[i] = new Replica(i, replicaPools.get(i));
+        this.maxLagSeconds = maxLagSeconds;
+        this.pinMillis = pinMillis > 0 ? pinMillis : (maxLagSeconds + 1) * 1000 + 2 * checkMillis;
+        if (replicas.length == 0) {
+            this.checker = null;
+            return;
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        checkAll();
+        checker.scheduleWithFixedDelay(this::checkAll, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        for (Replica r : replicas) Metrics.gauge("db.replica" + r.index + ".lagSeconds", () -> r.lagSeconds);
+    }
+
+    public Connection getPrimaryConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    // For a read concerning one account; the primary while that account is pinned by a recent write
+    public Connection getReadConnection(int accountId) throws SQLException {
+        if (replicas.length == 0 || isPinned(accountId)) {
+            PRIMARY_READS.increment();
+            return primary.getConnection();
+        }
+        return getReadConnection();
+    }
+
+    // For a listing or export across accounts
+    public Connection getReadConnection() throws SQLException {
+        if (System.currentTimeMillis() < pinnedAllUntil) {
+            PRIMARY_READS.increment();
+            return primary.getConnection();
+        }
+        for (int i = 0; i < replicas.length; i++) {
+            Replica r = replicas[Math.floorMod(next.getAndIncrement(), replicas.length)];
+            if (!r.healthy) continue;
+            try {
+                Connection conn = r.pool.getConnection();
+                REPLICA_READS.increment();
+                return conn;
+            } catch (SQLTransientConnectionException e) {
+                // Pool exhausted: the replica is busy, not down
+            } catch (SQLException e) {
+                r.down(e.getMessage());
+            }
+        }
+        PRIMARY_READS.increment();
+        return primary.getConnection();
+    }
+
+    // Called when a write to accountId is made, before and again after it commits
+    public void recordWrite(int accountId) {
+        if (replicas.length > 0) written.put(accountId, System.currentTimeMillis());
+    }
+
+    // Called after a write that moves rows between tables for many accounts, such as a ledger archive run
+    public void recordWriteAll() {
+        if (replicas.length > 0) pinnedAllUntil = System.currentTimeMillis() + pinMillis;
+    }
+
+    boolean isPinned(int accountId) {
+        Long at = written.get(accountId);
+        return (at != null && System.currentTimeMillis() - at < pinMillis) || System.currentTimeMillis() < pinnedAllUntil;
+    }
+
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    public int getHealthyCount() {
+        int n = 0;
+        for (Replica r : replicas) if (r.healthy) n++;
+        return n;
+    }
+
+    public long getPinMillis() {
+        return pinMillis;
+    }
+
+    private void checkAll() {
+        for (Replica r : replicas) r.check();
+        long cutoff = System.currentTimeMillis() - pinMillis;
+        written.values().removeIf(at -> at < cutoff);
+    }
+
+    @Override
+    public void close() {
+        if (checker != null) checker.shutdownNow();
+        for (Replica r : replicas) {
+            r.closeProbe();
+            r.pool.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ReplicaRouter[pinMs=").append(pinMillis);
+        for (Replica r : replicas) {
+            sb.append(", replica").append(r.index).append(r.healthy ? "=up lag " + r.lagSeconds + "s" : "=down");
+        }
+        return sb.append(']').toString();
+    }
+
+    private final class Replica {
+        final int index;
+        final ConnectionPool pool;
+        volatile boolean healthy;
+        volatile long lagSeconds = -1;
+        private Connection probe;
+        private boolean legacyStatus; // server older than 8.0.22, which only knows SHOW SLAVE STATUS
+
+        Replica(int index, ConnectionPool pool) {
+            this.index = index;
+            this.pool = pool;
+        }
+
+        // Runs on one thread at a time: the constructor's, then the checker
+        void check() {
+            try {
+                if (probe == null || !probe.isValid(5)) {
+                    closeProbe();
+                    probe = pool.openUnpooled();
+                }
+                long lag = readLag();
+                if (lag == NOT_A_REPLICA && allowStandalone) lag = 0;
+                lagSeconds = Math.max(lag, -1);
+                if (lag < 0 || lag > maxLagSeconds) {
+                    down(lag == NOT_A_REPLICA ? "not a replica" : lag < 0 ? "replication is stopped" : "lag " + lag + "s");
+                } else if (!healthy) {
+                    healthy = true;
+                    System.err.println("Replica " + index + " is up, lag " + lagSeconds + "s");
+                }
+            } catch (SQLException e) {
+                closeProbe();
+                lagSeconds = -1;
+                down(e.getMessage());
+            }
+        }
+
+        // Seconds behind the primary, NOT_A_REPLICA if this server has no replication set up, -1 if it is stopped
+        private long readLag() throws SQLException {
+            try (Statement st = probe.createStatement();
+                 ResultSet rs = st.executeQuery(legacyStatus ? "SHOW SLAVE STATUS" : "SHOW REPLICA STATUS")) {
+                if (!rs.next()) return NOT_A_REPLICA;
+                long lag = rs.getLong(legacyStatus ? "Seconds_Behind_Master" : "Seconds_Behind_Source");
+                return rs.wasNull() ? -1 : lag;
+            } catch (SQLException e) {
+                if (legacyStatus || !"42000".equals(e.getSQLState())) throw e;
+                legacyStatus = true;
+                return readLag();
+            }
+        }
+
+        synchronized void down(String reason) {
+            if (!healthy) return;
+            healthy = false;
+            FAILOVERS.increment();
+            System.err.println("Replica " + index + " is down: " + reason);
+        }
+
+        void closeProbe() {
+            if (probe == null) return;
+            try { probe.close(); } catch (SQLException e) {}
+            probe = null;
+        }
+    }
+}
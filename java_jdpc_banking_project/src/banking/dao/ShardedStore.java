@@ -0,0 +1,527 @@
+package banking.dao;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.LedgerReceipt;
+import banking.models.Page;
+import banking.models.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * In-process storage split into N InMemoryStore shards. Account ids are interleaved (shard i owns ids
+ * i + 1, i + 1 + N, ...), so every account-id lookup goes straight to one shard, and a new account is
+ * placed on the shard its email hashes to, which keeps email uniqueness a per-shard check.
+ *
+ * Every change runs on its shard's single writer thread, so the stripe locks inside a shard are never
+ * contended. The writer applies whatever is queued, then waits once for the journal fsync of the whole
+ * batch before completing the callers. Reads do not queue; they go to the shard directly.
+ *
+ * A transfer within one shard is a single step. A transfer between shards is two: the payer's shard
+ * debits (storing the idempotency receipt), then the payee's shard credits under the internal key
+ * "xfer debitId". If the credit fails the debit is reversed. If the process dies between the two steps,
+ * opening the store again finishes the credit for every debit younger than bank.idempotency.ttlMs.
+ *
+ * The outbox is the shards' outboxes; the two rows of a transfer between shards may come out in either order.
+ */
+public class ShardedStore implements AccountRepository, LedgerEngine, LedgerOutbox, Closeable {
+    private static final int MAX_BATCH = 512;
+    private static final String SHARDS_FILE = "shards";
+    // Contains a space, which client idempotency keys may not, so the two never collide
+    private static final String CREDIT_KEY = "xfer ";
+    private static final long RECEIPT_TTL_MILLIS = Long.getLong("bank.idempotency.ttlMs", 86_400_000);
+    private static final Counter CROSS_SHARD = Metrics.counter("shard.crossShardTransfers");
+    private static final Counter COMPENSATIONS = Metrics.counter("shard.compensations");
+    private static final Counter BATCHES = Metrics.counter("shard.batches");
+
+    private final Shard[] shards;
+    private final AtomicReference<Thread> relayThread = new AtomicReference<>();
+    private final Transactions transactions = new Transactions();
+    // Shard the next outbox peek starts at; relay thread only
+    private int outboxStart;
+
+    public ShardedStore(int count) {
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) shards[i] = new Shard(i, new InMemoryStore(i, count));
+        start();
+    }
+
+    /**
+     * Durable shards in dir/shard-0 .. shard-(count-1). The shard count is recorded on first use, since
+     * ids are routed by it; reopening with a different count is refused.
+     */
+    public ShardedStore(Path dir, int count) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(SHARDS_FILE);
+        if (Files.exists(file)) {
+            int recorded = Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+            if (recorded != count) throw new IOException(dir + " holds " + recorded + " shards, not " + count);
+        } else {
+            Files.write(file, Integer.toString(count).getBytes(StandardCharsets.US_ASCII));
+        }
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) shards[i] = new Shard(i, InMemoryStore.open(dir.resolve("shard-" + i), i, count));
+        try {
+            resolveInDoubt();
+        } catch (SQLException e) {
+            throw new IOException("Could not complete interrupted transfers", e);
+        }
+        start();
+    }
+
+    public TransactionRepository transactions() {
+        return transactions;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // ---- AccountRepository ----
+
+    @Override
+    public int createAccount(Account account) throws SQLException {
+        Shard s = shardForEmail(account.getEmail());
+        return write(s, () -> s.store.createAccount(account));
+    }
+
+    @Override
+    public Account findById(int accountId) {
+        return shard(accountId).store.findById(accountId);
+    }
+
+    @Override
+    public void updatePassword(int accountId, String passwordHash) throws SQLException {
+        Shard s = shard(accountId);
+        write(s, () -> {
+            s.store.updatePassword(accountId, passwordHash);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateStatus(int accountId, String status) throws SQLException {
+        Shard s = shard(accountId);
+        write(s, () -> {
+            s.store.updateStatus(accountId, status);
+            return null;
+        });
+    }
+
+    @Override
+    public AccountLimits findLimits(int accountId) {
+        return shard(accountId).store.findLimits(accountId);
+    }
+
+    @Override
+    public void updateLimits(int accountId, AccountLimits limits) throws SQLException {
+        Shard s = shard(accountId);
+        write(s, () -> {
+            s.store.updateLimits(accountId, limits);
+            return null;
+        });
+    }
+
+    @Override
+    public Account findByEmail(String email) {
+        return shardForEmail(email).store.findByEmail(email);
+    }
+
+    @Override
+    public List<Account> findByPhone(String phone) {
+        List<Account> list = new ArrayList<>();
+        for (Shard s : shards) list.addAll(s.store.findByPhone(phone));
+        list.sort(Comparator.comparingInt(Account::getAccountId));
+        return list;
+    }
+
+    @Override
+    public List<Account> searchByNamePrefix(String prefix, int limit) {
+        List<Account> list = new ArrayList<>();
+        for (Shard s : shards) list.addAll(s.store.searchByNamePrefix(prefix, limit));
+        list.sort(order(AccountSort.NAME));
+        return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+    }
+
+    // Each shard returns its own next page; the first limit accounts of their merge are the global page.
+    @Override
+    public Page<Account> findPage(AccountSort sort, Account after, int limit) {
+        List<Account> list = new ArrayList<>();
+        boolean hasMore = false;
+        for (Shard s : shards) {
+            Page<Account> page = s.store.findPage(sort, after, limit);
+            list.addAll(page.getItems());
+            hasMore |= page.hasMore();
+        }
+        list.sort(order(sort));
+        if (list.size() > limit) {
+            hasMore = true;
+            list = new ArrayList<>(list.subList(0, limit));
+        }
+        return new Page<>(list, hasMore);
+    }
+
+    @Override
+    public List<Account> findAll() {
+        List<Account> list = new ArrayList<>();
+        for (Shard s : shards) list.addAll(s.store.findAll());
+        list.sort(Comparator.comparingInt(Account::getAccountId));
+        return list;
+    }
+
+    // Shard by shard, each in account id order
+    @Override
+    public long streamAll(Consumer<Account> consumer) {
+        long count = 0;
+        for (Shard s : shards) count += s.store.streamAll(consumer);
+        return count;
+    }
+
+    // ---- LedgerEngine ----
+
+    @Override
+    public void deposit(int accountId, long amount) throws SQLException {
+        deposit(accountId, amount, null);
+    }
+
+    @Override
+    public void withdraw(int accountId, long amount) throws SQLException, InsufficientFundsException {
+        withdraw(accountId, amount, null);
+    }
+
+    @Override
+    public void transfer(int fromAccountId, int toAccountId, long amount) throws SQLException, InsufficientFundsException {
+        transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    @Override
+    public LedgerReceipt deposit(int accountId, long amount, String key) throws SQLException {
+        Shard s = shard(accountId);
+        return write(s, () -> s.store.deposit(accountId, amount, key));
+    }
+
+    @Override
+    public LedgerReceipt withdraw(int accountId, long amount, String key) throws SQLException, InsufficientFundsException {
+        Shard s = shard(accountId);
+        return writeDebit(s, () -> s.store.withdraw(accountId, amount, key));
+    }
+
+    @Override
+    public LedgerReceipt transfer(int fromAccountId, int toAccountId, long amount, String key) throws SQLException, InsufficientFundsException {
+        Shard from = shard(fromAccountId);
+        Shard to = shard(toAccountId);
+        if (from == to) return writeDebit(from, () -> from.store.transfer(fromAccountId, toAccountId, amount, key));
+
+        CROSS_SHARD.increment();
+        // Checked up front so the common failure needs no compensation; accounts are never removed
+        if (to.store.findById(toAccountId) == null) throw new SQLException("Account not found");
+        Transaction debit = writeDebit(from, () -> from.store.debitTransfer(fromAccountId, toAccountId, amount, key));
+        if (debit == null) return from.store.findReceipt(fromAccountId, key);
+        try {
+            write(to, () -> to.store.creditTransfer(toAccountId, fromAccountId, amount, CREDIT_KEY + debit.getTransactionId()));
+        } catch (SQLException | RuntimeException e) {
+            COMPENSATIONS.increment();
+            try {
+                write(from, () -> {
+                    from.store.reverseTransfer(debit, key);
+                    return null;
+                });
+            } catch (SQLException | RuntimeException r) {
+                // Left in doubt; finished on the next open
+                e.addSuppressed(r);
+            }
+            throw e;
+        }
+        return InMemoryStore.receipt(key, debit, toAccountId);
+    }
+
+    @Override
+    public LedgerReceipt findReceipt(int accountId, String key) {
+        return shard(accountId).store.findReceipt(accountId, key);
+    }
+
+    @Override
+    public int purgeReceipts(LocalDateTime cutoff) {
+        int purged = 0;
+        for (Shard s : shards) purged += s.store.purgeReceipts(cutoff);
+        return purged;
+    }
+
+    // ---- LedgerOutbox ----
+
+    @Override
+    public List<Transaction> peek(int max) {
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < shards.length && rows.size() < max; i++) {
+            rows.addAll(shards[(outboxStart + i) % shards.length].store.peek(max - rows.size()));
+        }
+        outboxStart = (outboxStart + 1) % shards.length;
+        return rows;
+    }
+
+    // Straight to the shards: a removal touches no balance, so it need not queue for the writer
+    @Override
+    public void remove(List<Transaction> rows) throws SQLException {
+        List<List<Transaction>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) byShard.add(new ArrayList<>());
+        for (Transaction t : rows) byShard.get(shard(t.getAccountId()).index).add(t);
+        for (int i = 0; i < shards.length; i++) shards[i].store.remove(byShard.get(i));
+    }
+
+    @Override
+    public boolean acquireRelay() {
+        Thread me = Thread.currentThread();
+        return relayThread.get() == me || relayThread.compareAndSet(null, me);
+    }
+
+    @Override
+    public void releaseRelay() {
+        relayThread.compareAndSet(Thread.currentThread(), null);
+    }
+
+    // ---- durability ----
+
+    // Snapshots every shard; see InMemoryStore.snapshot
+    public void snapshot() throws IOException {
+        for (Shard s : shards) s.store.snapshot();
+    }
+
+    // Lets queued changes finish, then stops the writers and closes the shards; the store must not be used afterwards.
+    @Override
+    public void close() throws IOException {
+        for (Shard s : shards) {
+            s.closed = true;
+            s.writer.interrupt();
+        }
+        IOException failure = null;
+        for (Shard s : shards) {
+            try {
+                s.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Write<?> w;
+            while ((w = s.queue.poll()) != null) w.done.completeExceptionally(new SQLException("Store is closed"));
+            try {
+                s.store.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    // Completes cross-shard transfers whose credit was lost in a crash: an outgoing row to another shard
+    // that was not reversed must have a credit receipt on the payee's side. Runs before the writers start.
+    private void resolveInDoubt() throws SQLException {
+        LocalDateTime since = LocalDateTime.now().minus(RECEIPT_TTL_MILLIS, ChronoUnit.MILLIS);
+        int completed = 0;
+        for (Shard s : shards) {
+            List<Transaction> rows = s.store.rowsSince(since);
+            Set<Integer> reversed = new HashSet<>();
+            for (Transaction t : rows) {
+                int id = InMemoryStore.reversedTransaction(t);
+                if (id != 0) reversed.add(id);
+            }
+            for (Transaction t : rows) {
+                int to = InMemoryStore.transferTarget(t);
+                if (to == 0 || shard(to) == s || reversed.contains(t.getTransactionId())) continue;
+                if (shard(to).store.creditTransfer(to, t.getAccountId(), t.getAmount(), CREDIT_KEY + t.getTransactionId())) completed++;
+            }
+        }
+        for (Shard s : shards) s.store.awaitDurable();
+        if (completed > 0) System.err.println("Completed " + completed + " cross-shard transfers interrupted by a restart");
+    }
+
+    // ---- internals ----
+
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private static final class Write<T> {
+        final Call<T> call;
+        final CompletableFuture<T> done = new CompletableFuture<>();
+        T result;
+        Exception error;
+
+        Write(Call<T> call) {
+            this.call = call;
+        }
+
+        void apply() {
+            try {
+                result = call.call();
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        // A failed fsync fails the whole batch, as it would each caller of an unsharded store
+        void complete(SQLException syncFailure) {
+            if (error != null) done.completeExceptionally(error);
+            else if (syncFailure != null) done.completeExceptionally(syncFailure);
+            else done.complete(result);
+        }
+    }
+
+    private static final class Shard {
+        final int index;
+        final InMemoryStore store;
+        final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+        Thread writer;
+        volatile boolean closed;
+
+        Shard(int index, InMemoryStore store) {
+            this.index = index;
+            this.store = store;
+        }
+    }
+
+    private void start() {
+        for (Shard s : shards) {
+            s.writer = new Thread(() -> writeLoop(s), "shard-writer-" + s.index);
+            s.writer.setDaemon(true);
+            s.writer.start();
+        }
+    }
+
+    private static void writeLoop(Shard s) {
+        List<Write<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Write<?> first;
+            try {
+                // Once closed, whatever is still queued is written before the loop ends
+                first = s.closed ? s.queue.poll() : s.queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) return;
+            batch.add(first);
+            s.queue.drainTo(batch, MAX_BATCH - 1);
+            for (Write<?> w : batch) w.apply();
+            SQLException syncFailure = null;
+            try {
+                s.store.awaitDurable();
+            } catch (SQLException e) {
+                syncFailure = e;
+            }
+            for (Write<?> w : batch) w.complete(syncFailure);
+            BATCHES.increment();
+            batch.clear();
+        }
+    }
+
+    // For changes that cannot run short of funds
+    private static <T> T write(Shard s, Call<T> call) throws SQLException {
+        try {
+            return writeDebit(s, call);
+        } catch (InsufficientFundsException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Runs call on the shard's writer and waits for it, rethrowing what call threw
+    private static <T> T writeDebit(Shard s, Call<T> call) throws SQLException, InsufficientFundsException {
+        if (s.closed) throw new SQLException("Store is closed");
+        Write<T> w = new Write<>(call);
+        s.queue.add(w);
+        try {
+            return w.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof InsufficientFundsException) throw (InsufficientFundsException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new SQLException(cause);
+        }
+    }
+
+    private Shard shard(int accountId) {
+        return shards[Math.floorMod(accountId - 1, shards.length)];
+    }
+
+    private Shard shardForEmail(String email) {
+        return shards[Math.floorMod(email == null ? 0 : email.hashCode(), shards.length)];
+    }
+
+    // Same orders as the shards' own indexes
+    private static Comparator<Account> order(AccountSort sort) {
+        Comparator<Account> byId = Comparator.comparingInt(Account::getAccountId);
+        return sort == AccountSort.NAME ? Comparator.comparing(Account::getName).thenComparing(byId) : byId;
+    }
+
+    // Ledger reads, routed like the account lookups
+    private final class Transactions implements TransactionRepository {
+        @Override
+        public List<Transaction> findByAccountId(int accountId) throws SQLException {
+            return shard(accountId).store.transactions().findByAccountId(accountId);
+        }
+
+        @Override
+        public Page<Transaction> findPage(int accountId, Transaction after, int limit) throws SQLException {
+            return shard(accountId).store.transactions().findPage(accountId, after, limit);
+        }
+
+        @Override
+        public long streamByAccountId(int accountId, Consumer<Transaction> consumer) throws SQLException {
+            return shard(accountId).store.transactions().streamByAccountId(accountId, consumer);
+        }
+
+        @Override
+        public Transaction findLastBefore(int accountId, LocalDateTime time) throws SQLException {
+            return shard(accountId).store.transactions().findLastBefore(accountId, time);
+        }
+
+        @Override
+        public Transaction findFirstFrom(int accountId, LocalDateTime time) throws SQLException {
+            return shard(accountId).store.transactions().findFirstFrom(accountId, time);
+        }
+
+        @Override
+        public List<Transaction> findRange(int accountId, LocalDateTime from, LocalDateTime to) throws SQLException {
+            return shard(accountId).store.transactions().findRange(accountId, from, to);
+        }
+
+        // A k-way merge of the shards' ledgers, each already in id order, rather than one global sort
+        @Override
+        public long streamAll(Consumer<Transaction> consumer) {
+            List<List<Transaction>> ledgers = new ArrayList<>(shards.length);
+            for (Shard s : shards) ledgers.add(s.store.ledgerInIdOrder());
+            int[] next = new int[ledgers.size()];
+            PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, ledgers.size()),
+                    Comparator.comparingInt(i -> ledgers.get(i).get(next[i]).getTransactionId()));
+            for (int i = 0; i < ledgers.size(); i++) if (!ledgers.get(i).isEmpty()) heads.add(i);
+            long count = 0;
+            while (!heads.isEmpty()) {
+                int i = heads.poll();
+                consumer.accept(ledgers.get(i).get(next[i]++));
+                count++;
+                if (next[i] < ledgers.get(i).size()) heads.add(i);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package banking.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The set of repositories and the ledger engine BankService runs against. Chosen with
+ * -Dbank.storage=mysql (default) or -Dbank.storage=memory for the in-process engine; with
+ * -Dbank.journal.dir=path as well, the in-process engine is journaled and recovers from that directory.
+ * -Dbank.shards=N (N > 1) splits the in-process engine into N single-writer shards, see ShardedStore.
+ * The mysql backend brings the schema up to date first, see MigrationRunner.
+ * getOutbox is the backend's LedgerOutbox when bank.events.outbox is on, otherwise null.
+ * Closing the backend closes what its factory opened: the connection pools and replica health checks for
+ * mysql, the store and its journal for memory.
+ */
+public class StorageBackend implements Closeable {
+    private final String name;
+    private final AccountRepository accounts;
+    private final TransactionRepository transactions;
+    private final LedgerEngine ledger;
+    private final LedgerOutbox outbox;
+    private final int parallelism;
+    private final Closeable resources;
+
+    public StorageBackend(String name, AccountRepository accounts, TransactionRepository transactions,
+                          LedgerEngine ledger, int parallelism) {
+        this(name, accounts, transactions, ledger, null, parallelism);
+    }
+
+    public StorageBackend(String name, AccountRepository accounts, TransactionRepository transactions,
+                          LedgerEngine ledger, LedgerOutbox outbox, int parallelism) {
+        this(name, accounts, transactions, ledger, outbox, parallelism, null);
+    }
+
+    // resources is closed with the backend; null for nothing to close
+    public StorageBackend(String name, AccountRepository accounts, TransactionRepository transactions,
+                          LedgerEngine ledger, LedgerOutbox outbox, int parallelism, Closeable resources) {
+        this.name = name;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.ledger = ledger;
+        this.outbox = LedgerOutbox.ENABLED ? outbox : null;
+        this.parallelism = parallelism;
+        this.resources = resources;
+    }
+
+    public static StorageBackend fromConfig() {
+        String name = System.getProperty("bank.storage", "mysql");
+        switch (name.trim().toLowerCase()) {
+            case "mysql": return mysql();
+            case "memory": {
+                String dir = System.getProperty("bank.journal.dir");
+                int shards = Integer.getInteger("bank.shards", 1);
+                if (dir == null) return shards > 1 ? sharded(shards) : inMemory();
+                try {
+                    return shards > 1 ? sharded(Paths.get(dir), shards) : inMemory(Paths.get(dir));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open journal in " + dir, e);
+                }
+            }
+            default: throw new IllegalArgumentException("Unknown bank.storage: " + name);
+        }
+    }
+
+    public static StorageBackend mysql() {
+        MigrationRunner.migrateOnStartup();
+        AccountDAO accountDAO = new AccountDAO();
+        TransactionDAO transactionDAO = new TransactionDAO();
+        return new StorageBackend("mysql", accountDAO, transactionDAO,
+                new JdbcLedgerEngine(accountDAO, transactionDAO), new OutboxDAO(), DatabaseConnection.getPool().getMaxSize(),
+                DatabaseConnection::close);
+    }
+
+    public static StorageBackend inMemory() {
+        InMemoryStore store = new InMemoryStore();
+        return new StorageBackend("memory", store, store.transactions(), store, store, Runtime.getRuntime().availableProcessors(), store);
+    }
+
+    public static StorageBackend inMemory(Path journalDir) throws IOException {
+        InMemoryStore store = InMemoryStore.open(journalDir);
+        return new StorageBackend("memory", store, store.transactions(), store, store, Runtime.getRuntime().availableProcessors(), store);
+    }
+
+    public static StorageBackend sharded(int shards) {
+        ShardedStore store = new ShardedStore(shards);
+        return new StorageBackend("memory", store, store.transactions(), store, store, shardedParallelism(shards), store);
+    }
+
+    public static StorageBackend sharded(Path journalDir, int shards) throws IOException {
+        ShardedStore store = new ShardedStore(journalDir, shards);
+        return new StorageBackend("memory", store, store.transactions(), store, store, shardedParallelism(shards), store);
+    }
+
+    // Callers only queue work for the shard writers, so more of them in flight means larger batches per fsync
+    private static int shardedParallelism(int shards) {
+        return Math.max(4 * shards, Runtime.getRuntime().availableProcessors());
+    }
+
+    public String getName() { return name; }
+    public AccountRepository getAccounts() { return accounts; }
+    public TransactionRepository getTransactions() { return transactions; }
+    public LedgerEngine getLedger() { return ledger; }
+    public LedgerOutbox getOutbox() { return outbox; }
+
+    // How many operations can usefully run at once (pool size for MySQL, cores for memory)
+    public int getParallelism() { return parallelism; }
+
+    @Override
+    public void close() throws IOException {
+        if (resources != null) resources.close();
+    }
+
+    @Override
+    public String toString() {
+        return "StorageBackend[" + name + ", parallelism=" + parallelism + "]";
+    }
+}
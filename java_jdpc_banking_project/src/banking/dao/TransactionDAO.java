@@ -1,43 +1,251 @@
 package banking.dao;
 
+import banking.models.Page;
 import banking.models.Transaction;
+import banking.utils.Money;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
-public class TransactionDAO {
+public class TransactionDAO implements TransactionRepository {
 
     public void insertTransaction(Transaction t) throws SQLException {
-        String sql = "INSERT INTO transactions (account_id, type, amount, remarks) VALUES (?,?,?,?)";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            insertTransaction(conn, t);
+        }
+    }
+
+    // Sets the row's transaction id from the generated key
+    public void insertTransaction(Connection conn, Transaction t) throws SQLException {
+        String sql = "INSERT INTO transactions (account_id, type, amount, remarks, balance_after) VALUES (?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, t.getAccountId());
             ps.setString(2, t.getType());
-            ps.setDouble(3, t.getAmount());
+            ps.setBigDecimal(3, Money.toDecimal(t.getAmount()));
             ps.setString(4, t.getRemarks());
+            ps.setBigDecimal(5, Money.toDecimal(t.getBalanceAfter()));
             ps.executeUpdate();
+            setIds(ps, List.of(t));
+        }
+    }
+
+    // Sends all rows in one JDBC batch; with rewriteBatchedStatements the driver turns it into a multi-row INSERT.
+    // Sets each row's transaction id from the generated keys.
+    public void insertTransactions(Connection conn, List<Transaction> transactions) throws SQLException {
+        String sql = "INSERT INTO transactions (account_id, type, amount, remarks, balance_after) VALUES (?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Transaction t : transactions) {
+                ps.setInt(1, t.getAccountId());
+                ps.setString(2, t.getType());
+                ps.setBigDecimal(3, Money.toDecimal(t.getAmount()));
+                ps.setString(4, t.getRemarks());
+                ps.setBigDecimal(5, Money.toDecimal(t.getBalanceAfter()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            setIds(ps, transactions);
         }
     }
 
+    private static void setIds(PreparedStatement ps, List<Transaction> rows) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (Transaction t : rows) {
+                if (keys.next()) t.setTransactionId(keys.getInt(1));
+            }
+        }
+    }
+
+    // Rows fetched per round trip when streaming from a database other than MySQL
+    private static final int STREAM_FETCH_ROWS = 1_000;
+
+    private static final String ARCHIVE = "transactions_archive";
+    private static final String NEWEST_FIRST = " ORDER BY timestamp DESC, transaction_id DESC";
+    private static final String OLDEST_FIRST = " ORDER BY timestamp, transaction_id";
+    static final long HORIZON_REFRESH_MILLIS = Long.getLong("bank.ledger.horizonRefreshMs", 10_000);
+    private static volatile LocalDateTime horizon;
+    private static volatile long horizonLoadedAt = Long.MIN_VALUE;
+
+    /**
+     * Rows older than this have been moved to transactions_archive by LedgerArchiveJob, null while nothing has.
+     * Reads split on it: the hot table is asked for timestamp >= horizon and the archive for the rest, so a month
+     * caught between its copy and its partition drop is never seen twice. Re-read every bank.ledger.horizonRefreshMs.
+     */
+    static LocalDateTime archiveHorizon() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - horizonLoadedAt < HORIZON_REFRESH_MILLIS) return horizon;
+        try (Connection conn = DatabaseConnection.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(archived_before) FROM ledger_archive_log")) {
+            Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+            LocalDateTime loaded = ts == null ? null : ts.toLocalDateTime();
+            if (!Objects.equals(loaded, horizon)) DatabaseConnection.recordWriteAll();
+            horizon = loaded;
+        } catch (SQLException e) {
+            if (!"42S02".equals(e.getSQLState())) throw e;
+            horizon = null; // not migrated yet, so nothing archived
+        }
+        horizonLoadedAt = now;
+        return horizon;
+    }
+
+    static void archiveHorizonMoved(LocalDateTime archivedBefore) {
+        DatabaseConnection.recordWriteAll();
+        horizon = archivedBefore;
+        horizonLoadedAt = System.currentTimeMillis();
+    }
+
     public List<Transaction> findByAccountId(int accountId) throws SQLException {
-        String sql = "SELECT * FROM transactions WHERE account_id = ? ORDER BY timestamp DESC";
         List<Transaction> list = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, accountId);
+        streamByAccountId(accountId, list::add);
+        return list;
+    }
+
+    /**
+     * Newest-first page of an account's history. Pass the last row of the previous page as {@code after}
+     * (null for the first page); the (timestamp, transaction_id) keyset keeps every page a range scan of the
+     * primary key. A page that runs out of hot rows carries on into the archive.
+     */
+    public Page<Transaction> findPage(int accountId, Transaction after, int limit) throws SQLException {
+        LocalDateTime h = archiveHorizon();
+        List<Transaction> list = new ArrayList<>(limit + 1);
+        boolean afterArchived = h != null && after != null && after.getTimestamp().isBefore(h);
+        if (!afterArchived) page("transactions", h == null ? "" : " AND timestamp >= ?", h, accountId, after, limit + 1, list);
+        if (h != null && list.size() <= limit) {
+            page(ARCHIVE, " AND timestamp < ?", h, accountId, afterArchived ? after : null, limit + 1 - list.size(), list);
+        }
+        boolean hasMore = list.size() > limit;
+        if (hasMore) list.remove(limit);
+        return new Page<>(list, hasMore);
+    }
+
+    private void page(String table, String bound, LocalDateTime h, int accountId, Transaction after, int limit,
+                      List<Transaction> list) throws SQLException {
+        String sql = "SELECT * FROM " + table + " WHERE account_id = ?" + bound
+                + (after == null ? "" : " AND (timestamp < ? OR (timestamp = ? AND transaction_id < ?))")
+                + NEWEST_FIRST + " LIMIT ?";
+        try (Connection conn = readConnection(accountId); PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setInt(i++, accountId);
+            if (!bound.isEmpty()) ps.setTimestamp(i++, Timestamp.valueOf(h));
+            if (after != null) {
+                Timestamp ts = Timestamp.valueOf(after.getTimestamp());
+                ps.setTimestamp(i++, ts);
+                ps.setTimestamp(i++, ts);
+                ps.setInt(i++, after.getTransactionId());
+            }
+            ps.setInt(i, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Transaction t = new Transaction();
-                    t.setTransactionId(rs.getInt("transaction_id"));
-                    t.setAccountId(rs.getInt("account_id"));
-                    t.setType(rs.getString("type"));
-                    t.setAmount(rs.getDouble("amount"));
-                    Timestamp ts = rs.getTimestamp("timestamp");
-                    if (ts != null) t.setTimestamp(ts.toLocalDateTime());
-                    t.setRemarks(rs.getString("remarks"));
-                    list.add(t);
+                    list.add(mapRow(rs));
                 }
             }
         }
+    }
+
+    // Streams an account's full history newest-first without holding it in memory; returns the row count.
+    public long streamByAccountId(int accountId, Consumer<Transaction> consumer) throws SQLException {
+        LocalDateTime h = archiveHorizon();
+        if (h == null) return stream(accountId, "SELECT * FROM transactions WHERE account_id = ?" + NEWEST_FIRST, consumer, accountId);
+        Timestamp ts = Timestamp.valueOf(h);
+        return stream(accountId, "SELECT * FROM transactions WHERE account_id = ? AND timestamp >= ?" + NEWEST_FIRST, consumer, accountId, ts)
+                + stream(accountId, "SELECT * FROM " + ARCHIVE + " WHERE account_id = ? AND timestamp < ?" + NEWEST_FIRST, consumer, accountId, ts);
+    }
+
+    // Latest row strictly before time, or null; a single-row seek on the primary key.
+    public Transaction findLastBefore(int accountId, LocalDateTime time) throws SQLException {
+        String where = " WHERE account_id = ? AND timestamp < ?" + NEWEST_FIRST + " LIMIT 1";
+        Transaction t = findOne("SELECT * FROM transactions" + where, accountId, time);
+        if (t == null && archiveHorizon() != null) t = findOne("SELECT * FROM " + ARCHIVE + where, accountId, time);
+        return t;
+    }
+
+    // Earliest row at or after time, or null.
+    public Transaction findFirstFrom(int accountId, LocalDateTime time) throws SQLException {
+        String where = " WHERE account_id = ? AND timestamp >= ?" + OLDEST_FIRST + " LIMIT 1";
+        LocalDateTime h = archiveHorizon();
+        Transaction t = h != null && time.isBefore(h) ? findOne("SELECT * FROM " + ARCHIVE + where, accountId, time) : null;
+        return t != null ? t : findOne("SELECT * FROM transactions" + where, accountId, time);
+    }
+
+    // Oldest-first rows with from <= timestamp < to, as one primary key range scan per table.
+    public List<Transaction> findRange(int accountId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        String where = " WHERE account_id = ? AND timestamp >= ? AND timestamp < ?" + OLDEST_FIRST;
+        LocalDateTime h = archiveHorizon();
+        List<Transaction> list = new ArrayList<>();
+        if (h != null && from.isBefore(h)) {
+            stream(accountId, "SELECT * FROM " + ARCHIVE + where, list::add, accountId, Timestamp.valueOf(from),
+                    Timestamp.valueOf(to.isBefore(h) ? to : h));
+            if (!to.isAfter(h)) return list;
+            from = h;
+        }
+        stream(accountId, "SELECT * FROM transactions" + where, list::add, accountId, Timestamp.valueOf(from), Timestamp.valueOf(to));
         return list;
     }
+
+    private Transaction findOne(String sql, int accountId, LocalDateTime time) throws SQLException {
+        try (Connection conn = readConnection(accountId); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, accountId);
+            ps.setTimestamp(2, Timestamp.valueOf(time));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    // Streams the whole ledger, archive first, in transaction_id order for exports.
+    public long streamAll(Consumer<Transaction> consumer) throws SQLException {
+        String columns = "SELECT transaction_id, account_id, type, amount, timestamp, remarks, balance_after FROM ";
+        LocalDateTime h = archiveHorizon();
+        if (h == null) return stream(0, columns + "transactions ORDER BY transaction_id", consumer);
+        Timestamp ts = Timestamp.valueOf(h);
+        return stream(0, columns + ARCHIVE + " WHERE timestamp < ? ORDER BY transaction_id", consumer, ts)
+                + stream(0, columns + "transactions WHERE timestamp >= ? ORDER BY transaction_id", consumer, ts);
+    }
+
+    // Reads go to a replica unless accountId was written too recently; 0 for reads across accounts
+    private static Connection readConnection(int accountId) throws SQLException {
+        return accountId == 0 ? DatabaseConnection.getReadConnection() : DatabaseConnection.getReadConnection(accountId);
+    }
+
+    private long stream(int accountId, String sql, Consumer<Transaction> consumer, Object... params) throws SQLException {
+        long count = 0;
+        try (Connection conn = readConnection(accountId);
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            streamRows(conn, ps);
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapRow(rs));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sets ps up to stream its rows rather than buffer the whole result. With MySQL Connector/J that takes the
+     * Integer.MIN_VALUE fetch size, which other drivers (such as H2) reject as invalid; they get a fetch size of
+     * STREAM_FETCH_ROWS instead.
+     */
+    static void streamRows(Connection conn, PreparedStatement ps) throws SQLException {
+        boolean mysql = "MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+        ps.setFetchSize(mysql ? Integer.MIN_VALUE : STREAM_FETCH_ROWS);
+    }
+
+    static Transaction mapRow(ResultSet rs) throws SQLException {
+        Transaction t = new Transaction();
+        t.setTransactionId(rs.getInt("transaction_id"));
+        t.setAccountId(rs.getInt("account_id"));
+        t.setType(rs.getString("type"));
+        t.setAmount(Money.fromDecimal(rs.getBigDecimal("amount")));
+        Timestamp ts = rs.getTimestamp("timestamp");
+        if (ts != null) t.setTimestamp(ts.toLocalDateTime());
+        t.setRemarks(rs.getString("remarks"));
+        t.setBalanceAfter(Money.fromDecimal(rs.getBigDecimal("balance_after")));
+        return t;
+    }
 }
@@ -0,0 +1,26 @@
+package banking.dao;
+
+import banking.models.Page;
+import banking.models.Transaction;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Read access to the ledger, independent of where it is stored. Rows are appended only by a LedgerEngine.
+public interface TransactionRepository {
+    List<Transaction> findByAccountId(int accountId) throws SQLException;
+
+    Page<Transaction> findPage(int accountId, Transaction after, int limit) throws SQLException;
+
+    long streamByAccountId(int accountId, Consumer<Transaction> consumer) throws SQLException;
+
+    Transaction findLastBefore(int accountId, LocalDateTime time) throws SQLException;
+
+    Transaction findFirstFrom(int accountId, LocalDateTime time) throws SQLException;
+
+    List<Transaction> findRange(int accountId, LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    long streamAll(Consumer<Transaction> consumer) throws SQLException;
+}
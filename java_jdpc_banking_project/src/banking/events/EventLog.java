@@ -0,0 +1,128 @@
+package banking.events;
+
+import banking.journal.Codec;
+import banking.journal.Journal;
+import banking.models.LedgerEvent;
+import banking.models.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Durable, ordered log of published events: a Journal directory whose record seq is the event's offset. The
+ * relay is its only writer; consumers in this process or any other follow it from a stored offset with
+ * EventLog.tail. Segments beyond the newest bank.events.retainSegments (default 16) are deleted.
+ */
+public class EventLog implements Closeable {
+    private static final byte ROW = 1;
+
+    private final Path dir;
+    private final Journal journal;
+    private final int retainSegments;
+
+    private EventLog(Path dir, Journal journal, int retainSegments) {
+        this.dir = dir;
+        this.journal = journal;
+        this.retainSegments = retainSegments;
+    }
+
+    public static EventLog open(Path dir) throws IOException {
+        // Two at least, so the tail the relay reads back on start is never cut off
+        return new EventLog(dir, Journal.open(dir), Math.max(2, Integer.getInteger("bank.events.retainSegments", 16)));
+    }
+
+    // Reader of the events after afterOffset (0 from the first); fails if those events are no longer kept
+    public static Reader tail(Path dir, long afterOffset) throws IOException {
+        return new Reader(Journal.reader(dir, afterOffset));
+    }
+
+    // Appends rows in order and returns them as events once they are on disk
+    List<LedgerEvent> append(List<Transaction> rows) throws IOException {
+        List<LedgerEvent> events = new ArrayList<>(rows.size());
+        long offset = 0;
+        for (Transaction t : rows) {
+            offset = journal.append(encode(t).flip());
+            events.add(new LedgerEvent(offset, t));
+        }
+        if (offset == 0) return events;
+        journal.awaitDurable(offset);
+        if (journal.getSegmentCount() > retainSegments) journal.retainSegments(retainSegments);
+        return events;
+    }
+
+    // Up to max of the newest events
+    List<LedgerEvent> last(int max) throws IOException {
+        List<LedgerEvent> events = new ArrayList<>();
+        try (Reader r = tail(dir, Math.max(0, getLastOffset() - max))) {
+            while (r.poll(max, events::add) > 0) {
+                // until caught up
+            }
+        }
+        return events;
+    }
+
+    public long getLastOffset() {
+        return journal.getLastSeq();
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private static ByteBuffer encode(Transaction t) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 4 + 8 + 8 + 8 + Codec.sizeOf(t.getType()) + Codec.sizeOf(t.getRemarks()));
+        buf.put(ROW).putInt(t.getTransactionId()).putInt(t.getAccountId()).putLong(t.getAmount())
+                .putLong(t.getBalanceAfter()).putLong(Codec.toNanos(t.getTimestamp()));
+        Codec.putString(buf, t.getType());
+        Codec.putString(buf, t.getRemarks());
+        return buf;
+    }
+
+    private static LedgerEvent decode(long offset, ByteBuffer in) throws IOException {
+        byte kind = in.get();
+        if (kind != ROW) throw new IOException("Unknown event record kind " + kind + " at offset " + offset);
+        Transaction t = new Transaction();
+        t.setTransactionId(in.getInt());
+        t.setAccountId(in.getInt());
+        t.setAmount(in.getLong());
+        t.setBalanceAfter(in.getLong());
+        t.setTimestamp(Codec.fromNanos(in.getLong()));
+        t.setType(Codec.getString(in));
+        t.setRemarks(Codec.getString(in));
+        return new LedgerEvent(offset, t);
+    }
+
+    // Follows the log from an offset; poll again after it returns 0 to pick up later events. Not thread-safe.
+    public static final class Reader implements Closeable {
+        private final Journal.Reader reader;
+
+        private Reader(Journal.Reader reader) {
+            this.reader = reader;
+        }
+
+        // Passes up to max events to consumer in offset order; returns how many, 0 if there is nothing new yet
+        public int poll(int max, Consumer<LedgerEvent> consumer) throws IOException {
+            return reader.read(max, (seq, payload) -> consumer.accept(decode(seq, payload)));
+        }
+
+        // Offset of the last event passed on; store it to resume from with tail
+        public long getOffset() {
+            return reader.getLastSeq();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
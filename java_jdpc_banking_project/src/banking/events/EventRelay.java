@@ -0,0 +1,157 @@
+package banking.events;
+
+import banking.dao.LedgerOutbox;
+import banking.metrics.Counter;
+import banking.metrics.Histogram;
+import banking.metrics.Metrics;
+import banking.models.LedgerEvent;
+import banking.models.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes committed ledger rows from a storage backend's outbox (see LedgerOutbox). Each batch of up to
+ * bank.events.batchSize rows (default 512) is appended to the EventLog in bank.events.dir and fsynced, handed
+ * to the in-process subscribers through an EventRing of bank.events.ringSize slots (default 8192), and only
+ * then removed from the outbox; an empty outbox is polled every bank.events.pollMs (default 20).
+ *
+ * Delivery is at least once. A crash between the fsync and the removal leaves the last batch in the outbox;
+ * on start the relay drops rows it finds in the tail of the log, but consumers should still ignore a
+ * transactionId they have seen. Where several instances share a MySQL outbox only the one holding its relay
+ * lock publishes and the others stand by, so consumers reading the log files should run next to one relay.
+ */
+public class EventRelay implements Closeable {
+    private static final long STANDBY_MILLIS = 1_000;
+    private static final Counter PUBLISHED = Metrics.counter("events.published");
+    private static final Counter DUPLICATES = Metrics.counter("events.duplicatesDropped");
+    private static final Counter ERRORS = Metrics.counter("events.relayErrors");
+    private static final Histogram BATCH = Metrics.histogram("events.relayBatch");
+
+    private final LedgerOutbox outbox;
+    private final EventLog log;
+    private final EventRing ring;
+    private final int batchSize;
+    private final long pollMillis;
+    private final Thread thread;
+    private volatile boolean closed;
+    // Rows of the log's last batch, which may still be in the outbox after a crash; dropped once the backlog is read
+    private Set<Integer> recent;
+
+    public EventRelay(LedgerOutbox outbox, Path dir) throws IOException {
+        this(outbox, dir, Integer.getInteger("bank.events.batchSize", 512), Integer.getInteger("bank.events.ringSize", 8192),
+                Long.getLong("bank.events.pollMs", 20));
+    }
+
+    public EventRelay(LedgerOutbox outbox, Path dir, int batchSize, int ringSize, long pollMillis) throws IOException {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.outbox = outbox;
+        this.log = EventLog.open(dir);
+        this.ring = new EventRing(ringSize);
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.recent = new HashSet<>();
+        for (LedgerEvent e : log.last(batchSize)) recent.add(e.getTransactionId());
+        Metrics.gauge("events.lastOffset", log::getLastOffset);
+        this.thread = new Thread(this::run, "event-relay");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // A relay for backend's outbox writing to bank.events.dir; null unless both are configured
+    public static EventRelay fromConfig(LedgerOutbox outbox) throws IOException {
+        String dir = System.getProperty("bank.events.dir");
+        if (dir == null || outbox == null) return null;
+        return new EventRelay(outbox, Paths.get(dir));
+    }
+
+    // Hands subscriber every event published from now on; earlier ones are read from the log (see EventLog.tail)
+    public EventRing.Subscription subscribe(String name, EventSubscriber subscriber) {
+        return ring.subscribe(name, subscriber);
+    }
+
+    // Offset of the newest event in the log
+    public long getLastOffset() {
+        return log.getLastOffset();
+    }
+
+    public Path getDirectory() {
+        return log.getDirectory();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                if (!outbox.acquireRelay()) {
+                    Thread.sleep(STANDBY_MILLIS);
+                    continue;
+                }
+                List<Transaction> rows = outbox.peek(batchSize);
+                if (rows.isEmpty()) {
+                    Thread.sleep(pollMillis);
+                    continue;
+                }
+                long t0 = Metrics.start();
+                relay(rows);
+                BATCH.recordSince(t0);
+            } catch (InterruptedException e) {
+                break;
+            } catch (SQLException e) {
+                ERRORS.increment();
+                System.err.println("Event relay: " + e.getMessage());
+                sleepQuietly(STANDBY_MILLIS);
+            } catch (IOException e) {
+                // The log cannot take more writes; the outbox keeps the rows for the next start
+                ERRORS.increment();
+                System.err.println("Event relay stopped: " + e.getMessage());
+                break;
+            }
+        }
+        outbox.releaseRelay();
+    }
+
+    private void relay(List<Transaction> rows) throws IOException, SQLException {
+        List<Transaction> fresh = rows;
+        if (recent != null) {
+            fresh = new ArrayList<>(rows.size());
+            for (Transaction t : rows) {
+                if (recent.contains(t.getTransactionId())) DUPLICATES.increment();
+                else fresh.add(t);
+            }
+            if (rows.size() < batchSize) recent = null;
+        }
+        List<LedgerEvent> events = log.append(fresh);
+        ring.publish(events);
+        outbox.remove(rows);
+        PUBLISHED.add(events.size());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Publishes nothing more, lets subscribers take what was published, then closes the log
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ring.close();
+        log.close();
+    }
+}
@@ -0,0 +1,131 @@
+package banking.events;
+
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.LedgerEvent;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fan-out of published events to in-process subscribers through a ring of slots. There is one publisher, the
+ * relay thread; each subscriber has its own thread and position in the ring. The publisher waits while the
+ * slowest subscriber is a whole ring behind, so a slow subscriber holds the stream back (the outbox takes up
+ * the slack) instead of missing events. A subscriber that throws has the error counted and carries on.
+ */
+public final class EventRing {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final Counter SUBSCRIBER_ERRORS = Metrics.counter("events.subscriberErrors");
+
+    private final LedgerEvent[] slots;
+    private final int mask;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile long published; // events published so far; slot (n & mask) holds event n
+    private volatile boolean closed;
+
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new LedgerEvent[size];
+        this.mask = size - 1;
+    }
+
+    // A subscriber that receives the events published from now on
+    synchronized Subscription subscribe(String name, EventSubscriber subscriber) {
+        if (closed) throw new IllegalStateException("Event stream is closed");
+        Subscription s = new Subscription(name, subscriber, published);
+        subscriptions.add(s);
+        s.thread.start();
+        return s;
+    }
+
+    void publish(List<LedgerEvent> events) {
+        long next = published;
+        for (LedgerEvent e : events) {
+            while (next - slowest(next) >= slots.length) {
+                if (closed) return;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            slots[(int) (next & mask)] = e;
+            published = ++next;
+        }
+        for (Subscription s : subscriptions) LockSupport.unpark(s.thread);
+    }
+
+    long getPublished() {
+        return published;
+    }
+
+    // Stops every subscriber once it has taken what was published
+    void close() {
+        closed = true;
+        for (Subscription s : subscriptions) s.close();
+    }
+
+    private long slowest(long upTo) {
+        long min = upTo;
+        for (Subscription s : subscriptions) min = Math.min(min, s.position);
+        return min;
+    }
+
+    public final class Subscription implements Closeable {
+        private final String name;
+        private final EventSubscriber subscriber;
+        private final Thread thread;
+        private volatile long position; // next event this subscriber takes
+        private volatile boolean stopped;
+
+        private Subscription(String name, EventSubscriber subscriber, long position) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.position = position;
+            this.thread = new Thread(this::run, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Events still to be handed to this subscriber
+        public long getLag() {
+            return published - position;
+        }
+
+        private void run() {
+            long pos = position;
+            while (true) {
+                long available = published;
+                if (pos == available) {
+                    if (stopped || closed) break;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                while (pos < available) {
+                    try {
+                        subscriber.onEvent(slots[(int) (pos & mask)]);
+                    } catch (Exception e) {
+                        SUBSCRIBER_ERRORS.increment();
+                    }
+                    position = ++pos;
+                }
+            }
+            subscriptions.remove(this);
+        }
+
+        // Stops delivery after the events already published; returns once the subscriber's thread has ended
+        @Override
+        public void close() {
+            stopped = true;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() == thread) return;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
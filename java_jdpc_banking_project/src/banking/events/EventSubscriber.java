@@ -0,0 +1,8 @@
+package banking.events;
+
+import banking.models.LedgerEvent;
+
+// Receives published ledger events in log order on its own thread; see EventRelay.subscribe.
+public interface EventSubscriber {
+    void onEvent(LedgerEvent event) throws Exception;
+}
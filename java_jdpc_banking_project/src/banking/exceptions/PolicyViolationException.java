@@ -0,0 +1,8 @@
+package banking.exceptions;
+
+// An operation refused by account policy: the account's status, a daily limit or the debit rate.
+public class PolicyViolationException extends InvalidInputException {
+    private static final long serialVersionUID = 1L;
+
+    public PolicyViolationException(String message) { super(message); }
+}
@@ -0,0 +1,266 @@
+package banking.jobs;
+
+import banking.dao.AccountDAO;
+import banking.dao.DatabaseConnection;
+import banking.dao.EndOfDayDAO;
+import banking.dao.IdempotencyDAO;
+import banking.metrics.Histogram;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.EndOfDayReport;
+import banking.models.Transaction;
+import banking.utils.Money;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * End-of-day run against the MySQL backend. Account ids 1..max are split into ranges of bank.eod.rangeSize
+ * accounts, processed on a fork-join pool of bank.eod.parallelism workers (default half the connection
+ * pool), each range on one pooled connection:
+ *   1. reconcile: the range's accounts and its ledger not yet archived are read in one REPEATABLE READ
+ *      snapshot, the ledger as a single index-ordered scan. Each row's balance_after must be the previous row's plus its
+ *      signed amount, and an account's last row must match accounts.balance.
+ *   2. accrue: every ACTIVE account that reconciles earns one day's interest at the annual rate given in
+ *      basis points (actual/365, rounded down to the minor unit), posted as "Interest" rows in JDBC batches.
+ *   3. checkpoint: the postings commit together with the range's eod_checkpoints row, so running the same
+ *      date again resumes with the ranges not yet done and never pays interest twice.
+ * A range that fails is rolled back and reported; running the date again retries it. Idempotency receipts
+ * older than bank.idempotency.ttlMs are purged at the end.
+ */
+public class EndOfDayJob {
+    private static final int RANGE_SIZE = Integer.getInteger("bank.eod.rangeSize", 5_000);
+    private static final long RECEIPT_TTL_MILLIS = Long.getLong("bank.idempotency.ttlMs", 86_400_000);
+    private static final int MAX_PROBLEMS = 100;
+    private static final long BPS_DAYS = 10_000L * 365;
+    private static final Histogram RANGE = Metrics.histogram("eod.range");
+
+    private final EndOfDayDAO dao = new EndOfDayDAO();
+    private final int interestRateBps;
+    private final int parallelism;
+
+    public EndOfDayJob(int interestRateBps) {
+        this(interestRateBps, Integer.getInteger("bank.eod.parallelism", Math.max(1, DatabaseConnection.getPool().getMaxSize() / 2)));
+    }
+
+    public EndOfDayJob(int interestRateBps, int parallelism) {
+        if (interestRateBps < 0) throw new IllegalArgumentException("Interest rate must not be negative");
+        this.interestRateBps = interestRateBps;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public EndOfDayReport run(LocalDate businessDate) throws SQLException {
+        long start = System.currentTimeMillis();
+        List<int[]> done = dao.completedRanges(businessDate);
+        List<int[]> ranges = pendingRanges(done, dao.maxAccountId(), RANGE_SIZE);
+        Tally total = new Tally();
+        if (!ranges.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, ranges.size()));
+            try {
+                total = pool.invoke(new RangeTask(businessDate, ranges, 0, ranges.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        int purged = new IdempotencyDAO().deleteBefore(LocalDateTime.now().minus(RECEIPT_TTL_MILLIS, ChronoUnit.MILLIS));
+        return new EndOfDayReport(businessDate, ranges.size(), total.failed, done.size(), total.accounts, total.ledgerRows,
+                total.mismatches, total.interestAccounts, total.interestTotal, purged,
+                System.currentTimeMillis() - start, total.problems);
+    }
+
+    // One day's interest, rounded down: balance * bps / (10000 * 365) without overflowing a long
+    static long dailyInterest(long balance, int bps) {
+        if (balance <= 0 || bps <= 0) return 0;
+        return balance / BPS_DAYS * bps + balance % BPS_DAYS * bps / BPS_DAYS;
+    }
+
+    // Splits 1..maxId into ranges of at most size ids, leaving out those already checkpointed
+    static List<int[]> pendingRanges(List<int[]> done, int maxId, int size) {
+        List<int[]> sorted = new ArrayList<>(done);
+        sorted.sort(Comparator.comparingInt(r -> r[0]));
+        List<int[]> ranges = new ArrayList<>();
+        int next = 1;
+        for (int[] d : sorted) {
+            split(ranges, next, Math.min(d[0] - 1, maxId), size);
+            next = Math.max(next, d[1] + 1);
+        }
+        split(ranges, next, maxId, size);
+        return ranges;
+    }
+
+    private static void split(List<int[]> ranges, int first, int last, int size) {
+        for (long lo = first; lo <= last; lo += size) ranges.add(new int[] {(int) lo, (int) Math.min(last, lo + size - 1)});
+    }
+
+    // Halves the range list until one range is left, runs it, and adds up the results on the way back
+    private final class RangeTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+        private final LocalDate date;
+        // ForkJoinTask is Serializable, but a task is never serialized
+        private final transient List<int[]> ranges;
+        private final int from;
+        private final int to;
+
+        RangeTask(LocalDate date, List<int[]> ranges, int from, int to) {
+            this.date = date;
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from == 1) return runRange(date, ranges.get(from)[0], ranges.get(from)[1]);
+            int mid = (from + to) >>> 1;
+            RangeTask left = new RangeTask(date, ranges, from, mid);
+            left.fork();
+            Tally right = new RangeTask(date, ranges, mid, to).compute();
+            return left.join().add(right);
+        }
+    }
+
+    private Tally runRange(LocalDate date, int firstId, int lastId) {
+        long t0 = Metrics.start();
+        Tally t = new Tally();
+        List<Transaction> postings = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int isolation = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            try {
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                List<Account> accounts = dao.findAccounts(conn, firstId, lastId);
+                Reconciler r = new Reconciler(accounts, t);
+                t.ledgerRows = dao.streamLedger(conn, firstId, lastId, r);
+                r.finish();
+                conn.commit();
+                t.accounts = accounts.size();
+
+                String remarks = "Interest for " + date;
+                for (int i = 0; i < accounts.size(); i++) {
+                    Account a = accounts.get(i);
+                    long interest = dailyInterest(a.getBalance(), interestRateBps);
+                    if (!r.reconciled[i] || interest == 0 || !"ACTIVE".equals(a.getStatus())) continue;
+                    postings.add(new Transaction(a.getAccountId(), "Interest", interest, remarks));
+                }
+                int[] updated = postings.isEmpty() ? new int[0] : dao.postCredits(conn, postings);
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) continue;
+                    t.interestAccounts++;
+                    t.interestTotal += postings.get(i).getAmount();
+                }
+                dao.insertCheckpoint(conn, date, firstId, lastId, accounts.size(), t.ledgerRows, (int) t.mismatches,
+                        (int) t.interestAccounts, t.interestTotal);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setTransactionIsolation(isolation);
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Tally failed = new Tally();
+            failed.failed = 1;
+            failed.problem("Accounts " + firstId + "-" + lastId + " not processed: " + e.getMessage());
+            return failed;
+        } finally {
+            RANGE.recordSince(t0);
+        }
+        for (Transaction p : postings) {
+            DatabaseConnection.recordWrite(p.getAccountId());
+            AccountDAO.getCache().invalidate(p.getAccountId());
+        }
+        return t;
+    }
+
+    // Walks the ledger scan alongside the range's accounts (both in account id order)
+    private static final class Reconciler implements Consumer<Transaction> {
+        final List<Account> accounts;
+        final boolean[] reconciled;
+        final Tally tally;
+        int index = -1;
+        boolean hasRows;
+        boolean broken;
+        long running;
+
+        Reconciler(List<Account> accounts, Tally tally) {
+            this.accounts = accounts;
+            this.reconciled = new boolean[accounts.size()];
+            this.tally = tally;
+        }
+
+        @Override
+        public void accept(Transaction t) {
+            if (index < 0 || accounts.get(index).getAccountId() != t.getAccountId()) {
+                close();
+                while (++index < accounts.size() && accounts.get(index).getAccountId() < t.getAccountId()) {
+                    reconciled[index] = true; // no ledger rows, nothing to check
+                }
+                if (index == accounts.size() || accounts.get(index).getAccountId() != t.getAccountId()) {
+                    throw new IllegalStateException("Ledger row " + t.getTransactionId() + " belongs to no account in range");
+                }
+                hasRows = false;
+                broken = false;
+            }
+            if (hasRows && !broken && t.getBalanceAfter() != running + t.getSignedAmount()) {
+                broken = true;
+                tally.mismatches++;
+                tally.problem("Account " + t.getAccountId() + ": balance_after of transaction " + t.getTransactionId()
+                        + " does not follow from the previous row");
+            }
+            running = t.getBalanceAfter();
+            hasRows = true;
+        }
+
+        void finish() {
+            close();
+            while (++index < accounts.size()) reconciled[index] = true;
+        }
+
+        private void close() {
+            if (index < 0 || index >= accounts.size()) return;
+            Account a = accounts.get(index);
+            boolean matches = !hasRows || running == a.getBalance();
+            if (!matches) {
+                tally.mismatches++;
+                tally.problem("Account " + a.getAccountId() + ": balance " + Money.format(a.getBalance())
+                        + " but ledger ends at " + Money.format(running));
+            }
+            reconciled[index] = matches && !broken;
+        }
+    }
+
+    private static final class Tally {
+        int failed;
+        long accounts;
+        long ledgerRows;
+        long mismatches;
+        long interestAccounts;
+        long interestTotal;
+        final List<String> problems = new ArrayList<>();
+
+        void problem(String message) {
+            if (problems.size() < MAX_PROBLEMS) problems.add(message);
+        }
+
+        Tally add(Tally o) {
+            failed += o.failed;
+            accounts += o.accounts;
+            ledgerRows += o.ledgerRows;
+            mismatches += o.mismatches;
+            interestAccounts += o.interestAccounts;
+            interestTotal += o.interestTotal;
+            for (String p : o.problems) problem(p);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package banking.jobs;
+
+import banking.dao.LedgerArchiveDAO;
+import banking.dao.LedgerArchiveDAO.Partition;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partition upkeep for the MySQL ledger, meant to run daily or at least monthly:
+ *   1. monthly partitions are split out of p_future up to bank.ledger.monthsAhead months ahead (default 3),
+ *      while p_future is still empty and the split costs nothing;
+ *   2. every month older than the newest bank.ledger.hotMonths months (default 13, the current one included)
+ *      moves to transactions_archive: its rows are copied bank.ledger.archiveBatchAccounts accounts at a time
+ *      (default 1000), the month is recorded in ledger_archive_log, which moves the read horizon of
+ *      TransactionDAO, and once every reader has picked up the new horizon (bank.ledger.horizonRefreshMs)
+ *      the partition is dropped. A run interrupted anywhere can be repeated.
+ */
+public class LedgerArchiveJob {
+    private static final int ARCHIVE_BATCH_ACCOUNTS = Integer.getInteger("bank.ledger.archiveBatchAccounts", 1_000);
+    private static final long HORIZON_REFRESH_MILLIS = Long.getLong("bank.ledger.horizonRefreshMs", 10_000);
+    private static final Counter PARTITIONS_ADDED = Metrics.counter("ledger.partitionsAdded");
+    private static final Counter PARTITIONS_ARCHIVED = Metrics.counter("ledger.partitionsArchived");
+    private static final Counter ROWS_ARCHIVED = Metrics.counter("ledger.rowsArchived");
+
+    private final LedgerArchiveDAO dao = new LedgerArchiveDAO();
+    private final int hotMonths;
+    private final int monthsAhead;
+
+    public LedgerArchiveJob() {
+        this(Integer.getInteger("bank.ledger.hotMonths", 13), Integer.getInteger("bank.ledger.monthsAhead", 3));
+    }
+
+    public LedgerArchiveJob(int hotMonths, int monthsAhead) {
+        if (hotMonths < 1) throw new IllegalArgumentException("At least the current month must stay hot");
+        this.hotMonths = hotMonths;
+        this.monthsAhead = Math.max(0, monthsAhead);
+    }
+
+    // Returns the rows moved to the archive
+    public long run(YearMonth currentMonth) throws SQLException, InterruptedException {
+        addMonthsAhead(currentMonth.plusMonths(monthsAhead));
+
+        LocalDateTime cutoff = currentMonth.minusMonths(hotMonths - 1).atDay(1).atStartOfDay();
+        List<Partition> cold = new ArrayList<>();
+        for (Partition p : dao.partitions()) {
+            if (p.getUpperBound() == null || p.getUpperBound().isAfter(cutoff)) break;
+            cold.add(p);
+        }
+        long rows = 0;
+        for (Partition p : cold) {
+            long copied = dao.copyToArchive(p, ARCHIVE_BATCH_ACCOUNTS);
+            dao.recordArchived(p, copied);
+            rows += copied;
+        }
+        if (cold.isEmpty()) return 0;
+        // Readers elsewhere still using the old horizon would look for these rows in the hot table
+        Thread.sleep(HORIZON_REFRESH_MILLIS);
+        for (Partition p : cold) {
+            dao.dropPartition(p);
+            PARTITIONS_ARCHIVED.increment();
+        }
+        ROWS_ARCHIVED.add(rows);
+        return rows;
+    }
+
+    private void addMonthsAhead(YearMonth last) throws SQLException {
+        List<Partition> partitions = dao.partitions();
+        LocalDateTime next = null;
+        for (Partition p : partitions) {
+            if (p.getUpperBound() != null) next = p.getUpperBound();
+        }
+        if (next == null || !LedgerArchiveDAO.FUTURE.equals(partitions.get(partitions.size() - 1).getName())) {
+            throw new SQLException("transactions has no monthly partitions ending in " + LedgerArchiveDAO.FUTURE);
+        }
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = YearMonth.from(next); !m.isAfter(last); m = m.plusMonths(1)) months.add(m);
+        if (months.isEmpty()) return;
+        dao.addMonths(months);
+        PARTITIONS_ADDED.add(months.size());
+    }
+}
@@ -0,0 +1,48 @@
+package banking.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Small helpers for encoding journal payloads.
+public final class Codec {
+    private static final long NANOS = 1_000_000_000L;
+
+    private Codec() {}
+
+    // Short length prefix, -1 for null
+    public static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("String too long for journal");
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    public static String getString(ByteBuffer buf) {
+        int length = buf.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Upper bound of the encoded size of s
+    public static int sizeOf(String s) {
+        return 2 + (s == null ? 0 : s.length() * 3);
+    }
+
+    // Local date-time as nanoseconds on a UTC clock; timestamps are local to the bank, as in MySQL DATETIME
+    public static long toNanos(LocalDateTime t) {
+        return t == null ? Long.MIN_VALUE : t.toEpochSecond(ZoneOffset.UTC) * NANOS + t.getNano();
+    }
+
+    public static LocalDateTime fromNanos(long nanos) {
+        if (nanos == Long.MIN_VALUE) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS), (int) Math.floorMod(nanos, NANOS), ZoneOffset.UTC);
+    }
+}
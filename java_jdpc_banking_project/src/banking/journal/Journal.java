@@ -0,0 +1,473 @@
+package banking.journal;
+
+import banking.metrics.Histogram;
+import banking.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log split into segment files named after the first sequence number they hold.
+ * Appenders copy their record into a shared buffer and get a sequence number back; a single flusher thread
+ * writes whatever has accumulated and fsyncs it once, so concurrent writers share each fsync (group commit).
+ * Frame layout: int payload length, int CRC32C of (seq + payload), long seq, payload. A torn or corrupt
+ * frame at the tail is treated as the end of the log and cut off on open.
+ */
+public class Journal implements Closeable {
+    public interface Handler {
+        void record(long seq, ByteBuffer payload) throws IOException;
+    }
+
+    private static final int FRAME_HEADER = 4 + 4 + 8;
+    // Largest frame replay will buffer; a longer declared length can only be corruption
+    private static final int MAX_FRAME = 256 << 20;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+    private static final Histogram FSYNC = Metrics.histogram("journal.fsync");
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private ByteBuffer pending;
+    private ByteBuffer flushing;
+    private long lastSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    private FileChannel channel;
+    private final Thread flusher;
+    private final CRC32C crc = new CRC32C();
+
+    private Journal(Path dir, long segmentBytes, int bufferBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.pending = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.BIG_ENDIAN);
+        this.flushing = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.BIG_ENDIAN);
+        this.flusher = new Thread(this::run, "journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens (or creates) the journal in dir, passing every intact record with seq > afterSeq to handler
+     * in order before the journal accepts appends.
+     */
+    public static Journal open(Path dir, long afterSeq, Handler handler) throws IOException {
+        long segmentBytes = Long.getLong("bank.journal.segmentMb", 64) << 20;
+        int bufferBytes = Integer.getInteger("bank.journal.bufferKb", 4096) << 10;
+        Journal journal = new Journal(dir, segmentBytes, bufferBytes);
+        journal.recover(afterSeq, handler);
+        journal.flusher.start();
+        return journal;
+    }
+
+    // Opens a journal whose records are read through a Reader rather than replayed; only the last segment is scanned
+    public static Journal open(Path dir) throws IOException {
+        return open(dir, Long.MAX_VALUE - 1, (seq, payload) -> {});
+    }
+
+    /**
+     * Reads the journal in dir from the record after afterSeq on, following it as it grows and rolls over to
+     * new segments, also while another process appends to it.
+     */
+    public static Reader reader(Path dir, long afterSeq) throws IOException {
+        return new Reader(dir, afterSeq);
+    }
+
+    /** Queues payload for the log and returns its sequence number; it is durable once awaitDurable(seq) returns. */
+    public long append(ByteBuffer payload) throws IOException {
+        int size = FRAME_HEADER + payload.remaining();
+        if (size > pending.capacity()) throw new IllegalArgumentException("Journal record too large: " + size);
+        lock.lock();
+        try {
+            while (!closed && failure == null && pending.remaining() < size) spaceAvailable.awaitUninterruptibly();
+            checkOpen();
+            long seq = ++lastSeq;
+            int start = pending.position();
+            pending.putInt(payload.remaining());
+            pending.putInt(0);
+            pending.putLong(seq);
+            pending.put(payload);
+            crc.reset();
+            crc.update(pending.duplicate().position(start + 8).limit(pending.position()));
+            pending.putInt(start + 4, (int) crc.getValue());
+            dataAvailable.signal();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void awaitDurable(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) throw new IOException("Journal write failed", failure);
+                if (closed) throw new IOException("Journal is closed");
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Highest seq known to be on disk
+    public long getDurableSeq() {
+        lock.lock();
+        try {
+            return durableSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deletes whole segments whose records all have seq <= seq (e.g. once a snapshot covers them). */
+    public void discardThrough(long seq) throws IOException {
+        List<Path> doomed = new ArrayList<>();
+        synchronized (segments) {
+            Map.Entry<Long, Path> e = segments.firstEntry();
+            while (e != null) {
+                Map.Entry<Long, Path> next = segments.higherEntry(e.getKey());
+                if (next == null || next.getKey() > seq + 1) break;
+                doomed.add(e.getValue());
+                segments.remove(e.getKey());
+                e = next;
+            }
+        }
+        for (Path p : doomed) Files.deleteIfExists(p);
+    }
+
+    // Deletes the oldest segments until at most keep remain (the one being written counts)
+    public void retainSegments(int keep) throws IOException {
+        long through = 0;
+        synchronized (segments) {
+            int drop = segments.size() - Math.max(1, keep);
+            for (long first : segments.keySet()) {
+                if (drop-- < 0) break;
+                through = first - 1;
+            }
+        }
+        if (through > 0) discardThrough(through);
+    }
+
+    public int getSegmentCount() {
+        synchronized (segments) {
+            return segments.size();
+        }
+    }
+
+    // Flushes everything appended so far, then stops the flusher.
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            durable.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (failure != null) throw new IOException("Journal write failed", failure);
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) throw new IOException("Journal write failed", failure);
+        if (closed) throw new IOException("Journal is closed");
+    }
+
+    private void run() {
+        while (true) {
+            long batchSeq;
+            lock.lock();
+            try {
+                while (!closed && pending.position() == 0) dataAvailable.awaitUninterruptibly();
+                if (pending.position() == 0) return;
+                ByteBuffer full = pending;
+                pending = flushing;
+                flushing = full;
+                batchSeq = lastSeq;
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flushing.flip();
+                while (flushing.hasRemaining()) channel.write(flushing);
+                long t0 = Metrics.start();
+                channel.force(false);
+                FSYNC.recordSince(t0);
+                flushing.clear();
+                if (channel.size() >= segmentBytes) roll(batchSeq + 1);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    durable.signalAll();
+                    spaceAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                durableSeq = batchSeq;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        if (channel != null) channel.close();
+        Path path = segmentPath(dir, firstSeq);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        synchronized (segments) {
+            segments.put(firstSeq, path);
+        }
+    }
+
+    // Replays every segment in order, truncates a torn tail, and leaves the last segment open for appends.
+    private void recover(long afterSeq, Handler handler) throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), p);
+            }
+        }
+        ByteBuffer[] buf = {ByteBuffer.allocateDirect(pending.capacity())};
+        boolean first = true;
+        for (Map.Entry<Long, Path> e : segments.entrySet()) {
+            Long next = segments.higherKey(e.getKey());
+            if (first) {
+                if (e.getKey() > afterSeq + 1) throw new IOException("Journal starts at " + e.getKey() + " but records after " + afterSeq + " are needed");
+                lastSeq = e.getKey() - 1;
+                first = false;
+            } else if (e.getKey() != lastSeq + 1) {
+                throw new IOException("Journal segment " + e.getValue() + " does not follow seq " + lastSeq);
+            }
+            // Segments wholly covered by afterSeq are skipped without reading them
+            if (next != null && next <= afterSeq + 1) {
+                lastSeq = next - 1;
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(e.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long valid = replaySegment(ch, buf, afterSeq, handler);
+                if (valid < ch.size()) {
+                    if (next != null) throw new IOException("Corrupt journal segment " + e.getValue() + " at offset " + valid);
+                    ch.truncate(valid);
+                    ch.force(true);
+                }
+            }
+        }
+        durableSeq = lastSeq;
+        if (segments.isEmpty()) {
+            roll(lastSeq + 1);
+        } else {
+            channel = FileChannel.open(segments.lastEntry().getValue(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Feeds intact frames to handler and returns the length of the valid prefix of the segment. holder[0] grows
+     * to fit frames written with a larger bank.journal.bufferKb than this run's; the prefix ends only at a frame
+     * that fails its CRC, is out of sequence, declares a length over MAX_FRAME or runs past the end of the file.
+     */
+    private long replaySegment(FileChannel ch, ByteBuffer[] holder, long afterSeq, Handler handler) throws IOException {
+        CRC32C check = new CRC32C();
+        long offset = 0;
+        ByteBuffer buf = holder[0].clear();
+        while (true) {
+            int n = ch.read(buf);
+            buf.flip();
+            while (buf.remaining() >= FRAME_HEADER) {
+                int start = buf.position();
+                int length = buf.getInt(start);
+                if (length < 0 || length > MAX_FRAME - FRAME_HEADER) return offset;
+                if (buf.remaining() < FRAME_HEADER + length) break;
+                int stored = buf.getInt(start + 4);
+                long seq = buf.getLong(start + 8);
+                check.reset();
+                check.update(buf.duplicate().position(start + 8).limit(start + FRAME_HEADER + length));
+                if ((int) check.getValue() != stored || seq != lastSeq + 1) return offset;
+                lastSeq = seq;
+                if (seq > afterSeq) {
+                    handler.record(seq, buf.duplicate().position(start + FRAME_HEADER).limit(start + FRAME_HEADER + length).slice());
+                }
+                buf.position(start + FRAME_HEADER + length);
+                offset += FRAME_HEADER + length;
+            }
+            if (n < 0) return offset;
+            int size = buf.remaining() >= FRAME_HEADER ? FRAME_HEADER + buf.getInt(buf.position()) : 0;
+            if (size > buf.capacity()) {
+                holder[0] = ByteBuffer.allocate(Math.min(MAX_FRAME, Math.max(size, buf.capacity() * 2))).put(buf);
+                buf = holder[0];
+            } else {
+                buf.compact();
+            }
+        }
+    }
+
+    private static Path segmentPath(Path dir, long firstSeq) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+    }
+
+    /**
+     * Sequential reader of a journal directory. Only whole frames that pass their CRC are returned; a frame
+     * still being written is read again, from the file, on a later call. Segments deleted before the reader
+     * got to them are reported as an IOException. Not thread-safe.
+     */
+    public static final class Reader implements Closeable {
+        private final Path dir;
+        private long lastSeq;
+        private long segmentFirst; // first seq of the open segment
+        private FileChannel channel;
+        private long framePosition; // file offset of buf's position
+        private ByteBuffer buf = ByteBuffer.allocate(64 << 10).flip();
+        private final CRC32C check = new CRC32C();
+
+        private Reader(Path dir, long afterSeq) throws IOException {
+            this.dir = dir;
+            this.lastSeq = afterSeq;
+            TreeMap<Long, Path> found = new TreeMap<>();
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+                    for (Path p : files) {
+                        String name = p.getFileName().toString();
+                        found.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), p);
+                    }
+                }
+            }
+            Map.Entry<Long, Path> start = found.floorEntry(afterSeq + 1);
+            if (start == null && !found.isEmpty()) {
+                throw new IOException("Journal in " + dir + " starts at " + found.firstKey() + "; records after " + afterSeq + " are gone");
+            }
+            if (start != null) openSegment(start.getKey());
+        }
+
+        // Seq of the last record passed to a handler (or skipped as not after afterSeq)
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        // Passes up to max records to handler in order; returns how many, 0 if there is nothing new yet
+        public int read(int max, Handler handler) throws IOException {
+            int n = 0;
+            while (n < max) {
+                if (channel == null && !openSegment(lastSeq + 1)) break;
+                ByteBuffer frame = nextFrame();
+                if (frame == null) {
+                    // The writer rolls to the segment named after the next seq once every earlier record is written
+                    if (lastSeq + 1 == segmentFirst || !Files.exists(segmentPath(dir, lastSeq + 1))) break;
+                    channel.close();
+                    channel = null;
+                    continue;
+                }
+                long seq = frame.getLong(8);
+                if (seq <= lastSeq) continue;
+                if (seq != lastSeq + 1) throw new IOException("Journal in " + dir + " skips from seq " + lastSeq + " to " + seq);
+                lastSeq = seq;
+                handler.record(seq, frame.position(FRAME_HEADER).slice());
+                n++;
+            }
+            return n;
+        }
+
+        // The next intact frame, or null if the segment holds no more whole frames for now
+        private ByteBuffer nextFrame() throws IOException {
+            while (true) {
+                if (buf.remaining() >= FRAME_HEADER) {
+                    int start = buf.position();
+                    int length = buf.getInt(start);
+                    if (length < 0) throw new IOException("Corrupt journal frame in " + dir + " after seq " + lastSeq);
+                    int size = FRAME_HEADER + length;
+                    if (buf.remaining() >= size) {
+                        check.reset();
+                        check.update(buf.duplicate().position(start + 8).limit(start + size));
+                        if ((int) check.getValue() != buf.getInt(start + 4)) break; // still being written
+                        ByteBuffer frame = buf.duplicate().position(start).limit(start + size).slice();
+                        buf.position(start + size);
+                        framePosition += size;
+                        return frame;
+                    }
+                    if (size > buf.capacity()) {
+                        ByteBuffer bigger = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+                        bigger.put(buf).flip();
+                        buf = bigger;
+                    }
+                }
+                buf.compact();
+                int read = channel.read(buf);
+                buf.flip();
+                if (read <= 0) break;
+            }
+            // Read the partial frame afresh next time: a writer reopening the journal may have cut it off and rewritten it
+            channel.position(framePosition);
+            buf.clear().flip();
+            return null;
+        }
+
+        private boolean openSegment(long firstSeq) throws IOException {
+            Path path = segmentPath(dir, firstSeq);
+            if (!Files.exists(path)) return false;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            segmentFirst = firstSeq;
+            framePosition = 0;
+            buf.clear().flip();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Journal[" + dir + ", lastSeq=" + getLastSeq() + ", segments=" + getSegmentCount() + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package banking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free event counter; increments are dropped when metrics are disabled.
+public final class Counter {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        if (Metrics.ENABLED) count.increment();
+    }
+
+    public void add(long n) {
+        if (Metrics.ENABLED) count.add(n);
+    }
+
+    public String getName() { return name; }
+    public long get() { return count.sum(); }
+}
@@ -0,0 +1,87 @@
+package banking.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of counters and latency histograms. Off unless -Dbank.metrics.enabled=true;
+ * ENABLED is a static final, so when it is off the JIT folds every record call away. Instrumented code
+ * keeps its Counter/Histogram in a static final field and never looks names up on the hot path.
+ * When enabled, the registry is published over JMX as banking:type=Metrics, and over HTTP on
+ * 127.0.0.1:bank.metrics.port if that is set.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("bank.metrics.enabled");
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("banking:type=Metrics"));
+            } catch (Exception e) {
+                System.err.println("Could not register metrics MBean: " + e.getMessage());
+            }
+            Integer port = Integer.getInteger("bank.metrics.port");
+            if (port != null) MetricsServer.start(port);
+        }
+    }
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+    }
+
+    // Value read on demand (e.g. pool occupancy); replaces any gauge of the same name
+    public static void gauge(String name, LongSupplier value) {
+        if (ENABLED) GAUGES.put(name, value);
+    }
+
+    // Start time for Histogram.recordSince; 0 when disabled so no clock is read
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    static Map<String, Counter> counters() { return COUNTERS; }
+    static Map<String, Histogram> histograms() { return HISTOGRAMS; }
+    static Map<String, LongSupplier> gauges() { return GAUGES; }
+
+    // Plain-text dump, one metric per line, latencies in microseconds
+    public static String render() {
+        StringBuilder sb = new StringBuilder();
+        if (!ENABLED) sb.append("# metrics disabled, start with -Dbank.metrics.enabled=true\n");
+        for (Counter c : COUNTERS.values()) {
+            sb.append(c.getName()).append(' ').append(c.get()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> g : GAUGES.entrySet()) {
+            sb.append(g.getKey()).append(' ').append(g.getValue().getAsLong()).append('\n');
+        }
+        for (Histogram h : HISTOGRAMS.values()) {
+            if (h.getCount() == 0) continue;
+            sb.append(h.getName())
+                    .append(" count=").append(h.getCount())
+                    .append(" mean_us=").append(micros(Math.round(h.getMeanNanos())))
+                    .append(" p50_us=").append(micros(h.getPercentileNanos(50)))
+                    .append(" p99_us=").append(micros(h.getPercentileNanos(99)))
+                    .append(" p999_us=").append(micros(h.getPercentileNanos(99.9)))
+                    .append(" max_us=").append(micros(h.getMaxNanos()))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    static String micros(long nanos) {
+        return String.format("%.1f", nanos / (double) TimeUnit.MICROSECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,90 @@
+package banking.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * Exposes the registry over JMX. Attributes are generated from whatever metrics exist when a client
+ * asks: "name" for counters and gauges, "name.count", "name.p50Micros", "name.p99Micros" and
+ * "name.maxMicros" for histograms.
+ */
+class MetricsMBean implements DynamicMBean {
+    private static final String[] HISTOGRAM_FIELDS = {"count", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"};
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Counter c = Metrics.counters().get(attribute);
+        if (c != null) return c.get();
+        LongSupplier g = Metrics.gauges().get(attribute);
+        if (g != null) return g.getAsLong();
+        int dot = attribute.lastIndexOf('.');
+        Histogram h = dot < 0 ? null : Metrics.histograms().get(attribute.substring(0, dot));
+        if (h == null) throw new AttributeNotFoundException(attribute);
+        switch (attribute.substring(dot + 1)) {
+            case "count": return h.getCount();
+            case "meanMicros": return h.getMeanNanos() / 1000.0;
+            case "p50Micros": return h.getPercentileNanos(50) / 1000.0;
+            case "p99Micros": return h.getPercentileNanos(99) / 1000.0;
+            case "p999Micros": return h.getPercentileNanos(99.9) / 1000.0;
+            case "maxMicros": return h.getMaxNanos() / 1000.0;
+            default: throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException e) {
+                // skipped, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        if ("render".equals(actionName)) return Metrics.render();
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (String name : Metrics.counters().keySet()) attrs.add(attr(name, "java.lang.Long", "Counter"));
+        for (String name : Metrics.gauges().keySet()) attrs.add(attr(name, "java.lang.Long", "Gauge"));
+        for (Map.Entry<String, Histogram> e : Metrics.histograms().entrySet()) {
+            for (String field : HISTOGRAM_FIELDS) {
+                attrs.add(attr(e.getKey() + "." + field, field.equals("count") ? "java.lang.Long" : "java.lang.Double", "Latency"));
+            }
+        }
+        MBeanOperationInfo render = new MBeanOperationInfo("render", "All metrics as text", null, "java.lang.String", MBeanOperationInfo.INFO);
+        return new MBeanInfo(getClass().getName(), "Banking metrics", attrs.toArray(new MBeanAttributeInfo[0]),
+                null, new MBeanOperationInfo[]{render}, null);
+    }
+
+    private static MBeanAttributeInfo attr(String name, String type, String description) {
+        return new MBeanAttributeInfo(name, type, description, true, false, false);
+    }
+}
@@ -0,0 +1,62 @@
+package banking.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves Metrics.render() as text/plain on http://127.0.0.1:port/metrics (loopback only). A bare socket loop
+ * on a daemon thread rather than com.sun.net.httpserver, whose dispatcher thread would keep the JVM alive.
+ * Scrapes are rare, so requests are handled one at a time.
+ */
+final class MetricsServer {
+    private MetricsServer() {}
+
+    static void start(int port) {
+        ServerSocket server;
+        try {
+            server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            System.err.println("Could not start metrics endpoint on port " + port + ": " + e.getMessage());
+            return;
+        }
+        Thread t = new Thread(() -> {
+            while (true) {
+                try (Socket s = server.accept()) {
+                    s.setSoTimeout(5000);
+                    respond(s);
+                } catch (IOException e) {
+                    if (server.isClosed()) return;
+                }
+            }
+        }, "metrics-http");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void respond(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = in.readLine();
+        if (requestLine == null) return;
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            // headers are not needed
+        }
+        String[] parts = requestLine.split(" ");
+        boolean found = parts.length >= 2 && parts[0].equals("GET") && parts[1].equals("/metrics");
+        byte[] body = (found ? Metrics.render() : "Not found\n").getBytes(StandardCharsets.UTF_8);
+        String head = (found ? "HTTP/1.1 200 OK" : "HTTP/1.1 404 Not Found") + "\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        OutputStream out = s.getOutputStream();
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+}
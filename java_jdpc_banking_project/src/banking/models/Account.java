@@ -8,13 +8,13 @@ public class Account {
     private String email;
     private String phone;
     private String password; // stored hashed externally
-    private double balance;
+    private long balance; // minor units, see Money
     private LocalDateTime createdAt;
     private String status;
 
     public Account() {}
 
-    public Account(String name, String email, String phone, String password, double balance) {
+    public Account(String name, String email, String phone, String password, long balance) {
         this.name = name;
         this.email = email;
         this.phone = phone;
@@ -22,7 +22,7 @@ public class Account {
         this.balance = balance;
     }
 
-    public Account(int accountId, String name, String email, String phone, String password, double balance, LocalDateTime createdAt, String status) {
+    public Account(int accountId, String name, String email, String phone, String password, long balance, LocalDateTime createdAt, String status) {
         this.accountId = accountId;
         this.name = name;
         this.email = email;
@@ -43,8 +43,8 @@ public class Account {
     public void setPhone(String phone) { this.phone = phone; }
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public long getBalance() { return balance; }
+    public void setBalance(long balance) { this.balance = balance; }
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     public String getStatus() { return status; }
@@ -0,0 +1,33 @@
+package banking.models;
+
+/**
+ * Debit limits of one account. Daily limits are in minor units (see Money) over any rolling 24 hours;
+ * maxDebitsPerMinute counts withdrawals and outgoing transfers over any rolling minute. 0 means no limit.
+ */
+public class AccountLimits {
+    public static final AccountLimits UNLIMITED = new AccountLimits(0, 0, 0);
+
+    private final long dailyWithdrawalLimit;
+    private final long dailyTransferLimit;
+    private final int maxDebitsPerMinute;
+
+    public AccountLimits(long dailyWithdrawalLimit, long dailyTransferLimit, int maxDebitsPerMinute) {
+        if (dailyWithdrawalLimit < 0 || dailyTransferLimit < 0 || maxDebitsPerMinute < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        this.dailyWithdrawalLimit = dailyWithdrawalLimit;
+        this.dailyTransferLimit = dailyTransferLimit;
+        this.maxDebitsPerMinute = maxDebitsPerMinute;
+    }
+
+    // Defaults for accounts without limits of their own: bank.policy.dailyWithdrawalLimit,
+    // bank.policy.dailyTransferLimit (minor units) and bank.policy.maxDebitsPerMinute, all unlimited by default
+    public static AccountLimits fromConfig() {
+        return new AccountLimits(Long.getLong("bank.policy.dailyWithdrawalLimit", 0),
+                Long.getLong("bank.policy.dailyTransferLimit", 0), Integer.getInteger("bank.policy.maxDebitsPerMinute", 0));
+    }
+
+    public long getDailyWithdrawalLimit() { return dailyWithdrawalLimit; }
+    public long getDailyTransferLimit() { return dailyTransferLimit; }
+    public int getMaxDebitsPerMinute() { return maxDebitsPerMinute; }
+}
@@ -0,0 +1,34 @@
+package banking.models;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// One account's activity for a calendar month; amounts in minor units (see Money).
+public class AccountStatement {
+    private final int accountId;
+    private final YearMonth period;
+    private final long openingBalance;
+    private final long closingBalance;
+    private final long totalCredits;
+    private final long totalDebits;
+    private final List<Transaction> transactions;
+
+    public AccountStatement(int accountId, YearMonth period, long openingBalance, long closingBalance,
+                            long totalCredits, long totalDebits, List<Transaction> transactions) {
+        this.accountId = accountId;
+        this.period = period;
+        this.openingBalance = openingBalance;
+        this.closingBalance = closingBalance;
+        this.totalCredits = totalCredits;
+        this.totalDebits = totalDebits;
+        this.transactions = transactions;
+    }
+
+    public int getAccountId() { return accountId; }
+    public YearMonth getPeriod() { return period; }
+    public long getOpeningBalance() { return openingBalance; }
+    public long getClosingBalance() { return closingBalance; }
+    public long getTotalCredits() { return totalCredits; }
+    public long getTotalDebits() { return totalDebits; }
+    public List<Transaction> getTransactions() { return transactions; } // oldest first
+}
@@ -0,0 +1,52 @@
+package banking.models;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Outcome of one end-of-day run; counts cover only the account ranges processed by that run. Amounts in minor units.
+public class EndOfDayReport {
+    private final LocalDate businessDate;
+    private final int ranges;
+    private final int rangesFailed;
+    private final int rangesAlreadyDone;
+    private final long accounts;
+    private final long ledgerRows;
+    private final long mismatches;
+    private final long interestAccounts;
+    private final long interestTotal;
+    private final int receiptsPurged;
+    private final long elapsedMillis;
+    private final List<String> problems;
+
+    public EndOfDayReport(LocalDate businessDate, int ranges, int rangesFailed, int rangesAlreadyDone, long accounts,
+                          long ledgerRows, long mismatches, long interestAccounts, long interestTotal, int receiptsPurged,
+                          long elapsedMillis, List<String> problems) {
+        this.businessDate = businessDate;
+        this.ranges = ranges;
+        this.rangesFailed = rangesFailed;
+        this.rangesAlreadyDone = rangesAlreadyDone;
+        this.accounts = accounts;
+        this.ledgerRows = ledgerRows;
+        this.mismatches = mismatches;
+        this.interestAccounts = interestAccounts;
+        this.interestTotal = interestTotal;
+        this.receiptsPurged = receiptsPurged;
+        this.elapsedMillis = elapsedMillis;
+        this.problems = problems;
+    }
+
+    public LocalDate getBusinessDate() { return businessDate; }
+    public int getRanges() { return ranges; }
+    public int getRangesFailed() { return rangesFailed; }
+    public int getRangesAlreadyDone() { return rangesAlreadyDone; }
+    public long getAccounts() { return accounts; }
+    public long getLedgerRows() { return ledgerRows; }
+    public long getMismatches() { return mismatches; }
+    public long getInterestAccounts() { return interestAccounts; }
+    public long getInterestTotal() { return interestTotal; }
+    public int getReceiptsPurged() { return receiptsPurged; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    // The first mismatches and failures found, at most 100
+    public List<String> getProblems() { return problems; }
+    public boolean isComplete() { return rangesFailed == 0; }
+}
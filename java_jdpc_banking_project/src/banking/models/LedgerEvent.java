@@ -0,0 +1,54 @@
+package banking.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * One committed ledger row as published on the event stream (see banking.events.EventRelay). offset is its
+ * position in the event log, counting from 1, and is what a consumer stores to resume from. Delivery is at
+ * least once, so the same row may be published again under a later offset; transactionId identifies it.
+ * Amounts in minor units (see Money).
+ */
+public class LedgerEvent {
+    private final long offset;
+    private final int transactionId;
+    private final int accountId;
+    private final String type;
+    private final long amount;
+    private final long balanceAfter;
+    private final LocalDateTime timestamp;
+    private final String remarks;
+
+    public LedgerEvent(long offset, Transaction row) {
+        this.offset = offset;
+        this.transactionId = row.getTransactionId();
+        this.accountId = row.getAccountId();
+        this.type = row.getType();
+        this.amount = row.getAmount();
+        this.balanceAfter = row.getBalanceAfter();
+        this.timestamp = row.getTimestamp();
+        this.remarks = row.getRemarks();
+    }
+
+    // The ledger row this event carries
+    public Transaction toTransaction() {
+        Transaction t = new Transaction(accountId, type, amount, remarks);
+        t.setTransactionId(transactionId);
+        t.setTimestamp(timestamp);
+        t.setBalanceAfter(balanceAfter);
+        return t;
+    }
+
+    public long getOffset() { return offset; }
+    public int getTransactionId() { return transactionId; }
+    public int getAccountId() { return accountId; }
+    public String getType() { return type; }
+    public long getAmount() { return amount; }
+    public long getBalanceAfter() { return balanceAfter; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public String getRemarks() { return remarks; }
+
+    @Override
+    public String toString() {
+        return offset + " " + transactionId + " " + accountId + " " + type + " " + amount + " " + balanceAfter + " " + timestamp;
+    }
+}
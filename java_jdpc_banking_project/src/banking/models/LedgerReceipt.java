@@ -0,0 +1,55 @@
+package banking.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * What an idempotent ledger call did, stored under (accountId, idempotencyKey) and handed back unchanged
+ * when the same key is replayed. accountId is the account acted on (the payer for transfers);
+ * counterpartyId is the payee, or 0. Amounts in minor units (see Money).
+ */
+public class LedgerReceipt {
+    private final int accountId;
+    private final String idempotencyKey;
+    private final String operation; // Deposit, Withdraw or Transfer, as in Transaction.type
+    private final int counterpartyId;
+    private final long amount;
+    private final long balanceAfter;
+    private final LocalDateTime createdAt;
+    private final boolean replayed;
+
+    public LedgerReceipt(int accountId, String idempotencyKey, String operation, int counterpartyId, long amount,
+                         long balanceAfter, LocalDateTime createdAt) {
+        this(accountId, idempotencyKey, operation, counterpartyId, amount, balanceAfter, createdAt, false);
+    }
+
+    private LedgerReceipt(int accountId, String idempotencyKey, String operation, int counterpartyId, long amount,
+                          long balanceAfter, LocalDateTime createdAt, boolean replayed) {
+        this.accountId = accountId;
+        this.idempotencyKey = idempotencyKey;
+        this.operation = operation;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.createdAt = createdAt;
+        this.replayed = replayed;
+    }
+
+    // The same receipt, flagged as returned for a repeated request rather than a newly applied one
+    public LedgerReceipt asReplay() {
+        return replayed ? this : new LedgerReceipt(accountId, idempotencyKey, operation, counterpartyId, amount, balanceAfter, createdAt, true);
+    }
+
+    // True if this receipt records exactly the request described by the arguments
+    public boolean matches(String operation, int counterpartyId, long amount) {
+        return this.operation.equals(operation) && this.counterpartyId == counterpartyId && this.amount == amount;
+    }
+
+    public int getAccountId() { return accountId; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public String getOperation() { return operation; }
+    public int getCounterpartyId() { return counterpartyId; }
+    public long getAmount() { return amount; }
+    public long getBalanceAfter() { return balanceAfter; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public boolean isReplayed() { return replayed; }
+}
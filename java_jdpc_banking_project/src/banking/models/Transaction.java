@@ -6,13 +6,14 @@ public class Transaction {
     private int transactionId;
     private int accountId;
     private String type;
-    private double amount;
+    private long amount; // minor units, see Money
     private LocalDateTime timestamp;
     private String remarks;
+    private long balanceAfter; // account balance once this row applied, minor units
 
     public Transaction() {}
 
-    public Transaction(int accountId, String type, double amount, String remarks) {
+    public Transaction(int accountId, String type, long amount, String remarks) {
         this.accountId = accountId;
         this.type = type;
         this.amount = amount;
@@ -25,10 +26,19 @@ public class Transaction {
     public void setAccountId(int accountId) { this.accountId = accountId; }
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
     public String getRemarks() { return remarks; }
     public void setRemarks(String remarks) { this.remarks = remarks; }
+    public long getBalanceAfter() { return balanceAfter; }
+    public void setBalanceAfter(long balanceAfter) { this.balanceAfter = balanceAfter; }
+
+    // Rows store positive amounts; the direction follows from the type and, for transfers, the remarks
+    public long getSignedAmount() {
+        boolean debit = "Withdraw".equals(type)
+                || ("Transfer".equals(type) && remarks != null && remarks.startsWith("Transfer to"));
+        return debit ? -amount : amount;
+    }
 }
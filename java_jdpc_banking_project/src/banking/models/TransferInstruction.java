@@ -0,0 +1,29 @@
+package banking.models;
+
+public class TransferInstruction {
+    private int fromAccountId;
+    private int toAccountId;
+    private long amount; // minor units, see Money
+    private String reference;
+    private String idempotencyKey; // optional; set by TransferFileReader
+
+    public TransferInstruction() {}
+
+    public TransferInstruction(int fromAccountId, int toAccountId, long amount, String reference) {
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.reference = reference;
+    }
+
+    public int getFromAccountId() { return fromAccountId; }
+    public void setFromAccountId(int fromAccountId) { this.fromAccountId = fromAccountId; }
+    public int getToAccountId() { return toAccountId; }
+    public void setToAccountId(int toAccountId) { this.toAccountId = toAccountId; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+}
@@ -0,0 +1,25 @@
+package banking.models;
+
+public class TransferResult {
+    // ALREADY_APPLIED: the instruction's idempotency key had been used by an earlier run, so it was not applied again
+    // REJECTED: refused by account policy (status, daily limit or debit rate)
+    public enum Status { SUCCESS, ALREADY_APPLIED, INVALID, REJECTED, INSUFFICIENT_FUNDS, FAILED }
+
+    private final int index;
+    private final TransferInstruction instruction;
+    private final Status status;
+    private final String message;
+
+    public TransferResult(int index, TransferInstruction instruction, Status status, String message) {
+        this.index = index;
+        this.instruction = instruction;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() { return index; }
+    public TransferInstruction getInstruction() { return instruction; }
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public boolean isSuccess() { return status == Status.SUCCESS || status == Status.ALREADY_APPLIED; }
+}
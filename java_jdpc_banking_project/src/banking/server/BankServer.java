@@ -0,0 +1,131 @@
+package banking.server;
+
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.services.AsyncBankService;
+import banking.services.BankService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * TCP front end for BankService speaking a line protocol (see ConnectionHandler). Each connection is
+ * served by its own virtual thread and kept open until the client quits or stays idle for
+ * bank.server.idleTimeoutMs (default 60000). Clients may pipeline: requests are answered in order and
+ * responses are flushed once no further request is waiting, so a burst costs one write. At most
+ * bank.server.maxConnections connections (default 10000) are served; extra ones are told so and closed.
+ * Ledger work goes through AsyncBankService, so its concurrency limit applies across all connections.
+ *   bank.server.host  bind address, default 127.0.0.1
+ *   bank.server.port  default 7070 (0 picks a free port)
+ */
+public class BankServer implements Closeable {
+    private static final Counter ACCEPTED = Metrics.counter("server.accepted");
+    private static final Counter REJECTED = Metrics.counter("server.rejected");
+
+    private final AsyncBankService async;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bank-conn-", 0).factory());
+    private final Semaphore slots;
+    private final int maxConnections;
+    private final int idleTimeoutMillis;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    public BankServer(BankService service, String host, int port) throws IOException {
+        this(new AsyncBankService(service), host, port, Integer.getInteger("bank.server.maxConnections", 10_000),
+                Integer.getInteger("bank.server.idleTimeoutMs", 60_000));
+    }
+
+    public BankServer(AsyncBankService async, String host, int port, int maxConnections, int idleTimeoutMillis) throws IOException {
+        this.async = async;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.slots = new Semaphore(maxConnections);
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(host), port), 1024);
+        this.acceptor = new Thread(this::acceptLoop, "bank-server-accept");
+        Metrics.gauge("server.connections", () -> maxConnections - slots.availablePermits());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = System.getProperty("bank.server.host", "127.0.0.1");
+        int port = Integer.getInteger("bank.server.port", 7070);
+        BankServer server = new BankServer(BankService.fromConfig(), host, port);
+        server.start();
+        System.out.println("Bank server listening on " + host + ":" + server.getPort()
+                + " (" + server.async.getService().getBackend() + ")");
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return maxConnections - slots.availablePermits();
+    }
+
+    // Stops accepting, drops open connections and waits for their threads to finish.
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        connections.shutdownNow();
+        connections.close();
+        async.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) return;
+                System.err.println("Accept failed: " + e.getMessage());
+                continue;
+            }
+            if (!slots.tryAcquire()) {
+                REJECTED.increment();
+                reject(socket);
+                continue;
+            }
+            ACCEPTED.increment();
+            try {
+                connections.execute(() -> {
+                    try {
+                        new ConnectionHandler(async, socket, idleTimeoutMillis).run();
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Executor shut down by close()
+                slots.release();
+                reject(socket);
+            }
+        }
+    }
+
+    private static void reject(Socket socket) {
+        try (Socket s = socket; OutputStream out = s.getOutputStream()) {
+            out.write("ERR BUSY Too many connections\n".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            // client already gone
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package banking.server;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.InvalidInputException;
+import banking.exceptions.PolicyViolationException;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.LedgerReceipt;
+import banking.models.Page;
+import banking.models.Transaction;
+import banking.services.AsyncBankService;
+import banking.services.BankService;
+import banking.utils.Money;
+import banking.utils.PasswordUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * One client connection. Requests are single lines of space-separated words; every request gets one
+ * response line, "OK [result]" or "ERR CODE message", in request order. HISTORY is followed by as many
+ * extra lines as its count says. Commands other than PING, OPEN, LOGIN and QUIT act on the account logged
+ * in on this connection. Amounts use the CLI format ("12.50"). Lines are UTF-8, at most 1024 bytes; a longer one
+ * is answered ERR BAD_REQUEST and the connection closed.
+ *   PING                                         OK PONG
+ *   OPEN email phone password deposit name...    OK accountId
+ *   LOGIN accountId password                     OK
+ *   BALANCE                                      OK amount
+ *   DEPOSIT amount [key] | WITHDRAW amount [key] OK, or OK REPLAYED
+ *   TRANSFER toAccountId amount [key]            OK, or OK REPLAYED
+ *   HISTORY [limit]                              OK n, then n lines: id type amount timestamp balanceAfter
+ *   QUIT                                         OK BYE, then the server closes the connection
+ * The optional key (1-64 printable characters, e.g. a UUID) makes a request safe to resend after a lost
+ * response: a key already applied for this account is answered OK REPLAYED without moving money again.
+ * Error codes: BAD_REQUEST, AUTH, INVALID, POLICY (account not active, or over a limit), FUNDS, DB, INTERNAL
+ * (and BUSY from the server when full, or when it shuts down while a request waits; the request may still be
+ * applied, so resend it with its key).
+ */
+class ConnectionHandler {
+    private static final int MAX_LINE = 1024;
+    private static final int MAX_HISTORY = 100;
+    private static final Counter REQUESTS = Metrics.counter("server.requests");
+
+    private final AsyncBankService async;
+    private final BankService service;
+    private final Socket socket;
+    private final int idleTimeoutMillis;
+    private final byte[] buffer = new byte[MAX_LINE];
+    private final StringBuilder reply = new StringBuilder(128);
+    private String line;
+    private boolean tooLong;
+    // Set when the thread was interrupted waiting for a request; the flag is restored once the reply is out,
+    // since socket I/O on an interrupted virtual thread closes the socket
+    private boolean interrupted;
+    private int accountId;
+
+    ConnectionHandler(AsyncBankService async, Socket socket, int idleTimeoutMillis) {
+        this.async = async;
+        this.service = async.getService();
+        this.socket = socket;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    void run() {
+        try (Socket s = socket) {
+            s.setSoTimeout(idleTimeoutMillis);
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream(), 8192);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 8192);
+            while (readLine(in)) {
+                REQUESTS.increment();
+                reply.setLength(0);
+                boolean quit;
+                if (tooLong) {
+                    badRequest("line too long");
+                    quit = true;
+                } else {
+                    quit = handle(line.trim());
+                }
+                reply.append('\n');
+                out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+                if (quit) break;
+                // Pipelined requests already buffered are answered before the batch is flushed
+                if (in.available() == 0) out.flush();
+            }
+            out.flush();
+        } catch (SocketTimeoutException e) {
+            // idle connection
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    // Reads one request into line, decoded as UTF-8; false at end of stream. A line longer than MAX_LINE bytes
+    // sets tooLong instead, and the rest of it is not read.
+    private boolean readLine(InputStream in) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (b == '\r') continue;
+            if (length == MAX_LINE) {
+                tooLong = true;
+                return true;
+            }
+            buffer[length++] = (byte) b;
+        }
+        if (b == -1 && length == 0) return false;
+        line = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    // Appends the response to reply; true when the connection should close afterwards
+    private boolean handle(String request) {
+        String[] w = request.split(" +");
+        String command = w[0].toUpperCase();
+        try {
+            switch (command) {
+                case "PING":
+                    ok("PONG");
+                    break;
+                case "QUIT":
+                    ok("BYE");
+                    return true;
+                case "OPEN": {
+                    String[] f = request.split(" +", 6);
+                    if (f.length < 6) return badRequest("OPEN email phone password deposit name");
+                    Account acc = new Account(f[5], f[1], f[2], PasswordUtil.hash(f[3]), Money.parse(f[4]));
+                    ok(Integer.toString(service.createAccount(acc)));
+                    break;
+                }
+                case "LOGIN": {
+                    if (w.length != 3) return badRequest("LOGIN accountId password");
+                    Account acc = service.login(Integer.parseInt(w[1]), w[2]);
+                    if (acc == null) return error("AUTH", "Invalid credentials");
+                    accountId = acc.getAccountId();
+                    ok(null);
+                    break;
+                }
+                case "BALANCE":
+                    if (!loggedIn()) break;
+                    ok(Money.format(await(async.getBalance(accountId))));
+                    break;
+                case "DEPOSIT":
+                    if (w.length < 2 || w.length > 3) return badRequest("DEPOSIT amount [key]");
+                    if (!loggedIn()) break;
+                    okReceipt(await(async.deposit(accountId, Money.parse(w[1]), key(w, 2))));
+                    break;
+                case "WITHDRAW":
+                    if (w.length < 2 || w.length > 3) return badRequest("WITHDRAW amount [key]");
+                    if (!loggedIn()) break;
+                    okReceipt(await(async.withdraw(accountId, Money.parse(w[1]), key(w, 2))));
+                    break;
+                case "TRANSFER":
+                    if (w.length < 3 || w.length > 4) return badRequest("TRANSFER toAccountId amount [key]");
+                    if (!loggedIn()) break;
+                    okReceipt(await(async.transfer(accountId, Integer.parseInt(w[1]), Money.parse(w[2]), key(w, 3))));
+                    break;
+                case "HISTORY": {
+                    if (w.length > 2) return badRequest("HISTORY [limit]");
+                    if (!loggedIn()) break;
+                    int limit = w.length == 2 ? Math.min(MAX_HISTORY, Integer.parseInt(w[1])) : 10;
+                    if (limit <= 0) return badRequest("limit must be positive");
+                    Page<Transaction> page = await(async.getTransactionsPage(accountId, null, limit));
+                    ok(Integer.toString(page.getItems().size()));
+                    for (Transaction t : page.getItems()) {
+                        reply.append('\n').append(t.getTransactionId()).append(' ').append(t.getType())
+                                .append(' ').append(Money.format(t.getAmount())).append(' ').append(t.getTimestamp())
+                                .append(' ').append(Money.format(t.getBalanceAfter()));
+                    }
+                    break;
+                }
+                default:
+                    return badRequest("Unknown command " + w[0]);
+            }
+        } catch (NumberFormatException e) {
+            return badRequest(e.getMessage());
+        } catch (PolicyViolationException e) {
+            return error("POLICY", e.getMessage());
+        } catch (InvalidInputException e) {
+            return error("INVALID", e.getMessage());
+        } catch (InsufficientFundsException e) {
+            return error("FUNDS", e.getMessage());
+        } catch (SQLException e) {
+            return error("DB", e.getMessage());
+        } catch (InterruptedException e) {
+            // The server is shutting down; answer and close, the flag is set again in run()
+            interrupted = true;
+            error("BUSY", "Server is shutting down");
+            return true;
+        } catch (Exception e) {
+            return error("INTERNAL", String.valueOf(e.getMessage()));
+        }
+        return false;
+    }
+
+    private boolean loggedIn() {
+        if (accountId != 0) return true;
+        error("AUTH", "Log in first");
+        return false;
+    }
+
+    private void ok(String result) {
+        reply.append("OK");
+        if (result != null) reply.append(' ').append(result);
+    }
+
+    // A retried request whose key was already applied is answered "OK REPLAYED" and not applied again
+    private void okReceipt(LedgerReceipt receipt) {
+        ok(receipt != null && receipt.isReplayed() ? "REPLAYED" : null);
+    }
+
+    private static String key(String[] w, int index) {
+        return w.length > index ? w[index] : null;
+    }
+
+    private boolean badRequest(String message) {
+        return error("BAD_REQUEST", message);
+    }
+
+    private boolean error(String code, String message) {
+        reply.setLength(0);
+        reply.append("ERR ").append(code).append(' ').append(message == null ? "" : message.replace('\n', ' '));
+        return false;
+    }
+
+    // Waits for an async call, rethrowing what the blocking BankService method would have thrown
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package banking.services;
+
+import banking.dao.AccountRepository;
+import banking.dao.TransactionRepository;
+import banking.exceptions.PolicyViolationException;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.Transaction;
+import banking.utils.Money;
+import banking.utils.SegmentedLruCache;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks BankService makes before moving money, answered from memory:
+ *   status    only ACTIVE accounts deposit, withdraw, send or receive transfers;
+ *   limits    withdrawals and outgoing transfers over a rolling 24 hours (in hourly steps) stay within the
+ *             account's daily limits, see AccountLimits;
+ *   velocity  at most maxDebitsPerMinute withdrawals and outgoing transfers over a rolling minute.
+ * Each account's status, limits and rolling totals sit in one entry of a SegmentedLruCache without a TTL.
+ * Loading an entry reads the account and its limits; the totals are seeded from the last 24 hours of ledger the
+ * first time the account has a limit to enforce. After that a check costs no query. Entries are re-read after
+ * bank.policy.ttlMs (default 30s), so changes made through other instances take effect within that time, and at
+ * once after invalidate(). Totals are per instance.
+ */
+class AccountPolicyEngine {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final Counter REJECTIONS = Metrics.counter("policy.rejections");
+    private static final Counter LOADS = Metrics.counter("policy.loads");
+
+    private final AccountRepository accounts;
+    private final TransactionRepository transactions;
+    private final AccountLimits defaults;
+    private final long ttlNanos;
+    private final SegmentedLruCache<Integer, Entry> entries;
+
+    AccountPolicyEngine(AccountRepository accounts, TransactionRepository transactions) {
+        this(accounts, transactions, AccountLimits.fromConfig(), Integer.getInteger("bank.policy.cacheSize", 100_000),
+                Long.getLong("bank.policy.ttlMs", 30_000));
+    }
+
+    AccountPolicyEngine(AccountRepository accounts, TransactionRepository transactions, AccountLimits defaults,
+                        int maxSize, long ttlMillis) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.defaults = defaults;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new SegmentedLruCache<>(maxSize, 0);
+    }
+
+    // A debit admitted against the rolling totals; cancel it if the ledger call does not go through
+    static final class Debit {
+        private final Entry entry;
+        private final boolean transfer;
+        private final long amount;
+        private final long at;
+
+        private Debit(Entry entry, boolean transfer, long amount, long at) {
+            this.entry = entry;
+            this.transfer = transfer;
+            this.amount = amount;
+            this.at = at;
+        }
+    }
+
+    void checkCredit(int accountId) throws SQLException, PolicyViolationException {
+        Entry e = entry(accountId);
+        synchronized (e) {
+            requireActive(accountId, e);
+        }
+    }
+
+    // Counts the debit if it fits the account's limits; null if the account has none
+    Debit admitDebit(int accountId, boolean transfer, long amount) throws SQLException, PolicyViolationException {
+        Entry e = entry(accountId);
+        long now = System.currentTimeMillis();
+        synchronized (e) {
+            requireActive(accountId, e);
+            AccountLimits l = e.limits;
+            if (l.getDailyWithdrawalLimit() == 0 && l.getDailyTransferLimit() == 0 && l.getMaxDebitsPerMinute() == 0) {
+                e.dropTotals(); // reseeded from the ledger if limits come back
+                return null;
+            }
+            if (e.debits == null) seed(accountId, e);
+            long daily = transfer ? l.getDailyTransferLimit() : l.getDailyWithdrawalLimit();
+            SlidingWindow window = transfer ? e.transfers : e.withdrawals;
+            if (daily > 0 && amount > daily - window.sum(now)) {
+                throw reject("Daily " + (transfer ? "transfer" : "withdrawal") + " limit of " + Money.format(daily)
+                        + " for account " + accountId + " would be exceeded");
+            }
+            int perMinute = l.getMaxDebitsPerMinute();
+            if (perMinute > 0 && e.debits.sum(now) >= perMinute) {
+                throw reject("Account " + accountId + " is limited to " + perMinute + " debits per minute");
+            }
+            window.add(now, amount);
+            e.debits.add(now, 1);
+            return new Debit(e, transfer, amount, now);
+        }
+    }
+
+    void cancel(Debit d) {
+        if (d == null) return;
+        Entry e = d.entry;
+        synchronized (e) {
+            if (e.debits == null) return;
+            (d.transfer ? e.transfers : e.withdrawals).add(d.at, -d.amount);
+            e.debits.add(d.at, -1);
+        }
+    }
+
+    // The limits enforced for the account: its own, or the configured defaults
+    AccountLimits limits(int accountId) throws SQLException {
+        Entry e = entry(accountId);
+        synchronized (e) {
+            return e.limits;
+        }
+    }
+
+    // Re-reads the account's status and limits on its next check; its rolling totals are kept
+    void invalidate(int accountId) {
+        Entry e = entries.invalidateKeeping(accountId);
+        if (e == null) return;
+        synchronized (e) {
+            e.stale = true;
+        }
+    }
+
+    private Entry entry(int accountId) throws SQLException {
+        Entry cached = entries.get(accountId);
+        if (cached != null) {
+            synchronized (cached) {
+                if (!cached.stale && System.nanoTime() - cached.loadedAt < ttlNanos) return cached;
+            }
+        }
+        long stamp = entries.stamp(accountId);
+        LOADS.increment();
+        Account a = accounts.findById(accountId);
+        if (a == null) throw new SQLException("Account not found");
+        AccountLimits own = accounts.findLimits(accountId);
+        Entry e = entries.computeIfAbsent(accountId, id -> new Entry());
+        synchronized (e) {
+            e.status = a.getStatus();
+            e.limits = own != null ? own : defaults;
+            e.loadedAt = System.nanoTime();
+            // A change made while we were loading may not be in what we read; use it once, reload next time.
+            // invalidate() bumps the stamp before marking the entry, so either way it ends up stale
+            e.stale = entries.stamp(accountId) != stamp;
+        }
+        return e;
+    }
+
+    // Rolling totals from the ledger rows of the last 24 hours, so limits hold across restarts
+    private void seed(int accountId, Entry e) throws SQLException {
+        e.withdrawals = new SlidingWindow(DAY_MILLIS, 24);
+        e.transfers = new SlidingWindow(DAY_MILLIS, 24);
+        e.debits = new SlidingWindow(MINUTE_MILLIS, 12);
+        LocalDateTime to = LocalDateTime.now().plusSeconds(1);
+        for (Transaction t : transactions.findRange(accountId, to.minusDays(1), to)) {
+            if (t.getSignedAmount() >= 0 || t.getTimestamp() == null) continue;
+            long at = t.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if ("Withdraw".equals(t.getType())) e.withdrawals.add(at, t.getAmount());
+            else e.transfers.add(at, t.getAmount());
+            e.debits.add(at, 1);
+        }
+    }
+
+    private static void requireActive(int accountId, Entry e) throws PolicyViolationException {
+        if (!"ACTIVE".equals(e.status)) throw reject("Account " + accountId + " is " + e.status);
+    }
+
+    private static PolicyViolationException reject(String message) {
+        REJECTIONS.increment();
+        return new PolicyViolationException(message);
+    }
+
+    private static final class Entry {
+        String status;
+        AccountLimits limits;
+        long loadedAt;
+        boolean stale;
+        // Null until the account has a limit to enforce
+        SlidingWindow withdrawals;
+        SlidingWindow transfers;
+        SlidingWindow debits;
+
+        void dropTotals() {
+            withdrawals = null;
+            transfers = null;
+            debits = null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package banking.services;
+
+import banking.metrics.Metrics;
+import banking.models.LedgerReceipt;
+import banking.models.Page;
+import banking.models.Transaction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * CompletableFuture facade over BankService. Each call runs on its own virtual thread, so tens of
+ * thousands can be in flight without an OS thread each; at most maxConcurrency of them are inside
+ * BankService at once and the rest wait, parked cheaply, on a fair semaphore. The default limit is
+ * -Dbank.async.maxConcurrency, else the backend's parallelism (the connection pool size for MySQL),
+ * which also bounds how many carrier threads a JDBC driver that blocks inside synchronized code can pin.
+ * Futures fail with the same exceptions the blocking methods throw.
+ */
+public class AsyncBankService implements AutoCloseable {
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private final BankService service;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public AsyncBankService(BankService service) {
+        this(service, Integer.getInteger("bank.async.maxConcurrency", service.getBackend().getParallelism()));
+    }
+
+    public AsyncBankService(BankService service, int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("Concurrency limit must be positive");
+        this.service = service;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bank-async-", 0).factory());
+        Metrics.gauge("async.waiting", permits::getQueueLength);
+    }
+
+    public BankService getService() {
+        return service;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public CompletableFuture<Void> deposit(int accountId, long amount) {
+        return submit(() -> {
+            service.deposit(accountId, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> withdraw(int accountId, long amount) {
+        return submit(() -> {
+            service.withdraw(accountId, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> transfer(int fromAccountId, int toAccountId, long amount) {
+        return submit(() -> {
+            service.transfer(fromAccountId, toAccountId, amount);
+            return null;
+        });
+    }
+
+    // Idempotent variants; see BankService.deposit(int, long, String)
+    public CompletableFuture<LedgerReceipt> deposit(int accountId, long amount, String idempotencyKey) {
+        return submit(() -> service.deposit(accountId, amount, idempotencyKey));
+    }
+
+    public CompletableFuture<LedgerReceipt> withdraw(int accountId, long amount, String idempotencyKey) {
+        return submit(() -> service.withdraw(accountId, amount, idempotencyKey));
+    }
+
+    public CompletableFuture<LedgerReceipt> transfer(int fromAccountId, int toAccountId, long amount, String idempotencyKey) {
+        return submit(() -> service.transfer(fromAccountId, toAccountId, amount, idempotencyKey));
+    }
+
+    public CompletableFuture<Long> getBalance(int accountId) {
+        return submit(() -> service.getBalance(accountId));
+    }
+
+    public CompletableFuture<Page<Transaction>> getTransactionsPage(int accountId, Transaction after, int limit) {
+        return submit(() -> service.getTransactionsPage(accountId, after, limit));
+    }
+
+    // Stops accepting calls and waits for those already submitted to finish.
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+}
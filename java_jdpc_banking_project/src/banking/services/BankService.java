@@ -1,105 +1,438 @@
 package banking.services;
 
-import banking.dao.AccountDAO;
-import banking.dao.TransactionDAO;
+import banking.dao.AccountRepository;
+import banking.dao.AccountSort;
+import banking.dao.LedgerEngine;
+import banking.dao.StorageBackend;
+import banking.dao.TransactionRepository;
+import banking.events.EventRelay;
 import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.InvalidInputException;
+import banking.exceptions.PolicyViolationException;
+import banking.metrics.Counter;
+import banking.metrics.Histogram;
+import banking.metrics.Metrics;
 import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.AccountStatement;
+import banking.models.LedgerReceipt;
+import banking.models.Page;
 import banking.models.Transaction;
+import banking.models.TransferInstruction;
+import banking.models.TransferResult;
+import banking.utils.ExportWriter;
+import banking.utils.Money;
+import banking.utils.PasswordUtil;
 
-import java.sql.Connection;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
-import banking.dao.DatabaseConnection;
+public class BankService implements Closeable {
+    private static final Histogram LOGIN = Metrics.histogram("bank.login");
+    private static final Histogram DEPOSIT = Metrics.histogram("bank.deposit");
+    private static final Histogram WITHDRAW = Metrics.histogram("bank.withdraw");
+    private static final Histogram TRANSFER = Metrics.histogram("bank.transfer");
+    private static final Histogram BALANCE = Metrics.histogram("bank.getBalance");
+    private static final Histogram HISTORY_PAGE = Metrics.histogram("bank.historyPage");
+    private static final Histogram STATEMENT = Metrics.histogram("bank.statement");
+    private static final Counter INSUFFICIENT_FUNDS = Metrics.counter("bank.insufficientFunds");
+    private static final Counter ERRORS = Metrics.counter("bank.errors");
+    private static final Counter REPLAYS = Metrics.counter("bank.idempotentReplays");
+    private static final long RECEIPT_TTL_MILLIS = Long.getLong("bank.idempotency.ttlMs", 86_400_000);
+    private static final Set<String> STATUSES = Set.of("ACTIVE", "FROZEN", "CLOSED");
 
-public class BankService {
-    private AccountDAO accountDAO = new AccountDAO();
-    private TransactionDAO transactionDAO = new TransactionDAO();
+    private final StorageBackend backend;
+    private final boolean ownsBackend;
+    private final AccountRepository accounts;
+    private final TransactionRepository transactions;
+    private final LedgerEngine ledger;
+    private final StatementGenerator statements;
+    private final AccountPolicyEngine policies;
+    private final EventRelay events;
+    private final CredentialVerifier credentials = new CredentialVerifier();
+    private final ReceiptCache receipts = new ReceiptCache(Integer.getInteger("bank.idempotency.cacheSize", 100_000), RECEIPT_TTL_MILLIS);
+
+    // The configured backend without an event relay, closed with this service; see fromConfig
+    public BankService() {
+        this(StorageBackend.fromConfig(), null, true);
+    }
+
+    public BankService(StorageBackend backend) {
+        this(backend, null);
+    }
+
+    // events relays backend's outbox and is closed with this service; null for none. Only one relay per outbox
+    // publishes at a time, so a process wants one per backend, not one per service.
+    public BankService(StorageBackend backend, EventRelay events) {
+        this(backend, events, false);
+    }
+
+    private BankService(StorageBackend backend, EventRelay events, boolean ownsBackend) {
+        this.backend = backend;
+        this.ownsBackend = ownsBackend;
+        this.accounts = backend.getAccounts();
+        this.transactions = backend.getTransactions();
+        this.ledger = backend.getLedger();
+        this.statements = new StatementGenerator(accounts, transactions);
+        this.policies = new AccountPolicyEngine(accounts, transactions);
+        this.events = events;
+    }
+
+    // The configured backend, closed with this service, with an EventRelay over its outbox when bank.events.dir is set
+    public static BankService fromConfig() {
+        StorageBackend backend = StorageBackend.fromConfig();
+        try {
+            return new BankService(backend, EventRelay.fromConfig(backend.getOutbox()), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event log in " + System.getProperty("bank.events.dir"), e);
+        }
+    }
+
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    // Stream of committed ledger rows, or null if this service was given no relay; see EventRelay
+    public EventRelay getEvents() {
+        return events;
+    }
+
+    // Stops the event relay, if any, then closes the backend if this service opened it (BankService() and fromConfig)
+    @Override
+    public void close() throws IOException {
+        try {
+            if (events != null) events.close();
+        } finally {
+            if (ownsBackend) backend.close();
+        }
+    }
 
     public int createAccount(Account account) throws SQLException {
-        return accountDAO.createAccount(account);
+        return accounts.createAccount(account);
     }
 
+    // Checks the plain-text password; legacy or under-strength hashes are upgraded on a successful login.
     public Account login(int accountId, String password) throws SQLException {
-        return accountDAO.findByCredentials(accountId, password);
+        long t0 = Metrics.start();
+        try {
+            Account acc = accounts.findById(accountId);
+            if (acc == null || !credentials.verify(accountId, password, acc.getPassword())) return null;
+            if (PasswordUtil.needsRehash(acc.getPassword())) {
+                String hash = PasswordUtil.hash(password);
+                accounts.updatePassword(accountId, hash);
+                credentials.remember(accountId, password, hash);
+                acc.setPassword(hash);
+            }
+            return acc;
+        } catch (SQLException | RuntimeException e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            LOGIN.recordSince(t0);
+        }
+    }
+
+    public void deposit(int accountId, long amount) throws SQLException, InvalidInputException {
+        deposit(accountId, amount, null);
+    }
+
+    public void withdraw(int accountId, long amount) throws SQLException, InsufficientFundsException, InvalidInputException {
+        withdraw(accountId, amount, null);
+    }
+
+    public void transfer(int fromAccountId, int toAccountId, long amount) throws SQLException, InsufficientFundsException, InvalidInputException {
+        transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    /**
+     * Idempotent deposit: repeating a call with the same key (per account, for at least bank.idempotency.ttlMs)
+     * applies it once and returns the first call's receipt, marked replayed, even if the account has since been
+     * frozen or has reached a limit. Reusing a key for a different request is rejected. A failed call stores
+     * nothing, so it can simply be retried. A null key makes this an ordinary deposit that returns null.
+     */
+    public LedgerReceipt deposit(int accountId, long amount, String idempotencyKey) throws SQLException, InvalidInputException {
+        requirePositive(amount);
+        LedgerReceipt earlier = earlierReceipt(accountId, idempotencyKey, "Deposit", 0, amount);
+        if (earlier != null) return earlier;
+        long t0 = Metrics.start();
+        try {
+            policies.checkCredit(accountId);
+            return remember(ledger.deposit(accountId, amount, idempotencyKey), "Deposit", 0, amount);
+        } catch (SQLException | RuntimeException e) {
+            ERRORS.increment();
+            throw e;
+        } finally {
+            DEPOSIT.recordSince(t0);
+        }
+    }
+
+    // Idempotent withdrawal; see deposit(int, long, String)
+    public LedgerReceipt withdraw(int accountId, long amount, String idempotencyKey) throws SQLException, InsufficientFundsException, InvalidInputException {
+        requirePositive(amount);
+        LedgerReceipt earlier = earlierReceipt(accountId, idempotencyKey, "Withdraw", 0, amount);
+        if (earlier != null) return earlier;
+        long t0 = Metrics.start();
+        AccountPolicyEngine.Debit debit = null;
+        try {
+            debit = policies.admitDebit(accountId, false, amount);
+            LedgerReceipt r = ledger.withdraw(accountId, amount, idempotencyKey);
+            if (r != null && r.isReplayed()) policies.cancel(debit);
+            return remember(r, "Withdraw", 0, amount);
+        } catch (InsufficientFundsException e) {
+            policies.cancel(debit);
+            INSUFFICIENT_FUNDS.increment();
+            throw e;
+        } catch (PolicyViolationException e) {
+            policies.cancel(debit);
+            throw e;
+        } catch (SQLException | RuntimeException e) {
+            policies.cancel(debit);
+            ERRORS.increment();
+            throw e;
+        } finally {
+            WITHDRAW.recordSince(t0);
+        }
+    }
+
+    // Idempotent transfer, keyed on the paying account; see deposit(int, long, String)
+    public LedgerReceipt transfer(int fromAccountId, int toAccountId, long amount, String idempotencyKey) throws SQLException, InsufficientFundsException, InvalidInputException {
+        requirePositive(amount);
+        if (fromAccountId == toAccountId) throw new InvalidInputException("Cannot transfer to the same account");
+        LedgerReceipt earlier = earlierReceipt(fromAccountId, idempotencyKey, "Transfer", toAccountId, amount);
+        if (earlier != null) return earlier;
+        long t0 = Metrics.start();
+        AccountPolicyEngine.Debit debit = null;
+        try {
+            policies.checkCredit(toAccountId);
+            debit = policies.admitDebit(fromAccountId, true, amount);
+            LedgerReceipt r = ledger.transfer(fromAccountId, toAccountId, amount, idempotencyKey);
+            if (r != null && r.isReplayed()) policies.cancel(debit);
+            return remember(r, "Transfer", toAccountId, amount);
+        } catch (InsufficientFundsException e) {
+            policies.cancel(debit);
+            INSUFFICIENT_FUNDS.increment();
+            throw e;
+        } catch (PolicyViolationException e) {
+            policies.cancel(debit);
+            throw e;
+        } catch (SQLException | RuntimeException e) {
+            policies.cancel(debit);
+            ERRORS.increment();
+            throw e;
+        } finally {
+            TRANSFER.recordSince(t0);
+        }
+    }
+
+    // ACTIVE, FROZEN or CLOSED; only ACTIVE accounts take part in deposits, withdrawals and transfers
+    public void setAccountStatus(int accountId, String status) throws SQLException, InvalidInputException {
+        if (status == null || !STATUSES.contains(status)) throw new InvalidInputException("Status must be ACTIVE, FROZEN or CLOSED");
+        try {
+            accounts.updateStatus(accountId, status);
+        } finally {
+            policies.invalidate(accountId);
+        }
     }
 
-    public void deposit(int accountId, double amount) throws SQLException {
-        Connection conn = null;
+    // Gives the account limits of its own; null returns it to the defaults (bank.policy.*)
+    public void setAccountLimits(int accountId, AccountLimits limits) throws SQLException {
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-            Account acc = accountDAO.findById(accountId);
-            double newBal = acc.getBalance() + amount;
-            accountDAO.updateBalance(accountId, newBal);
-            transactionDAO.insertTransaction(new Transaction(accountId, "Deposit", amount, "Deposit via CLI"));
-            conn.commit();
-        } catch (SQLException ex) {
-            if (conn != null) try { conn.rollback(); } catch (SQLException e) {}
-            throw ex;
+            accounts.updateLimits(accountId, limits);
         } finally {
-            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+            policies.invalidate(accountId);
         }
     }
 
-    public void withdraw(int accountId, double amount) throws SQLException, InsufficientFundsException {
-        Connection conn = null;
+    // The limits enforced for the account, its own or the defaults
+    public AccountLimits getAccountLimits(int accountId) throws SQLException {
+        return policies.limits(accountId);
+    }
+
+    // What an earlier call with this key did, or null if no such call committed (or its receipt has expired)
+    public LedgerReceipt findReceipt(int accountId, String idempotencyKey) throws SQLException, InvalidInputException {
+        requireKey(idempotencyKey);
+        LedgerReceipt r = receipts.get(accountId, idempotencyKey);
+        return r != null ? r : ledger.findReceipt(accountId, idempotencyKey);
+    }
+
+    // Drops stored receipts older than bank.idempotency.ttlMs; returns how many
+    public int purgeExpiredReceipts() throws SQLException {
+        return ledger.purgeReceipts(LocalDateTime.now().minus(RECEIPT_TTL_MILLIS, ChronoUnit.MILLIS));
+    }
+
+    // Validates every instruction first, then runs them in parallel; results come back in input order.
+    public List<TransferResult> executeBatch(List<TransferInstruction> instructions) {
+        return new BatchTransferExecutor(this, backend.getParallelism()).execute(instructions);
+    }
+
+    // Balance in minor units (see Money)
+    public long getBalance(int accountId) throws SQLException {
+        long t0 = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-            Account acc = accountDAO.findById(accountId);
-            if (acc.getBalance() < amount) throw new InsufficientFundsException("Insufficient balance");
-            double newBal = acc.getBalance() - amount;
-            accountDAO.updateBalance(accountId, newBal);
-            transactionDAO.insertTransaction(new Transaction(accountId, "Withdraw", amount, "Withdrawal via CLI"));
-            conn.commit();
-        } catch (SQLException | InsufficientFundsException ex) {
-            if (conn != null) try { conn.rollback(); } catch (SQLException e) {}
-            throw ex;
+            Account acc = accounts.findById(accountId);
+            return acc != null ? acc.getBalance() : 0;
         } finally {
-            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+            BALANCE.recordSince(t0);
         }
     }
 
-    public void transfer(int fromAccountId, int toAccountId, double amount) throws SQLException, InsufficientFundsException {
-        Connection conn = null;
+    public List<Transaction> getTransactions(int accountId) throws SQLException {
+        return transactions.findByAccountId(accountId);
+    }
+
+    public Page<Transaction> getTransactionsPage(int accountId, Transaction after, int limit) throws SQLException {
+        long t0 = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
+            return transactions.findPage(accountId, after, limit);
+        } finally {
+            HISTORY_PAGE.recordSince(t0);
+        }
+    }
+
+    public long forEachTransaction(int accountId, Consumer<Transaction> consumer) throws SQLException {
+        return transactions.streamByAccountId(accountId, consumer);
+    }
+
+    public Account findAccount(int accountId) throws SQLException {
+        return accounts.findById(accountId);
+    }
+
+    public Account findAccountByEmail(String email) throws SQLException {
+        return accounts.findByEmail(email);
+    }
+
+    public List<Account> findAccountsByPhone(String phone) throws SQLException {
+        return accounts.findByPhone(phone);
+    }
 
-            Account from = accountDAO.findById(fromAccountId);
-            Account to = accountDAO.findById(toAccountId);
-            if (from == null || to == null) throw new SQLException("Account not found");
-            if (from.getBalance() < amount) throw new InsufficientFundsException("Insufficient balance for transfer");
+    public List<Account> searchAccountsByName(String prefix, int limit) throws SQLException {
+        return accounts.searchByNamePrefix(prefix, limit);
+    }
+
+    public Page<Account> listAccounts(AccountSort sort, Account after, int limit) throws SQLException {
+        return accounts.findPage(sort, after, limit);
+    }
 
-            double newFrom = from.getBalance() - amount;
-            double newTo = to.getBalance() + amount;
+    // Streams every account (without password hashes) to out; returns the number of rows written.
+    public long exportAccounts(Writer out, ExportWriter.Format format) throws SQLException, IOException {
+        try (ExportWriter w = new ExportWriter(out, format, "account_id", "name", "email", "phone", "balance", "created_at", "status")) {
+            return accounts.streamAll(a -> {
+                try {
+                    w.writeRow(a.getAccountId(), a.getName(), a.getEmail(), a.getPhone(), Money.toDecimal(a.getBalance()), a.getCreatedAt(), a.getStatus());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            accountDAO.updateBalance(fromAccountId, newFrom);
-            accountDAO.updateBalance(toAccountId, newTo);
+    public long exportTransactions(Writer out, ExportWriter.Format format) throws SQLException, IOException {
+        try (ExportWriter w = new ExportWriter(out, format, "transaction_id", "account_id", "type", "amount", "timestamp", "remarks", "balance_after")) {
+            return transactions.streamAll(t -> {
+                try {
+                    w.writeRow(t.getTransactionId(), t.getAccountId(), t.getType(), Money.toDecimal(t.getAmount()), t.getTimestamp(), t.getRemarks(), Money.toDecimal(t.getBalanceAfter()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            transactionDAO.insertTransaction(new Transaction(fromAccountId, "Transfer", amount, "Transfer to account " + toAccountId));
-            transactionDAO.insertTransaction(new Transaction(toAccountId, "Transfer", amount, "Transfer from account " + fromAccountId));
+    // Balance after every transaction strictly before time, in minor units
+    public long getBalanceAt(int accountId, LocalDateTime time) throws SQLException {
+        return statements.balanceAt(accountId, time);
+    }
 
-            conn.commit();
-        } catch (SQLException | InsufficientFundsException ex) {
-            if (conn != null) try { conn.rollback(); } catch (SQLException e) {}
-            throw ex;
+    public AccountStatement getMonthlyStatement(int accountId, YearMonth month) throws SQLException {
+        long t0 = Metrics.start();
+        try {
+            return statements.statement(accountId, month);
         } finally {
-            if (conn != null) try { conn.setAutoCommit(true); conn.close(); } catch (SQLException e) {}
+            STATEMENT.recordSince(t0);
         }
     }
 
-    public double getBalance(int accountId) throws SQLException {
-        Account acc = accountDAO.findById(accountId);
-        return acc != null ? acc.getBalance() : 0;
+    // Month-end run: every account's statement, built in parallel; sink must be thread-safe.
+    public long generateStatements(YearMonth month, Consumer<AccountStatement> sink) throws SQLException {
+        return statements.statements(month, backend.getParallelism(), sink);
     }
 
-    public List<Transaction> getTransactions(int accountId) throws SQLException {
-        return transactionDAO.findByAccountId(accountId);
+    // Writes one summary row per account for month; returns the number of rows.
+    public long exportStatements(YearMonth month, Writer out, ExportWriter.Format format) throws SQLException, IOException {
+        try (ExportWriter w = new ExportWriter(out, format, "account_id", "period", "opening_balance", "credits", "debits", "closing_balance", "transactions")) {
+            return generateStatements(month, st -> {
+                try {
+                    synchronized (w) {
+                        w.writeRow(st.getAccountId(), st.getPeriod(), Money.toDecimal(st.getOpeningBalance()), Money.toDecimal(st.getTotalCredits()),
+                                Money.toDecimal(st.getTotalDebits()), Money.toDecimal(st.getClosingBalance()), st.getTransactions().size());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     public List<Account> getAllAccounts() throws SQLException {
-        return accountDAO.findAll();
+        return accounts.findAll();
+    }
+
+    // Looked up before any policy check: a call that already committed is answered with its receipt, whatever
+    // the account's status or limits are now
+    private LedgerReceipt earlierReceipt(int accountId, String key, String operation, int counterpartyId, long amount)
+            throws SQLException, InvalidInputException {
+        if (key == null) return null;
+        requireKey(key);
+        LedgerReceipt r = receipts.get(accountId, key);
+        if (r == null) {
+            r = ledger.findReceipt(accountId, key);
+            if (r == null) return null;
+            receipts.put(r);
+        }
+        checkSameRequest(r, operation, counterpartyId, amount);
+        REPLAYS.increment();
+        return r;
+    }
+
+    private LedgerReceipt remember(LedgerReceipt r, String operation, int counterpartyId, long amount) throws InvalidInputException {
+        if (r == null) return null;
+        receipts.put(r);
+        checkSameRequest(r, operation, counterpartyId, amount);
+        if (r.isReplayed()) REPLAYS.increment();
+        return r;
+    }
+
+    private static void checkSameRequest(LedgerReceipt r, String operation, int counterpartyId, long amount) throws InvalidInputException {
+        if (!r.matches(operation, counterpartyId, amount)) {
+            throw new InvalidInputException("Idempotency key " + r.getIdempotencyKey() + " was already used for a different request");
+        }
+    }
+
+    // 1-64 printable ASCII characters without spaces, e.g. a UUID
+    private static void requireKey(String key) throws InvalidInputException {
+        if (key == null || key.isEmpty() || key.length() > 64) throw new InvalidInputException("Idempotency key must be 1-64 characters");
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c > '~') throw new InvalidInputException("Idempotency key must be printable ASCII without spaces");
+        }
+    }
+
+    private static void requirePositive(long amount) throws InvalidInputException {
+        if (amount <= 0) throw new InvalidInputException("Amount must be positive");
     }
 }
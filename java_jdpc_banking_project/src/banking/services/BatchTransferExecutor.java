@@ -0,0 +1,133 @@
+package banking.services;
+
+import banking.exceptions.InsufficientFundsException;
+import banking.exceptions.InvalidInputException;
+import banking.exceptions.PolicyViolationException;
+import banking.models.LedgerReceipt;
+import banking.models.TransferInstruction;
+import banking.models.TransferResult;
+import banking.models.TransferResult.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of transfers on a bounded pool. Instructions that share an account (directly or
+ * through a chain of other instructions) form one group and run sequentially in input order, so
+ * they never wait on each other's row locks; independent groups run in parallel.
+ */
+class BatchTransferExecutor {
+    private final BankService service;
+    private final int parallelism;
+
+    BatchTransferExecutor(BankService service, int parallelism) {
+        this.service = service;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    List<TransferResult> execute(List<TransferInstruction> instructions) {
+        TransferResult[] results = new TransferResult[instructions.size()];
+        Map<Integer, Integer> parent = new HashMap<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TransferInstruction in = instructions.get(i);
+            String problem = validate(in);
+            if (problem != null) {
+                results[i] = new TransferResult(i, in, Status.INVALID, problem);
+            } else {
+                union(parent, in.getFromAccountId(), in.getToAccountId());
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (results[i] != null) continue;
+            int root = find(parent, instructions.get(i).getFromAccountId());
+            groups.computeIfAbsent(root, k -> new ArrayList<>()).add(i);
+        }
+        if (groups.isEmpty()) return Arrays.asList(results);
+
+        // Longest groups first so one big chain doesn't start last and stretch the whole run
+        List<List<Integer>> ordered = new ArrayList<>(groups.values());
+        ordered.sort((a, b) -> Integer.compare(b.size(), a.size()));
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, ordered.size()), r -> {
+            Thread t = new Thread(r, "batch-transfer-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (List<Integer> group : ordered) {
+            pool.execute(() -> {
+                for (int i : group) {
+                    results[i] = run(i, instructions.get(i));
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) results[i] = new TransferResult(i, instructions.get(i), Status.FAILED, "Batch interrupted");
+        }
+        return Arrays.asList(results);
+    }
+
+    private TransferResult run(int index, TransferInstruction in) {
+        try {
+            LedgerReceipt receipt = service.transfer(in.getFromAccountId(), in.getToAccountId(), in.getAmount(), in.getIdempotencyKey());
+            if (receipt != null && receipt.isReplayed()) return new TransferResult(index, in, Status.ALREADY_APPLIED, "Already applied");
+            return new TransferResult(index, in, Status.SUCCESS, null);
+        } catch (InsufficientFundsException e) {
+            return new TransferResult(index, in, Status.INSUFFICIENT_FUNDS, e.getMessage());
+        } catch (PolicyViolationException e) {
+            return new TransferResult(index, in, Status.REJECTED, e.getMessage());
+        } catch (InvalidInputException e) {
+            return new TransferResult(index, in, Status.INVALID, e.getMessage());
+        } catch (Exception e) {
+            return new TransferResult(index, in, Status.FAILED, e.getMessage());
+        }
+    }
+
+    private static String validate(TransferInstruction in) {
+        if (in == null) return "Missing instruction";
+        if (in.getFromAccountId() <= 0 || in.getToAccountId() <= 0) return "Invalid account number";
+        if (in.getFromAccountId() == in.getToAccountId()) return "Cannot transfer to the same account";
+        if (in.getAmount() <= 0) return "Amount must be positive";
+        return null;
+    }
+
+    private static int find(Map<Integer, Integer> parent, int x) {
+        int root = x;
+        Integer p;
+        while ((p = parent.get(root)) != null && p != root) root = p;
+        // Path compression
+        while (x != root) {
+            int next = parent.get(x);
+            parent.put(x, root);
+            x = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Integer, Integer> parent, int a, int b) {
+        parent.putIfAbsent(a, a);
+        parent.putIfAbsent(b, b);
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) parent.put(ra, rb);
+    }
+}
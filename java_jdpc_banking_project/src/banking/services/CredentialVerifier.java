@@ -0,0 +1,82 @@
+package banking.services;
+
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.utils.PasswordUtil;
+import banking.utils.SegmentedLruCache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Checks passwords against stored hashes, remembering recent successes so a customer who logs in again
+ * within bank.auth.cacheTtlMs (default 5 minutes) skips the deliberately slow PBKDF2 step. Entries hold a
+ * SHA-256 of the password keyed with a per-process random secret, never the password, and are tied to the
+ * stored hash they were checked against, so a password change invalidates them. At most bank.auth.cacheSize
+ * entries (default 10000) are kept, least recently used evicted first.
+ */
+class CredentialVerifier {
+    private static final Counter CACHE_HITS = Metrics.counter("auth.cacheHits");
+    private static final Counter SLOW_VERIFIES = Metrics.counter("auth.slowVerifies");
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final byte[] secret = new byte[32];
+    private final SegmentedLruCache<Integer, Entry> verified;
+
+    CredentialVerifier() {
+        this(Integer.getInteger("bank.auth.cacheSize", 10_000), Long.getLong("bank.auth.cacheTtlMs", 300_000));
+    }
+
+    CredentialVerifier(int maxSize, long ttlMillis) {
+        new SecureRandom().nextBytes(secret);
+        this.verified = new SegmentedLruCache<>(maxSize, ttlMillis);
+    }
+
+    boolean verify(int accountId, String password, String storedHash) {
+        if (password == null || storedHash == null) return false;
+        byte[] fingerprint = fingerprint(password);
+        Entry e = verified.get(accountId);
+        if (e != null && e.storedHash.equals(storedHash) && MessageDigest.isEqual(e.fingerprint, fingerprint)) {
+            CACHE_HITS.increment();
+            return true;
+        }
+        SLOW_VERIFIES.increment();
+        if (!PasswordUtil.verify(password, storedHash)) return false;
+        remember(accountId, fingerprint, storedHash);
+        return true;
+    }
+
+    // Records a known-good password for a freshly written hash (e.g. after an upgrade)
+    void remember(int accountId, String password, String storedHash) {
+        remember(accountId, fingerprint(password), storedHash);
+    }
+
+    private void remember(int accountId, byte[] fingerprint, String storedHash) {
+        verified.put(accountId, new Entry(storedHash, fingerprint));
+    }
+
+    private byte[] fingerprint(String password) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(secret);
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Entry {
+        final String storedHash;
+        final byte[] fingerprint;
+
+        Entry(String storedHash, byte[] fingerprint) {
+            this.storedHash = storedHash;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package banking.services;
+
+import banking.models.LedgerReceipt;
+import banking.utils.SegmentedLruCache;
+
+/**
+ * In-process front of the ledger's receipt store: a retried request whose receipt is here is answered
+ * without touching storage. Bounded by bank.idempotency.cacheSize (default 100000, least recently used
+ * evicted) and bank.idempotency.ttlMs (default 24 hours); a miss falls through to the ledger, which
+ * remains the authority.
+ */
+class ReceiptCache {
+    private final SegmentedLruCache<String, LedgerReceipt> cache;
+
+    ReceiptCache(int maxSize, long ttlMillis) {
+        this.cache = new SegmentedLruCache<>(maxSize, ttlMillis);
+    }
+
+    LedgerReceipt get(int accountId, String key) {
+        return cache.get(accountId + ":" + key);
+    }
+
+    void put(LedgerReceipt r) {
+        cache.put(r.getAccountId() + ":" + r.getIdempotencyKey(), r.asReplay());
+    }
+}
@@ -0,0 +1,38 @@
+package banking.services;
+
+/**
+ * Total of the amounts added over a rolling window, kept in a ring of fixed buckets; the window moves
+ * one bucket at a time, so a total may include up to one bucket more than the window. Not thread-safe.
+ */
+final class SlidingWindow {
+    private final long bucketMillis;
+    private final long[] sums;
+    private final long[] epochs; // time / bucketMillis of the bucket each slot holds
+
+    SlidingWindow(long windowMillis, int buckets) {
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.sums = new long[buckets];
+        this.epochs = new long[buckets];
+    }
+
+    // Adds amount (negative to take back an earlier add) to the bucket of time atMillis, unless that bucket has left the window
+    void add(long atMillis, long amount) {
+        long epoch = atMillis / bucketMillis;
+        int slot = (int) Math.floorMod(epoch, (long) sums.length);
+        if (epochs[slot] > epoch) return;
+        if (epochs[slot] < epoch) {
+            epochs[slot] = epoch;
+            sums[slot] = 0;
+        }
+        sums[slot] += amount;
+    }
+
+    long sum(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - sums.length;
+        long total = 0;
+        for (int i = 0; i < sums.length; i++) {
+            if (epochs[i] > oldest) total += sums[i];
+        }
+        return total;
+    }
+}
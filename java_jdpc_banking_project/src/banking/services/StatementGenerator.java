@@ -0,0 +1,117 @@
+package banking.services;
+
+import banking.dao.AccountRepository;
+import banking.dao.TransactionRepository;
+import banking.models.Account;
+import banking.models.AccountStatement;
+import banking.models.Transaction;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Balances as of a point in time and monthly statements, read from the running balance (balance_after)
+ * stored on every ledger row instead of replaying history: a balance is one row seek and a statement
+ * one range scan over the ledger's (account_id, timestamp) key.
+ */
+class StatementGenerator {
+    private final AccountRepository accounts;
+    private final TransactionRepository transactions;
+
+    StatementGenerator(AccountRepository accounts, TransactionRepository transactions) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+    }
+
+    // Balance after every transaction strictly before time
+    long balanceAt(int accountId, LocalDateTime time) throws SQLException {
+        Transaction last = transactions.findLastBefore(accountId, time);
+        if (last != null) return last.getBalanceAfter();
+        Account acc = accounts.findById(accountId);
+        if (acc == null) throw new SQLException("Account not found");
+        if (acc.getCreatedAt() != null && !acc.getCreatedAt().isBefore(time)) return 0;
+        // No activity yet at time: the opening balance, i.e. the balance before the first later row
+        Transaction next = transactions.findFirstFrom(accountId, time);
+        return next != null ? balanceBefore(next) : acc.getBalance();
+    }
+
+    AccountStatement statement(int accountId, YearMonth month) throws SQLException {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        List<Transaction> rows = transactions.findRange(accountId, from, to);
+        if (rows.isEmpty()) {
+            return new AccountStatement(accountId, month, balanceAt(accountId, from), balanceAt(accountId, to), 0, 0, rows);
+        }
+        long credits = 0;
+        long debits = 0;
+        for (Transaction t : rows) {
+            long signed = t.getSignedAmount();
+            if (signed >= 0) credits += signed;
+            else debits -= signed;
+        }
+        return new AccountStatement(accountId, month, balanceBefore(rows.get(0)),
+                rows.get(rows.size() - 1).getBalanceAfter(), credits, debits, rows);
+    }
+
+    /**
+     * Builds every account's statement for month on parallelism threads and hands each to sink, which
+     * must be thread-safe. Stops at the first failure and rethrows it; returns the number of statements.
+     */
+    long statements(YearMonth month, int parallelism, Consumer<AccountStatement> sink) throws SQLException {
+        int[][] ids = {new int[1024]};
+        int[] count = {0};
+        accounts.streamAll(a -> {
+            if (count[0] == ids[0].length) ids[0] = Arrays.copyOf(ids[0], count[0] * 2);
+            ids[0][count[0]++] = a.getAccountId();
+        });
+        int total = count[0];
+        int[] all = ids[0];
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicInteger threadNo = new AtomicInteger();
+        int threads = Math.max(1, Math.min(parallelism, total));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "statement-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int w = 0; w < threads; w++) {
+            pool.execute(() -> {
+                int i;
+                while (failure.get() == null && (i = next.getAndIncrement()) < total) {
+                    try {
+                        sink.accept(statement(all[i], month));
+                    } catch (SQLException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while generating statements", e);
+        }
+        Exception e = failure.get();
+        if (e instanceof SQLException) throw (SQLException) e;
+        if (e != null) throw (RuntimeException) e;
+        return total;
+    }
+
+    private static long balanceBefore(Transaction t) {
+        return t.getBalanceAfter() - t.getSignedAmount();
+    }
+}
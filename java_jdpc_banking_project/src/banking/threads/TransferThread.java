@@ -1,30 +1,44 @@
 package banking.threads;
 
 import banking.exceptions.InsufficientFundsException;
-import banking.services.BankService;
+import banking.services.AsyncBankService;
+import banking.utils.Money;
 
-public class TransferThread extends Thread {
-    private BankService service;
-    private int from;
-    private int to;
-    private double amount;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-    public TransferThread(BankService service, int from, int to, double amount) {
+// One transfer submitted through AsyncBankService, printing its outcome; no thread of its own any more.
+public class TransferThread {
+    private final AsyncBankService service;
+    private final int from;
+    private final int to;
+    private final long amount;
+    private CompletableFuture<Void> result;
+
+    public TransferThread(AsyncBankService service, int from, int to, long amount) {
         this.service = service;
         this.from = from;
         this.to = to;
         this.amount = amount;
     }
 
-    @Override
-    public void run() {
-        try {
-            service.transfer(from, to, amount);
-            System.out.println("Transfer successful: " + amount + " from " + from + " to " + to);
-        } catch (InsufficientFundsException e) {
-            System.out.println("Transfer failed (insufficient funds): " + e.getMessage());
-        } catch (Exception e) {
-            System.out.println("Transfer failed: " + e.getMessage());
-        }
+    // Submits the transfer and returns at once; the future completes after the outcome is printed.
+    public CompletableFuture<Void> start() {
+        result = service.transfer(from, to, amount).handle((ok, error) -> {
+            Throwable e = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (e == null) {
+                System.out.println("Transfer successful: " + Money.format(amount) + " from " + from + " to " + to);
+            } else if (e instanceof InsufficientFundsException) {
+                System.out.println("Transfer failed (insufficient funds): " + e.getMessage());
+            } else {
+                System.out.println("Transfer failed: " + e.getMessage());
+            }
+            return null;
+        });
+        return result;
+    }
+
+    public void join() {
+        if (result != null) result.join();
     }
 }
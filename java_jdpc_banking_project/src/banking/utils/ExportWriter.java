@@ -0,0 +1,102 @@
+package banking.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rows as CSV (with a header line) or as JSON lines, one row at a time, so exports run in
+ * constant memory. Numbers and booleans are written bare in JSON, everything else as a string.
+ */
+public class ExportWriter implements Closeable {
+    public enum Format { CSV, JSONL }
+
+    private final Writer out;
+    private final Format format;
+    private final String[] columns;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public ExportWriter(Writer out, Format format, String... columns) throws IOException {
+        this.out = out;
+        this.format = format;
+        this.columns = columns;
+        if (format == Format.CSV) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) line.append(',');
+                appendCsv(columns[i]);
+            }
+            flushLine();
+        }
+    }
+
+    public void writeRow(Object... values) throws IOException {
+        if (values.length != columns.length) throw new IllegalArgumentException("Expected " + columns.length + " values");
+        if (format == Format.CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) line.append(',');
+                if (values[i] != null) appendCsv(values[i].toString());
+            }
+        } else {
+            line.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) line.append(',');
+                appendJsonString(columns[i]);
+                line.append(':');
+                Object v = values[i];
+                if (v == null) line.append("null");
+                else if (v instanceof Number || v instanceof Boolean) line.append(v);
+                else appendJsonString(v.toString());
+            }
+            line.append('}');
+        }
+        flushLine();
+    }
+
+    private void flushLine() throws IOException {
+        line.append('\n');
+        out.append(line);
+        line.setLength(0);
+    }
+
+    private void appendCsv(String s) {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(s);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonString(String s) {
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
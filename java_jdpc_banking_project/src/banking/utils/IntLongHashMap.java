@@ -0,0 +1,101 @@
+package banking.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int -> long map without boxing. Key 0 is reserved as the empty-slot marker, which
+ * suits account ids (always positive). Not thread-safe; callers guard it with their own lock.
+ */
+public class IntLongHashMap {
+    public interface Visitor {
+        void visit(int key, long value);
+    }
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public boolean containsKey(int key) {
+        return key != 0 && keys[slot(key)] == key;
+    }
+
+    public long get(int key, long defaultValue) {
+        if (key == 0) return defaultValue;
+        int i = slot(key);
+        return keys[i] == key ? values[i] : defaultValue;
+    }
+
+    public void put(int key, long value) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+        int i = slot(key);
+        if (keys[i] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    // Linear probe: returns the slot holding key, or the empty slot where it would go.
+    private int slot(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    // Murmur3 finalizer; callers may already have partitioned keys on other hash bits, so every bit must mix
+    private static int mix(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "IntLongHashMap[size=" + size + ", capacity=" + keys.length + "]";
+    }
+}
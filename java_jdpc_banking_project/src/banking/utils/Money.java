@@ -0,0 +1,61 @@
+package banking.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Money is carried as a long count of minor units (1 = 0.01), so arithmetic is exact and allocation
+ * free. BigDecimal only appears at the JDBC boundary, where the columns are DECIMAL(19,2).
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    private static final long UNIT = 100;
+
+    private Money() {}
+
+    // Parses "1234", "1234.5" or "-0.05" exactly; more than two decimals is rejected rather than rounded.
+    public static long parse(String text) {
+        String s = text.trim();
+        if (s.isEmpty()) throw new NumberFormatException("Empty amount");
+        boolean negative = s.charAt(0) == '-';
+        int start = negative || s.charAt(0) == '+' ? 1 : 0;
+        int dot = s.indexOf('.');
+        int intEnd = dot < 0 ? s.length() : dot;
+        if (intEnd == start && (dot < 0 || dot == s.length() - 1)) throw new NumberFormatException("Invalid amount: " + text);
+
+        long units = 0;
+        for (int i = start; i < intEnd; i++) {
+            units = Math.addExact(Math.multiplyExact(units, 10), digit(s, i, text));
+        }
+        long fraction = 0;
+        if (dot >= 0) {
+            int decimals = s.length() - dot - 1;
+            if (decimals > SCALE) throw new NumberFormatException("At most " + SCALE + " decimal places allowed: " + text);
+            for (int i = dot + 1; i < s.length(); i++) fraction = fraction * 10 + digit(s, i, text);
+            for (int i = decimals; i < SCALE; i++) fraction *= 10;
+        }
+        long minor = Math.addExact(Math.multiplyExact(units, UNIT), fraction);
+        return negative ? -minor : minor;
+    }
+
+    public static String format(long minor) {
+        // The one value without a positive counterpart
+        if (minor == Long.MIN_VALUE) return toDecimal(minor).toPlainString();
+        long abs = Math.abs(minor);
+        long fraction = abs % UNIT;
+        return (minor < 0 ? "-" : "") + (abs / UNIT) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static long fromDecimal(BigDecimal value) {
+        return value == null ? 0 : value.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    private static int digit(String s, int i, String text) {
+        char c = s.charAt(i);
+        if (c < '0' || c > '9') throw new NumberFormatException("Invalid amount: " + text);
+        return c - '0';
+    }
+}
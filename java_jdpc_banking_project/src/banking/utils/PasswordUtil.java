@@ -1,19 +1,131 @@
 package banking.utils;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
+/**
+ * Password hashing. New hashes are salted PBKDF2-HMAC-SHA256, stored as "pbkdf2$iterations$salt$hash"
+ * (hex), with the iteration count set by -Dbank.auth.iterations (default 210000). A bare 64-character
+ * hex string is a legacy unsalted SHA-256 hash: verify still accepts it, and needsRehash reports it so
+ * callers can upgrade it after a successful login. Comparisons are constant-time.
+ */
 public class PasswordUtil {
+    public static final int ITERATIONS = Integer.getInteger("bank.auth.iterations", 210_000);
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // MessageDigest and SecretKeyFactory are not thread-safe but are costly to look up, so each thread keeps one
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return PREFIX + ITERATIONS + "$" + hex(salt) + "$" + hex(pbkdf2(password, salt, ITERATIONS));
+    }
+
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) return false;
+        if (!stored.startsWith(PREFIX)) return hexEquals(sha256Bytes(password), stored, 0);
+        int saltAt = stored.indexOf('$', PREFIX.length()) + 1;
+        int hashAt = stored.indexOf('$', saltAt) + 1;
+        if (saltAt == 0 || hashAt == 0) return false;
+        int iterations;
+        byte[] salt;
+        try {
+            iterations = Integer.parseInt(stored.substring(PREFIX.length(), saltAt - 1));
+            salt = unhex(stored, saltAt, hashAt - 1);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (iterations <= 0 || salt.length == 0) return false;
+        return hexEquals(pbkdf2(password, salt, iterations), stored, hashAt);
+    }
+
+    // True for legacy hashes and for PBKDF2 hashes made with fewer iterations than currently configured
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return true;
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // Legacy unsalted scheme; kept for existing hashes and tooling
     public static String sha256(String base) {
-        try{
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(base.getBytes("UTF-8"));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if(hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch(Exception ex){ throw new RuntimeException(ex); }
+        return hex(sha256Bytes(base));
+    }
+
+    public static byte[] sha256Bytes(String base) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest.digest(base.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return PBKDF2.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // Compares bytes with the lowercase hex text in s from offset to the end, without decoding it; the time
+    // taken does not depend on where they differ.
+    private static boolean hexEquals(byte[] bytes, String s, int offset) {
+        if (s.length() - offset != bytes.length * 2) return false;
+        int diff = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            diff |= s.charAt(offset + 2 * i) ^ HEX[(bytes[i] >> 4) & 0xf];
+            diff |= s.charAt(offset + 2 * i + 1) ^ HEX[bytes[i] & 0xf];
+        }
+        return diff == 0;
+    }
+
+    private static byte[] unhex(String s, int from, int to) {
+        if (to < from || ((to - from) & 1) != 0) throw new IllegalArgumentException("Bad hex length");
+        byte[] out = new byte[(to - from) / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(s.charAt(from + 2 * i), 16);
+            int lo = Character.digit(s.charAt(from + 2 * i + 1), 16);
+            if (hi < 0 || lo < 0) throw new IllegalArgumentException("Bad hex digit");
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
     }
 }
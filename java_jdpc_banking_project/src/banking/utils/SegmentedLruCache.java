@@ -0,0 +1,162 @@
+package banking.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded map with LRU eviction and an optional TTL, for the in-process caches in front of storage. The key
+ * space is split into segments, each an access-ordered LinkedHashMap behind its own lock, holding maxSize /
+ * SEGMENTS entries. Null values are not stored.
+ *
+ * A caller loading a value outside the lock takes stamp(key) first and stores the result with
+ * putIfUnchanged, which skips the put if the key's segment was invalidated meanwhile: the loaded value
+ * may predate that write.
+ */
+public class SegmentedLruCache<K, V> {
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // ttlMillis <= 0 keeps entries until they are evicted or invalidated
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maxSize, long ttlMillis) {
+        int perSegment = Math.max(1, maxSize / SEGMENTS);
+        segments = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment<>(perSegment, evictions);
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : Long.MAX_VALUE;
+    }
+
+    // Null if absent or older than the TTL
+    public V get(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            Entry<V> e = seg.map.get(key);
+            if (e != null) {
+                if (System.nanoTime() - e.storedAt < ttlNanos) {
+                    hits.increment();
+                    return e.value;
+                }
+                seg.map.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.map.put(key, new Entry<>(value, System.nanoTime()));
+        }
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> create) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            Entry<V> e = seg.map.get(key);
+            if (e != null && System.nanoTime() - e.storedAt < ttlNanos) return e.value;
+            V value = create.apply(key);
+            seg.map.put(key, new Entry<>(value, System.nanoTime()));
+            return value;
+        }
+    }
+
+    // Invalidation count of the key's segment, to pass to putIfUnchanged
+    public long stamp(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            return seg.invalidations;
+        }
+    }
+
+    // Returns false, storing nothing, if the key's segment was invalidated since stamp was taken
+    public boolean putIfUnchanged(K key, V value, long stamp) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            if (seg.invalidations != stamp) return false;
+            seg.map.put(key, new Entry<>(value, System.nanoTime()));
+            return true;
+        }
+    }
+
+    // Removes the key and fails puts of values loaded before this call
+    public void invalidate(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.invalidations++;
+            seg.map.remove(key);
+        }
+    }
+
+    // Fails puts of values loaded before this call but keeps the entry, for values that carry more than what
+    // was loaded; returns it, or null
+    public V invalidateKeeping(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.invalidations++;
+            Entry<V> e = seg.map.get(key);
+            return e == null ? null : e.value;
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                seg.invalidations++;
+                seg.map.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) { size += seg.map.size(); }
+        }
+        return size;
+    }
+
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    // Entries dropped for the size bound or the TTL
+    public long getEvictionCount() { return evictions.sum(); }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long storedAt;
+
+        Entry(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        long invalidations;
+        final Map<K, Entry<V>> map;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package banking.utils;
+
+import banking.exceptions.InvalidInputException;
+import banking.models.TransferInstruction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads batch transfer files with one "fromAccount,toAccount,amount[,reference]" line per transfer.
+ * Amounts are decimal currency values with at most two decimal places.
+ * Blank lines, lines starting with '#' and a leading header line are skipped.
+ * Each instruction gets the idempotency key "batch:" + first 16 hex digits of the file's SHA-256 + ":" + line
+ * number, so running the same file again (e.g. after a crash part-way through) skips transfers already made.
+ */
+public class TransferFileReader {
+    public static List<TransferInstruction> read(Path file) throws IOException, InvalidInputException {
+        List<TransferInstruction> instructions = new ArrayList<>();
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        String keyPrefix = "batch:" + PasswordUtil.sha256(content).substring(0, 16) + ":";
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (lineNo == 1 && !Character.isDigit(line.charAt(0))) continue;
+                String[] parts = line.split(",", 4);
+                if (parts.length < 3) throw new InvalidInputException("Line " + lineNo + ": expected from,to,amount");
+                try {
+                    TransferInstruction in = new TransferInstruction(
+                            Integer.parseInt(parts[0].trim()),
+                            Integer.parseInt(parts[1].trim()),
+                            Money.parse(parts[2]),
+                            parts.length > 3 ? parts[3].trim() : null);
+                    in.setIdempotencyKey(keyPrefix + lineNo);
+                    instructions.add(in);
+                } catch (NumberFormatException e) {
+                    throw new InvalidInputException("Line " + lineNo + ": " + e.getMessage());
+                }
+            }
+        }
+        return instructions;
+    }
+}
@@ -0,0 +1,83 @@
+package banking.dao;
+
+import banking.models.Account;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AccountCacheTest {
+    @Test
+    void loadsOnceAndHandsOutCopies() throws Exception {
+        AccountCache cache = new AccountCache(64, 0);
+        AtomicInteger loads = new AtomicInteger();
+        AccountCache.Loader loader = id -> {
+            loads.incrementAndGet();
+            return account(id, 500);
+        };
+
+        cache.get(1, loader).setBalance(0);
+        Account again = cache.get(1, loader);
+        assertEquals(500, again.getBalance());
+        again.setBalance(0);
+        assertEquals(500, cache.get(1, loader).getBalance());
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void missingAccountsAreNotCached() throws Exception {
+        AccountCache cache = new AccountCache(64, 0);
+        AtomicInteger loads = new AtomicInteger();
+        AccountCache.Loader loader = id -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertNull(cache.get(1, loader));
+        assertNull(cache.get(1, loader));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() throws Exception {
+        AccountCache cache = new AccountCache(64, 0);
+        // A write lands while the read is still loading the old row
+        Account stale = cache.get(1, id -> {
+            cache.invalidate(id);
+            return account(id, 500);
+        });
+        assertEquals(500, stale.getBalance());
+        assertEquals(0, cache.size());
+        assertEquals(900, cache.get(1, id -> account(id, 900)).getBalance());
+        assertEquals(900, cache.get(1, id -> account(id, 100)).getBalance());
+    }
+
+    @Test
+    void invalidatedAccountIsReloaded() throws Exception {
+        AccountCache cache = new AccountCache(64, 0);
+        cache.get(1, id -> account(id, 500));
+        cache.invalidate(1);
+        assertEquals(700, cache.get(1, id -> account(id, 700)).getBalance());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() throws Exception {
+        AccountCache cache = new AccountCache(64, 20);
+        cache.get(1, id -> account(id, 500));
+        Thread.sleep(40);
+        assertEquals(600, cache.get(1, id -> account(id, 600)).getBalance());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    private static Account account(int id, long balance) {
+        return new Account(id, "name" + id, "a" + id + "@bank.test", "555", "hash", balance,
+                LocalDateTime.of(2026, 1, 1, 0, 0), "ACTIVE");
+    }
+}
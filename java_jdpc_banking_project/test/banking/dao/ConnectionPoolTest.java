@@ -0,0 +1,155 @@
+package banking.dao;
+
+import banking.metrics.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    private static final String URL = "jdbc:h2:mem:pool_test;DB_CLOSE_DELAY=-1";
+    private static final String SQL = "SELECT CAST(? AS INT)";
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    void close() {
+        if (pool != null) pool.close();
+    }
+
+    private ConnectionPool pool(int maxSize, int minIdle, long idleTimeoutMillis) {
+        pool = ConnectionPool.create("test", URL, "sa", "", maxSize, minIdle, 200, idleTimeoutMillis, 500, 16);
+        return pool;
+    }
+
+    @Test
+    void secondPrepareOfOpenStatementGetsItsOwn() throws SQLException {
+        try (Connection conn = pool(1, 0, 60_000).getConnection();
+             PreparedStatement a = conn.prepareStatement(SQL);
+             PreparedStatement b = conn.prepareStatement(SQL)) {
+            assertNotSame(a.unwrap(PreparedStatement.class), b.unwrap(PreparedStatement.class));
+            a.setInt(1, 1);
+            b.setInt(1, 2);
+            assertEquals(1, single(a));
+            assertEquals(2, single(b));
+        }
+    }
+
+    @Test
+    void closedStatementIsReusedWithItsSettingsUndone() throws SQLException {
+        try (Connection conn = pool(1, 0, 60_000).getConnection()) {
+            PreparedStatement first = conn.prepareStatement(SQL);
+            PreparedStatement physical = first.unwrap(PreparedStatement.class);
+            int defaultFetchSize = first.getFetchSize();
+            first.setFetchSize(defaultFetchSize + 7);
+            first.setMaxRows(1);
+            first.setInt(1, 5);
+            ResultSet rs = first.executeQuery();
+            first.close();
+
+            assertTrue(rs.isClosed());
+            assertThrows(SQLException.class, first::executeQuery);
+            try (PreparedStatement again = conn.prepareStatement(SQL)) {
+                assertSame(physical, again.unwrap(PreparedStatement.class));
+                assertEquals(defaultFetchSize, again.getFetchSize());
+                assertEquals(0, again.getMaxRows());
+                // Parameters are cleared too
+                assertThrows(SQLException.class, again::executeQuery);
+            }
+        }
+    }
+
+    @Test
+    void statementLeftOpenIsTakenBackWithItsConnection() throws SQLException {
+        ConnectionPool pool = pool(1, 0, 60_000);
+        PreparedStatement leaked;
+        PreparedStatement physical;
+        try (Connection conn = pool.getConnection()) {
+            leaked = conn.prepareStatement(SQL);
+            physical = leaked.unwrap(PreparedStatement.class);
+        }
+        assertTrue(leaked.isClosed());
+        try (Connection conn = pool.getConnection(); PreparedStatement ps = conn.prepareStatement(SQL)) {
+            assertSame(physical, ps.unwrap(PreparedStatement.class));
+            ps.setInt(1, 3);
+            assertEquals(3, single(ps));
+        }
+        assertEquals(1, pool.getPhysicalCount());
+    }
+
+    @Test
+    void exhaustedPoolTimesOut() throws SQLException {
+        ConnectionPool pool = pool(1, 0, 60_000);
+        try (Connection held = pool.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            assertEquals(1, pool.getExhaustedCount());
+        }
+        try (Connection conn = pool.getConnection()) {
+            assertEquals(1, pool.getActiveCount());
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void idleConnectionsAreReapedDownToMinIdle() throws Exception {
+        ConnectionPool pool = pool(3, 1, 100);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        Connection c = pool.getConnection();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.getPhysicalCount());
+
+        // The reaper runs every second at the shortest
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getPhysicalCount() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        assertEquals(1, pool.getPhysicalCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(2, pool.getEvictedCount());
+    }
+
+    @Test
+    void timersShareOneNameForInListsOfAnyLength() {
+        assertEquals("SELECT * FROM t WHERE id IN (?...)", ConnectionPool.timerName("SELECT * FROM t WHERE id IN (?, ?,?)"));
+        assertEquals("SELECT * FROM t WHERE id IN (?...)", ConnectionPool.timerName("SELECT * FROM t WHERE id in(?)"));
+        assertEquals("DELETE FROM t WHERE id IN (?...) AND k IN (?...)",
+                ConnectionPool.timerName("DELETE FROM t WHERE id IN (?,?) AND k IN ( ? )"));
+        assertEquals("SELECT * FROM t WHERE id IN (1, 2)", ConnectionPool.timerName("SELECT * FROM t WHERE id IN (1, 2)"));
+        assertEquals("SELECT * FROM a JOIN (SELECT ?) b", ConnectionPool.timerName("SELECT * FROM a JOIN (SELECT ?) b"));
+    }
+
+    @Test
+    void namesAreUniqueAmongOpenPoolsAndPrefixTheirGauges() throws SQLException {
+        ConnectionPool pool = pool(2, 0, 60_000);
+        assertThrows(IllegalArgumentException.class,
+                () -> ConnectionPool.create("test", URL, "sa", "", 1, 0, 200, 60_000, 500, 16));
+        try (ConnectionPool other = ConnectionPool.create("test-other", URL, "sa", "", 1, 0, 200, 60_000, 500, 16);
+             Connection conn = pool.getConnection()) {
+            String metrics = Metrics.render();
+            assertTrue(metrics.contains("test.active 1\n"), metrics);
+            assertTrue(metrics.contains("test-other.active 0\n"), metrics);
+        }
+        // Closing a pool frees its name
+        pool.close();
+        ConnectionPool.create("test", URL, "sa", "", 1, 0, 200, 60_000, 500, 16).close();
+    }
+
+    private static int single(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package banking.dao;
+
+import banking.models.Account;
+import banking.models.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrossShardTransferTest {
+    private ShardedStore store;
+    private int from;
+    private int to;
+
+    @BeforeEach
+    void openTwoShards() throws SQLException {
+        store = new ShardedStore(2);
+        from = store.createAccount(new Account("Ada", "ada@example.com", "1", "x", 10_000));
+        // Accounts are placed by email; keep opening until one lands on the other shard
+        int i = 0;
+        do {
+            to = store.createAccount(new Account("Bob", "bob" + i++ + "@example.com", "2", "x", Long.MAX_VALUE - 50));
+        } while (Math.floorMod(to - 1, 2) == Math.floorMod(from - 1, 2));
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void creditThatCannotBeAppliedReversesTheDebit() throws SQLException {
+        // The credit would overflow the receiving balance, so phase two fails after the debit went through
+        assertThrows(ArithmeticException.class, () -> store.transfer(from, to, 100, "tr-1"));
+
+        assertEquals(10_000, store.findById(from).getBalance());
+        assertEquals(Long.MAX_VALUE - 50, store.findById(to).getBalance());
+        List<Transaction> history = store.transactions().findByAccountId(from);
+        assertEquals(2, history.size());
+        assertEquals("Reversal", history.get(0).getType());
+        assertEquals("Transfer", history.get(1).getType());
+        assertEquals(10_000, history.get(0).getBalanceAfter());
+        assertFalse(store.transactions().findByAccountId(to).stream().anyMatch(t -> "Transfer".equals(t.getType())));
+        // The key is released, so a retry runs afresh rather than replaying the failure
+        assertNull(store.findReceipt(from, "tr-1"));
+    }
+
+    @Test
+    void retryAfterCompensationGoesThrough() throws Exception {
+        assertThrows(ArithmeticException.class, () -> store.transfer(from, to, 100, "tr-1"));
+        store.withdraw(to, 1_000);
+
+        assertFalse(store.transfer(from, to, 100, "tr-1").isReplayed());
+        assertEquals(9_900, store.findById(from).getBalance());
+        assertEquals(Long.MAX_VALUE - 50 - 1_000 + 100, store.findById(to).getBalance());
+        assertTrue(store.transfer(from, to, 100, "tr-1").isReplayed());
+        assertEquals(9_900, store.findById(from).getBalance());
+    }
+
+    @Test
+    void unknownDestinationMovesNothing() throws SQLException {
+        int missing = to + 2 * 1_000;
+        assertNotEquals(Math.floorMod(missing - 1, 2), Math.floorMod(from - 1, 2));
+        assertThrows(SQLException.class, () -> store.transfer(from, missing, 100, "tr-2"));
+        assertEquals(10_000, store.findById(from).getBalance());
+        assertEquals(0, store.transactions().findByAccountId(from).size());
+    }
+}
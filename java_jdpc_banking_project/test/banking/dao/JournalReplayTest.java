@@ -0,0 +1,84 @@
+package banking.dao;
+
+import banking.models.Account;
+import banking.models.LedgerReceipt;
+import banking.models.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalReplayTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenedStoreHasTheSameBalancesLedgerAndReceipts() throws Exception {
+        int a, b;
+        List<Transaction> ledger;
+        try (InMemoryStore store = InMemoryStore.open(dir)) {
+            a = store.createAccount(new Account("Ada", "ada@example.com", "1", "hash-a", 10_000));
+            b = store.createAccount(new Account("Bob", "bob@example.com", "2", "hash-b", 500));
+            store.deposit(a, 250, "dep-1");
+            store.withdraw(b, 100, "wd-1");
+            store.transfer(a, b, 1_000, "tr-1");
+            store.deposit(b, 5);
+            ledger = ledger(store);
+        }
+
+        try (InMemoryStore store = InMemoryStore.open(dir)) {
+            assertEquals(10_000 + 250 - 1_000, store.findById(a).getBalance());
+            assertEquals(500 - 100 + 1_000 + 5, store.findById(b).getBalance());
+            assertEquals("hash-a", store.findById(a).getPassword());
+            assertEquals(ids(ledger), ids(ledger(store)));
+            LedgerReceipt transfer = store.findReceipt(a, "tr-1");
+            assertNotNull(transfer);
+            assertEquals(b, transfer.getCounterpartyId());
+            // A replayed key still answers with the original outcome and moves nothing
+            assertTrue(store.deposit(a, 250, "dep-1").isReplayed());
+            assertEquals(10_000 + 250 - 1_000, store.findById(a).getBalance());
+            // Ids carry on after the recovered ones
+            int c = store.createAccount(new Account("Cy", "cy@example.com", "3", "hash-c", 0));
+            assertTrue(c > b);
+        }
+    }
+
+    @Test
+    void journalTailIsReplayedOnTopOfTheSnapshot() throws Exception {
+        int a;
+        try (InMemoryStore store = InMemoryStore.open(dir)) {
+            a = store.createAccount(new Account("Ada", "ada@example.com", "1", "hash-a", 0));
+            for (int i = 0; i < 10; i++) store.deposit(a, 100, "before-" + i);
+            store.snapshot();
+            for (int i = 0; i < 10; i++) store.deposit(a, 10, "after-" + i);
+        }
+
+        try (InMemoryStore store = InMemoryStore.open(dir)) {
+            assertEquals(1_100, store.findById(a).getBalance());
+            assertEquals(20, store.transactions().findByAccountId(a).size());
+            assertNotNull(store.findReceipt(a, "before-3"));
+            assertNotNull(store.findReceipt(a, "after-7"));
+        }
+    }
+
+    private static List<Transaction> ledger(InMemoryStore store) throws SQLException {
+        List<Transaction> rows = new ArrayList<>();
+        store.transactions().streamAll(rows::add);
+        return rows;
+    }
+
+    private static List<String> ids(List<Transaction> rows) {
+        List<String> list = new ArrayList<>();
+        for (Transaction t : rows) {
+            list.add(t.getTransactionId() + " " + t.getAccountId() + " " + t.getType() + " " + t.getAmount() + " " + t.getBalanceAfter());
+        }
+        return list;
+    }
+}
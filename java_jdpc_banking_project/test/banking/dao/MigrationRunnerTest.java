@@ -0,0 +1,134 @@
+package banking.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MigrationRunnerTest {
+    private static final Pattern VIEW = Pattern.compile("information_schema\\.(\\w+)");
+
+    @Test
+    void originalSchemaIsVersionOne() throws Exception {
+        Catalog db = original();
+        assertEquals(1, MigrationRunner.detectVersion(db.connection()));
+    }
+
+    @Test
+    void countsMigrationsInOrder() throws Exception {
+        Catalog db = original()
+                .index("transactions", "idx_transactions_account_ts")
+                .index("accounts", "idx_accounts_name");
+        assertEquals(3, MigrationRunner.detectVersion(db.connection()));
+        db.column("transactions", "amount", "DECIMAL");
+        assertEquals(4, MigrationRunner.detectVersion(db.connection()));
+        db.column("transactions", "balance_after", "decimal").table("idempotency_keys").table("eod_checkpoints");
+        assertEquals(7, MigrationRunner.detectVersion(db.connection()));
+    }
+
+    @Test
+    void fullyMigratedSchemaWithoutTheDroppedIndex() throws Exception {
+        // V8 drops V2's index; its archive log stands in for it
+        Catalog db = original()
+                .index("accounts", "idx_accounts_name")
+                .column("transactions", "amount", "decimal")
+                .column("transactions", "balance_after", "decimal")
+                .table("idempotency_keys").table("eod_checkpoints").table("ledger_archive_log")
+                .table("account_limits").table("ledger_outbox");
+        assertEquals(10, MigrationRunner.detectVersion(db.connection()));
+    }
+
+    @Test
+    void stopsAtTheFirstGap() throws Exception {
+        Catalog db = original()
+                .index("transactions", "idx_transactions_account_ts")
+                .index("accounts", "idx_accounts_name")
+                .table("idempotency_keys").table("ledger_outbox");
+        assertEquals(3, MigrationRunner.detectVersion(db.connection()));
+    }
+
+    @Test
+    void splitsScriptsIntoStatements() {
+        String sql = "-- header; not a statement\nCREATE DATABASE bank;\nUSE bank;\n"
+                + "CREATE TABLE t (\n  id INT -- key\n);\n\n  -- trailing\nINSERT INTO t VALUES (1);\n";
+        assertEquals(List.of("CREATE TABLE t (\n  id INT -- key\n)", "INSERT INTO t VALUES (1)"),
+                MigrationRunner.statements(sql));
+    }
+
+    private static Catalog original() {
+        return new Catalog().table("accounts").table("transactions").column("transactions", "amount", "double");
+    }
+
+    // information_schema as seen through a fake Connection: rows keyed by view name and query parameters
+    private static final class Catalog {
+        private final Map<String, String> rows = new HashMap<>();
+
+        Catalog table(String table) {
+            rows.put("TABLES " + table, "1");
+            return this;
+        }
+
+        Catalog index(String table, String index) {
+            rows.put("STATISTICS " + table + " " + index, "1");
+            return this;
+        }
+
+        Catalog column(String table, String column, String type) {
+            rows.put("COLUMNS " + table + " " + column, type);
+            return this;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                if (!method.equals("prepareStatement")) return null;
+                Matcher m = VIEW.matcher((String) args[0]);
+                if (!m.find()) throw new AssertionError("Unexpected query " + args[0]);
+                return statement(m.group(1));
+            });
+        }
+
+        private PreparedStatement statement(String view) {
+            List<String> params = new ArrayList<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.equals("setString")) {
+                    params.add((Integer) args[0] - 1, (String) args[1]);
+                } else if (method.equals("executeQuery")) {
+                    return result(rows.get(view + " " + String.join(" ", params)));
+                }
+                return null;
+            });
+        }
+
+        private static ResultSet result(String value) {
+            boolean[] read = {false};
+            return proxy(ResultSet.class, (method, args) -> switch (method) {
+                case "next" -> {
+                    boolean row = value != null && !read[0];
+                    read[0] = true;
+                    yield row;
+                }
+                case "getString" -> value;
+                default -> null;
+            });
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (p, method, args) -> handler.invoke(method.getName(), args)));
+    }
+}
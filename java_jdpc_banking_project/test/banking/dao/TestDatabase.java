@@ -0,0 +1,23 @@
+package banking.dao;
+
+import banking.bench.SchemaLoader;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// The embedded database surefire points bank.db.url at, with db/schema.sql loaded once per run
+public final class TestDatabase {
+    private static boolean loaded;
+
+    private TestDatabase() {}
+
+    public static synchronized void ensureSchema() throws IOException, SQLException {
+        if (loaded) return;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            SchemaLoader.load(conn, Paths.get(System.getProperty("bank.db.schema", "db/schema.sql")));
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,101 @@
+package banking.dao;
+
+import banking.models.Page;
+import banking.models.Transaction;
+import banking.utils.Money;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionPagingTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 5, 9, 0);
+
+    private final TransactionDAO dao = new TransactionDAO();
+
+    @BeforeAll
+    static void schema() throws Exception {
+        TestDatabase.ensureSchema();
+    }
+
+    @Test
+    void pagesWalkTheHistoryNewestFirstThroughTimestampTies() throws Exception {
+        // Four rows per second, so most page boundaries fall between rows with the same timestamp
+        List<Integer> ids = insert(601, 25, 4);
+        Collections.reverse(ids);
+
+        List<Integer> paged = new ArrayList<>();
+        Transaction after = null;
+        int pages = 0;
+        while (true) {
+            Page<Transaction> page = dao.findPage(601, after, 7);
+            for (Transaction t : page.getItems()) paged.add(t.getTransactionId());
+            pages++;
+            if (!page.hasMore()) break;
+            after = page.getLast();
+        }
+        assertEquals(ids, paged);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void fullLastPageHasNoMore() throws Exception {
+        insert(602, 14, 1);
+
+        Page<Transaction> first = dao.findPage(602, null, 7);
+        Page<Transaction> second = dao.findPage(602, first.getLast(), 7);
+        assertTrue(first.hasMore());
+        assertEquals(7, second.getItems().size());
+        assertFalse(second.hasMore());
+        assertTrue(dao.findPage(602, second.getLast(), 7).isEmpty());
+    }
+
+    @Test
+    void streamingReturnsTheSameRowsAsPaging() throws Exception {
+        List<Integer> ids = insert(603, 30, 3);
+        Collections.reverse(ids);
+
+        List<Integer> streamed = new ArrayList<>();
+        long count = dao.streamByAccountId(603, t -> streamed.add(t.getTransactionId()));
+        assertEquals(30, count);
+        assertEquals(ids, streamed);
+        List<Integer> all = new ArrayList<>();
+        dao.streamAll(t -> all.add(t.getTransactionId()));
+        assertTrue(all.containsAll(ids));
+    }
+
+    // Inserts rows for accountId, perSecond sharing each timestamp, and returns their ids oldest first
+    private static List<Integer> insert(int accountId, int rows, int perSecond) throws Exception {
+        String sql = "INSERT INTO transactions (account_id, type, amount, timestamp, remarks, balance_after) VALUES (?,?,?,?,?,?)";
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < rows; i++) {
+                ps.setInt(1, accountId);
+                ps.setString(2, "Deposit");
+                ps.setBigDecimal(3, Money.toDecimal(100));
+                ps.setTimestamp(4, Timestamp.valueOf(START.plusSeconds(i / perSecond)));
+                ps.setString(5, "Deposit");
+                ps.setBigDecimal(6, Money.toDecimal(100L * (i + 1)));
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    ids.add(keys.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,72 @@
+package banking.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void resetBuffer() {
+        System.clearProperty("bank.journal.bufferKb");
+    }
+
+    @Test
+    void recordsLargerThanALoweredBufferAreReplayed() throws IOException {
+        append(4_000, 3_000, 10);
+        System.setProperty("bank.journal.bufferKb", "1");
+
+        List<Integer> sizes = new ArrayList<>();
+        try (Journal journal = Journal.open(dir, 0, (seq, payload) -> sizes.add(payload.remaining()))) {
+            assertEquals(3, journal.getLastSeq());
+        }
+        assertEquals(List.of(4_000, 3_000, 10), sizes);
+    }
+
+    @Test
+    void tornTailIsCutOffAndAppendsContinueAfterIt() throws IOException {
+        append(100, 200);
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long intact = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.allocate(16).putInt(0, 1_000).putLong(8, 3));
+        }
+
+        List<Long> seqs = new ArrayList<>();
+        try (Journal journal = Journal.open(dir, 0, (seq, payload) -> seqs.add(seq))) {
+            assertEquals(intact, Files.size(segment));
+            journal.awaitDurable(journal.append(ByteBuffer.allocate(5)));
+        }
+        assertEquals(List.of(1L, 2L), seqs);
+        seqs.clear();
+        try (Journal journal = Journal.open(dir, 0, (seq, payload) -> seqs.add(seq))) {
+            assertEquals(3, journal.getLastSeq());
+        }
+        assertEquals(List.of(1L, 2L, 3L), seqs);
+    }
+
+    private void append(int... sizes) throws IOException {
+        try (Journal journal = Journal.open(dir, 0, (seq, payload) -> {})) {
+            long seq = 0;
+            for (int size : sizes) seq = journal.append(ByteBuffer.allocate(size));
+            journal.awaitDurable(seq);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package banking.services;
+
+import banking.dao.StorageBackend;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.utils.PasswordUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginTest {
+    private static final Counter CACHE_HITS = Metrics.counter("auth.cacheHits");
+    private static final Counter SLOW_VERIFIES = Metrics.counter("auth.slowVerifies");
+
+    private StorageBackend backend;
+    private BankService service;
+
+    @BeforeEach
+    void open() {
+        backend = StorageBackend.inMemory();
+        service = new BankService(backend);
+    }
+
+    @Test
+    void legacyHashIsUpgradedOnLogin() throws Exception {
+        int id = service.createAccount(new Account("Ada", "ada@example.com", "1", PasswordUtil.sha256("secret"), 0));
+
+        assertNull(service.login(id, "wrong"));
+        assertTrue(PasswordUtil.needsRehash(backend.getAccounts().findById(id).getPassword()));
+
+        Account acc = service.login(id, "secret");
+        assertNotNull(acc);
+        String stored = backend.getAccounts().findById(id).getPassword();
+        assertEquals(stored, acc.getPassword());
+        assertFalse(PasswordUtil.needsRehash(stored));
+        assertTrue(PasswordUtil.verify("secret", stored));
+
+        // A fresh service has no remembered logins, so this checks the upgraded hash itself
+        assertNotNull(new BankService(backend).login(id, "secret"));
+    }
+
+    @Test
+    void repeatLoginSkipsTheSlowCheck() throws Exception {
+        int id = service.createAccount(new Account("Bob", "bob@example.com", "2", PasswordUtil.hash("secret"), 0));
+        assertNotNull(service.login(id, "secret"));
+
+        long hits = CACHE_HITS.get();
+        long slow = SLOW_VERIFIES.get();
+        assertNotNull(service.login(id, "secret"));
+        assertEquals(hits + 1, CACHE_HITS.get());
+        assertEquals(slow, SLOW_VERIFIES.get());
+
+        // A wrong password is never answered from the cache
+        assertNull(service.login(id, "Secret"));
+        assertEquals(slow + 1, SLOW_VERIFIES.get());
+    }
+
+    @Test
+    void passwordChangeInvalidatesRememberedLogin() throws Exception {
+        int id = service.createAccount(new Account("Cy", "cy@example.com", "3", PasswordUtil.hash("old"), 0));
+        assertNotNull(service.login(id, "old"));
+
+        backend.getAccounts().updatePassword(id, PasswordUtil.hash("new"));
+        assertNull(service.login(id, "old"));
+        assertNotNull(service.login(id, "new"));
+    }
+}
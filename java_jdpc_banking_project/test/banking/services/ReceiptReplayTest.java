@@ -0,0 +1,93 @@
+package banking.services;
+
+import banking.dao.StorageBackend;
+import banking.exceptions.InvalidInputException;
+import banking.exceptions.PolicyViolationException;
+import banking.metrics.Counter;
+import banking.metrics.Metrics;
+import banking.models.Account;
+import banking.models.AccountLimits;
+import banking.models.LedgerReceipt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptReplayTest {
+    private static final Counter REPLAYS = Metrics.counter("bank.idempotentReplays");
+
+    private StorageBackend backend;
+    private BankService service;
+    private int a;
+    private int b;
+
+    @BeforeEach
+    void open() throws Exception {
+        backend = StorageBackend.inMemory();
+        service = new BankService(backend);
+        a = service.createAccount(new Account("Ada", "ada@example.com", "1", "x", 10_000));
+        b = service.createAccount(new Account("Bob", "bob@example.com", "2", "x", 0));
+    }
+
+    @Test
+    void sameKeyMovesMoneyOnce() throws Exception {
+        LedgerReceipt first = service.withdraw(a, 300, "wd-1");
+        long replays = REPLAYS.get();
+        LedgerReceipt again = service.withdraw(a, 300, "wd-1");
+
+        assertFalse(first.isReplayed());
+        assertTrue(again.isReplayed());
+        assertEquals(first.getBalanceAfter(), again.getBalanceAfter());
+        assertEquals(9_700, service.getBalance(a));
+        assertEquals(1, service.getTransactionsPage(a, null, 10).getItems().size());
+        assertEquals(replays + 1, REPLAYS.get());
+    }
+
+    @Test
+    void replayIsAnsweredFromTheLedgerWhenNotCached() throws Exception {
+        service.transfer(a, b, 1_000, "tr-1");
+        // A second service over the same backend starts with an empty receipt cache
+        BankService other = new BankService(backend);
+
+        LedgerReceipt again = other.transfer(a, b, 1_000, "tr-1");
+        assertTrue(again.isReplayed());
+        assertEquals(b, again.getCounterpartyId());
+        assertEquals(9_000, other.getBalance(a));
+        assertEquals(1_000, other.getBalance(b));
+    }
+
+    @Test
+    void replaySucceedsAfterTheAccountIsFrozen() throws Exception {
+        service.deposit(a, 500, "dep-1");
+        service.setAccountStatus(a, "FROZEN");
+
+        assertTrue(service.deposit(a, 500, "dep-1").isReplayed());
+        assertThrows(PolicyViolationException.class, () -> service.deposit(a, 500, "dep-2"));
+        assertEquals(10_500, service.getBalance(a));
+    }
+
+    @Test
+    void replaySucceedsAfterTheDailyLimitIsReached() throws Exception {
+        service.setAccountLimits(a, new AccountLimits(1_000, 0, 0));
+        service.withdraw(a, 1_000, "wd-1");
+
+        assertTrue(service.withdraw(a, 1_000, "wd-1").isReplayed());
+        assertThrows(PolicyViolationException.class, () -> service.withdraw(a, 1, "wd-2"));
+        assertEquals(9_000, service.getBalance(a));
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() throws Exception {
+        service.deposit(a, 500, "dep-1");
+        long replays = REPLAYS.get();
+
+        assertThrows(InvalidInputException.class, () -> service.deposit(a, 600, "dep-1"));
+        assertThrows(InvalidInputException.class, () -> service.withdraw(a, 500, "dep-1"));
+        assertEquals(10_500, service.getBalance(a));
+        // A rejected key is not a replay
+        assertEquals(replays, REPLAYS.get());
+    }
+}
@@ -0,0 +1,87 @@
+package banking.services;
+
+import banking.dao.StorageBackend;
+import banking.dao.TestDatabase;
+import banking.exceptions.InsufficientFundsException;
+import banking.models.Account;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires random concurrent transfers, in both directions, between a set of fresh accounts and checks that no
+ * money was created or destroyed and that no transfer failed other than for insufficient funds.
+ */
+class TransferStressTest {
+    private static final int ACCOUNTS = 10;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 5_000;
+    private static final long INITIAL_BALANCE = 100_000; // 1000.00
+
+    @Test
+    void inMemoryConservesMoney() throws Exception {
+        try (StorageBackend backend = StorageBackend.inMemory()) {
+            stress(new BankService(backend));
+        }
+    }
+
+    @Test
+    void shardedConservesMoney() throws Exception {
+        try (StorageBackend backend = StorageBackend.sharded(4)) {
+            stress(new BankService(backend));
+        }
+    }
+
+    @Test
+    void jdbcConservesMoney() throws Exception {
+        TestDatabase.ensureSchema();
+        stress(new BankService(StorageBackend.mysql()));
+    }
+
+    private static void stress(BankService service) throws Exception {
+        String run = Long.toString(System.nanoTime(), 36);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(service.createAccount(new Account("Stress " + i, "stress-" + run + "-" + i + "@example.com",
+                    "0000000000", "x", INITIAL_BALANCE)));
+        }
+
+        LongAdder ok = new LongAdder();
+        LongAdder insufficient = new LongAdder();
+        List<Exception> failures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            pool.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                int from = ids.get(rnd.nextInt(ACCOUNTS));
+                int to = ids.get(rnd.nextInt(ACCOUNTS));
+                while (to == from) to = ids.get(rnd.nextInt(ACCOUNTS));
+                try {
+                    service.transfer(from, to, 1 + rnd.nextInt(20_000));
+                    ok.increment();
+                } catch (InsufficientFundsException e) {
+                    insufficient.increment();
+                } catch (Exception e) {
+                    synchronized (failures) { failures.add(e); }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES));
+
+        long total = 0;
+        for (int id : ids) total += service.getBalance(id);
+        assertEquals(List.of(), failures);
+        assertEquals(TRANSFERS, ok.sum() + insufficient.sum());
+        assertEquals(ACCOUNTS * INITIAL_BALANCE, total);
+    }
+}
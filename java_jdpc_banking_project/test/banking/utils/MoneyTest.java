@@ -0,0 +1,56 @@
+package banking.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    @Test
+    void parsesWholeAndFractionalAmountsExactly() {
+        assertEquals(123_400, Money.parse("1234"));
+        assertEquals(123_450, Money.parse("1234.5"));
+        assertEquals(123_456, Money.parse(" 1234.56 "));
+        assertEquals(-5, Money.parse("-0.05"));
+        assertEquals(123, Money.parse("+1.23"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(100, Money.parse("1."));
+    }
+
+    @Test
+    void rejectsMalformedAndOverPreciseAmounts() {
+        for (String text : new String[] {"", "  ", "-", ".", "abc", "1,5", "1.2.3", "1.234", "--1"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+        assertThrows(ArithmeticException.class, () -> Money.parse("92233720368547758.08"));
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("1234.50", Money.format(123_450));
+        assertEquals("-1234.56", Money.format(-123_456));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        for (long minor : new long[] {0, 1, -1, 99, 100, -12_345, Long.MAX_VALUE, Long.MIN_VALUE + 1}) {
+            assertEquals(minor, Money.parse(Money.format(minor)));
+        }
+    }
+
+    @Test
+    void convertsAtTheJdbcBoundary() {
+        assertEquals(new BigDecimal("12.34"), Money.toDecimal(1_234));
+        assertEquals(1_234, Money.fromDecimal(new BigDecimal("12.34")));
+        assertEquals(1_200, Money.fromDecimal(new BigDecimal("12")));
+        assertEquals(0, Money.fromDecimal(null));
+        assertThrows(ArithmeticException.class, () -> Money.fromDecimal(new BigDecimal("0.001")));
+    }
+}
@@ -0,0 +1,80 @@
+package banking.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedLruCacheTest {
+    // 32 entries over 16 segments is two per segment; small Integer keys 0, 16 and 32 all share segment 0
+    @Test
+    void evictsLeastRecentlyUsedWithinASegment() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(32, 0);
+        cache.put(0, "a");
+        cache.put(16, "b");
+        assertEquals("a", cache.get(0));
+        cache.put(32, "c");
+
+        assertNull(cache.get(16));
+        assertEquals("a", cache.get(0));
+        assertEquals("c", cache.get(32));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void otherSegmentsKeepTheirEntries() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(16, 0);
+        for (int k = 0; k < 16; k++) cache.put(k, "v" + k);
+        assertEquals(16, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void expiredEntriesAreDropped() throws Exception {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(64, 20);
+        cache.put(1, "a");
+        assertEquals("a", cache.get(1));
+        Thread.sleep(40);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("b", cache.computeIfAbsent(1, k -> "b"));
+        assertEquals("b", cache.computeIfAbsent(1, k -> "c"));
+    }
+
+    @Test
+    void putIfUnchangedFailsAfterAnInvalidation() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(64, 0);
+        long stamp = cache.stamp(1);
+        assertTrue(cache.putIfUnchanged(1, "a", stamp));
+
+        stamp = cache.stamp(1);
+        cache.invalidate(1);
+        assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+        assertNull(cache.get(1));
+
+        stamp = cache.stamp(1);
+        cache.clear();
+        assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+        assertTrue(cache.putIfUnchanged(1, "fresh", cache.stamp(1)));
+        assertEquals("fresh", cache.get(1));
+    }
+
+    @Test
+    void invalidateKeepingFailsLoadsButKeepsTheEntry() {
+        SegmentedLruCache<Integer, StringBuilder> cache = new SegmentedLruCache<>(64, 0);
+        StringBuilder kept = new StringBuilder("a");
+        cache.put(1, kept);
+        long stamp = cache.stamp(1);
+
+        assertSame(kept, cache.invalidateKeeping(1));
+        assertFalse(cache.putIfUnchanged(1, new StringBuilder("stale"), stamp));
+        assertSame(kept, cache.get(1));
+        assertNull(cache.invalidateKeeping(2));
+    }
+}